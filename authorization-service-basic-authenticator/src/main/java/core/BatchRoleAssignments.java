@@ -0,0 +1,14 @@
+package core;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public interface BatchRoleAssignments {
+
+    // IDs of the app roles assigned to each user, in one round trip. Users whose
+    // assignments couldn't be read are left out of the result.
+    CompletableFuture<Map<String, Set<String>>> getAppRoleIds(Collection<String> userIds);
+
+}
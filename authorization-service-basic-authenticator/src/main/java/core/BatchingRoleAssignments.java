@@ -0,0 +1,139 @@
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Collects the lookups of concurrent requests for a short window and sends them as one batch.
+// A batch goes out when the window closes or as soon as it is full, whichever comes first,
+// and callers asking for a user that is already pending share its lookup.
+public class BatchingRoleAssignments implements RoleAssignments {
+
+    private final BatchRoleAssignments batchRoleAssignments;
+    private final ScheduledExecutorService scheduler;
+    private final long windowMillis;
+    private final int maximumBatchSize;
+
+    private final Object lock = new Object();
+    private Map<String, CompletableFuture<Set<String>>> pending = new HashMap<>();
+    private long generation;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public BatchingRoleAssignments(BatchRoleAssignments batchRoleAssignments, ScheduledExecutorService scheduler,
+                                   long windowMillis, int maximumBatchSize) {
+        this.batchRoleAssignments = batchRoleAssignments;
+        this.scheduler = scheduler;
+        this.windowMillis = windowMillis;
+        this.maximumBatchSize = maximumBatchSize;
+    }
+
+    @Override
+    public Set<String> getAppRoleIds(String userId) {
+        try {
+            return getAppRoleIdsAsync(userId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    @Override
+    public CompletableFuture<Set<String>> getAppRoleIdsAsync(String userId) {
+        CompletableFuture<Set<String>> lookup;
+        Map<String, CompletableFuture<Set<String>>> full = null;
+        long opened = -1;
+        synchronized (lock) {
+            lookup = pending.get(userId);
+            if (lookup != null) {
+                return lookup;
+            }
+
+            lookup = new CompletableFuture<>();
+            pending.put(userId, lookup);
+            lookups.increment();
+            if (pending.size() >= maximumBatchSize) {
+                full = takePending();
+            } else if (pending.size() == 1) {
+                opened = generation;
+            }
+        }
+
+        if (full != null) {
+            send(full);
+        } else if (opened >= 0) {
+            scheduleFlush(opened);
+        }
+
+        return lookup;
+    }
+
+    public long getLookupCount() {
+        return lookups.sum();
+    }
+
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    private void scheduleFlush(long window) {
+        try {
+            scheduler.schedule(() -> flush(window), windowMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            flush(window);
+        }
+    }
+
+    // The window may have been sent already because it filled up before the timer fired
+    private void flush(long window) {
+        Map<String, CompletableFuture<Set<String>>> batch;
+        synchronized (lock) {
+            if (window != generation || pending.isEmpty()) {
+                return;
+            }
+
+            batch = takePending();
+        }
+
+        send(batch);
+    }
+
+    private Map<String, CompletableFuture<Set<String>>> takePending() {
+        Map<String, CompletableFuture<Set<String>>> batch = pending;
+        pending = new HashMap<>();
+        generation++;
+        return batch;
+    }
+
+    private void send(Map<String, CompletableFuture<Set<String>>> batch) {
+        batches.increment();
+        CompletableFuture<Map<String, Set<String>>> response;
+        try {
+            response = batchRoleAssignments.getAppRoleIds(batch.keySet());
+        } catch (RuntimeException e) {
+            response = CompletableFuture.failedFuture(e);
+        }
+
+        response.whenComplete((appRoleIds, error) -> batch.forEach((userId, lookup) -> {
+            if (error != null) {
+                lookup.completeExceptionally(error);
+            } else if (appRoleIds == null || appRoleIds.get(userId) == null) {
+                lookup.completeExceptionally(
+                    new IllegalStateException("App role assignments of user " + userId + " couldn't be read"));
+            } else {
+                lookup.complete(appRoleIds.get(userId));
+            }
+        }));
+    }
+
+}
@@ -0,0 +1,168 @@
+package core;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the app roles of each user for a while. Entries past the refresh point are still served
+// while a single background lookup replaces them, so users seen regularly never wait for one.
+// Background lookups go through getAppRoleIdsAsync, so a batching source batches them too.
+public class CachingRoleAssignments implements RoleAssignments {
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+    private final RoleAssignments roleAssignments;
+    private final Executor refreshExecutor;
+    private final long timeToLiveMillis;
+    private final long refreshAfterMillis;
+    private final int maximumSize;
+    private final Clock clock;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public CachingRoleAssignments(RoleAssignments roleAssignments, Executor refreshExecutor,
+                                  long timeToLiveMillis, long refreshAfterMillis, int maximumSize) {
+        this(roleAssignments, refreshExecutor, timeToLiveMillis, refreshAfterMillis, maximumSize, Clock.systemUTC());
+    }
+
+    public CachingRoleAssignments(RoleAssignments roleAssignments, Executor refreshExecutor,
+                                  long timeToLiveMillis, long refreshAfterMillis, int maximumSize, Clock clock) {
+        this.roleAssignments = roleAssignments;
+        this.refreshExecutor = refreshExecutor;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.refreshAfterMillis = refreshAfterMillis;
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    @Override
+    public Set<String> getAppRoleIds(String userId) {
+        Entry entry = find(userId);
+        if (entry != null) {
+            return entry.appRoleIds;
+        }
+
+        return store(userId, roleAssignments.getAppRoleIds(userId)).appRoleIds;
+    }
+
+    // A miss is looked up through the source's async lookup, so callers can compose it
+    @Override
+    public CompletableFuture<Set<String>> getAppRoleIdsAsync(String userId) {
+        Entry entry = find(userId);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry.appRoleIds);
+        }
+
+        return roleAssignments.getAppRoleIdsAsync(userId).thenApply(appRoleIds -> store(userId, appRoleIds).appRoleIds);
+    }
+
+    public void invalidate(String userId) {
+        entries.remove(userId);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    private Entry find(String userId) {
+        long now = clock.millis();
+        Entry entry = entries.get(userId);
+        if (entry != null && now - entry.loadedAt < timeToLiveMillis) {
+            if (now - entry.loadedAt >= refreshAfterMillis && entry.refreshing.compareAndSet(false, true)) {
+                refresh(userId, entry);
+            }
+
+            hits.increment();
+            return entry;
+        }
+
+        misses.increment();
+        return null;
+    }
+
+    private Entry store(String userId, Set<String> appRoleIds) {
+        Entry entry = new Entry(appRoleIds, clock.millis());
+        if (maximumSize > 0) {
+            if (entries.size() >= maximumSize && !entries.containsKey(userId)) {
+                makeRoom(entry.loadedAt);
+            }
+
+            entries.put(userId, entry);
+        }
+
+        return entry;
+    }
+
+    // The refresh thread only starts the lookup, so a source that batches lookups doesn't hold it
+    // while the batch window is open. A failed refresh leaves the entry as it is, so the next
+    // request past the refresh point tries again.
+    private void refresh(String userId, Entry stale) {
+        try {
+            CompletableFuture.supplyAsync(() -> roleAssignments.getAppRoleIdsAsync(userId), refreshExecutor)
+                .thenCompose(lookup -> lookup)
+                .whenComplete((appRoleIds, error) -> {
+                    if (error == null) {
+                        entries.replace(userId, stale, new Entry(appRoleIds, clock.millis()));
+                        refreshes.increment();
+                    }
+
+                    stale.refreshing.set(false);
+                });
+        } catch (RejectedExecutionException e) {
+            stale.refreshing.set(false);
+        }
+    }
+
+    // Stale users are swept at most once per interval, so a burst of new users against a full
+    // cache evicts arbitrary entries instead of scanning all of them each time
+    private void makeRoom(long now) {
+        long previous = lastSweep.get();
+        if (now - previous >= SWEEP_INTERVAL_MILLIS && lastSweep.compareAndSet(previous, now)) {
+            entries.values().removeIf(entry -> now - entry.loadedAt >= timeToLiveMillis);
+        }
+
+        Iterator<String> iterator = entries.keySet().iterator();
+        while (entries.size() >= maximumSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private static final class Entry {
+
+        private final Set<String> appRoleIds;
+        private final long loadedAt;
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+
+        private Entry(Set<String> appRoleIds, long loadedAt) {
+            this.appRoleIds = appRoleIds;
+            this.loadedAt = loadedAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,228 @@
+package core;
+
+import com.nimbusds.jwt.SignedJWT;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.text.ParseException;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Serves repeated authentications with the token issued for the same credentials, until
+// shortly before it expires. Neither usernames nor passwords are kept: entries are found by
+// an HMAC of the username and hold an HMAC of both, under a key drawn at random for this
+// instance, and the latter is compared in constant time. Callers that miss with the same
+// credentials while a verification is pending share it, so an expired entry under a burst
+// of requests costs a single round trip.
+public class CachingUserPool implements UserPool {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int KEY_LENGTH = 32;
+    private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+    private final UserPool userPool;
+    private final int maximumSize;
+    private final long expiryMarginMillis;
+    private final Clock clock;
+    private final SecretKeySpec key;
+    private final ConcurrentMap<Digest, Entry> entries = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Digest, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    public CachingUserPool(UserPool userPool, int maximumSize, long expiryMarginMillis) {
+        this(userPool, maximumSize, expiryMarginMillis, Clock.systemUTC());
+    }
+
+    public CachingUserPool(UserPool userPool, int maximumSize, long expiryMarginMillis, Clock clock) {
+        this.userPool = userPool;
+        this.maximumSize = maximumSize;
+        this.expiryMarginMillis = expiryMarginMillis;
+        this.clock = clock;
+        byte[] secret = new byte[KEY_LENGTH];
+        new SecureRandom().nextBytes(secret);
+        this.key = new SecretKeySpec(secret, HMAC_ALGORITHM);
+    }
+
+    @Override
+    public CompletableFuture<String> verify(String userId, String password) {
+        Digest user = new Digest(hmac(userId, null));
+        byte[] credentials = hmac(userId, password);
+        Entry entry = entries.get(user);
+        if (entry != null && entry.expiresAt > clock.millis()
+            && MessageDigest.isEqual(entry.credentials, credentials)) {
+            hits.increment();
+            return CompletableFuture.completedFuture(entry.token);
+        }
+
+        misses.increment();
+        return verifyOnce(userId, password, user, credentials).copy();
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    // The token is cached before the pending entry goes away, so a caller arriving in between
+    // finds one or the other
+    private CompletableFuture<String> verifyOnce(String userId, String password, Digest user, byte[] credentials) {
+        Digest key = new Digest(credentials);
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        CompletableFuture<String> existing = inFlight.putIfAbsent(key, pending);
+        if (existing != null) {
+            coalesced.increment();
+            return existing;
+        }
+
+        CompletableFuture<String> verification;
+        try {
+            verification = userPool.verify(userId, password);
+        } catch (RuntimeException e) {
+            inFlight.remove(key, pending);
+            pending.completeExceptionally(e);
+            throw e;
+        }
+
+        verification.whenComplete((token, error) -> {
+            if (error == null) {
+                remember(user, credentials, token);
+            }
+
+            inFlight.remove(key, pending);
+            if (error == null) {
+                pending.complete(token);
+            } else {
+                pending.completeExceptionally(error);
+            }
+        });
+        return pending;
+    }
+
+    private void remember(Digest user, byte[] credentials, String token) {
+        long expiresAt = expiresAt(token);
+        long now = clock.millis();
+        if (maximumSize > 0 && expiresAt > now) {
+            if (entries.size() >= maximumSize && !entries.containsKey(user)) {
+                makeRoom(now);
+            }
+
+            entries.put(user, new Entry(credentials, token, expiresAt));
+        }
+    }
+
+    // Tokens without a readable expiry aren't cached
+    private long expiresAt(String token) {
+        try {
+            Date expirationTime = SignedJWT.parse(token).getJWTClaimsSet().getExpirationTime();
+            return expirationTime == null ? 0 : expirationTime.getTime() - expiryMarginMillis;
+        } catch (ParseException | RuntimeException e) {
+            return 0;
+        }
+    }
+
+    // A full cache of live tokens would otherwise be scanned on every new user, so expired
+    // tokens are swept at most once per interval and arbitrary entries make room in between
+    private void makeRoom(long now) {
+        long previous = lastSweep.get();
+        if (now - previous >= SWEEP_INTERVAL_MILLIS && lastSweep.compareAndSet(previous, now)) {
+            entries.values().removeIf(entry -> entry.expiresAt <= now);
+        }
+
+        Iterator<Digest> iterator = entries.keySet().iterator();
+        while (entries.size() >= maximumSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    // The username is length-prefixed, so no username and password pair runs into another
+    private byte[] hmac(String userId, String password) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(key);
+            byte[] user = String.valueOf(userId).getBytes(StandardCharsets.UTF_8);
+            mac.update(new byte[]{(byte) (user.length >>> 24), (byte) (user.length >>> 16),
+                (byte) (user.length >>> 8), (byte) user.length});
+            mac.update(user);
+            if (password != null) {
+                mac.update((byte) 0);
+                mac.update(password.getBytes(StandardCharsets.UTF_8));
+            }
+
+            return mac.doFinal();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " isn't available", e);
+        }
+    }
+
+    private static final class Digest {
+
+        private final byte[] value;
+        private final int hashCode;
+
+        private Digest(byte[] value) {
+            this.value = value;
+            this.hashCode = Arrays.hashCode(value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Digest && Arrays.equals(value, ((Digest) o).value);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final byte[] credentials;
+        private final String token;
+        private final long expiresAt;
+
+        private Entry(byte[] credentials, String token, long expiresAt) {
+            this.credentials = credentials;
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -5,20 +5,22 @@ import shared.core.http.Credentials;
 import lombok.RequiredArgsConstructor;
 
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor
 public class HttpBasicAuthenticator {
 
     private final UserPool userPool;
 
-    public Principal authenticate(String authenticationToken) {
+    // A malformed header is rejected right away, only the user pool is waited for
+    public CompletableFuture<Principal> authenticate(String authenticationToken) {
         Credentials credentials = BasicScheme.decode(
             Collections.singletonMap("Authorization", authenticationToken));
 
-        return PrincipalTranslator.from(
-            userPool.verify(
+        return userPool.verify(
                 credentials.getUsername(),
-                credentials.getPassword()));
+                credentials.getPassword())
+            .thenApply(PrincipalTranslator::from);
     }
 
 }
@@ -0,0 +1,20 @@
+package core;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+public interface RoleAssignments {
+
+    // IDs of the app roles assigned to the user
+    Set<String> getAppRoleIds(String userId);
+
+    // Sources that can look up without holding the calling thread override this
+    default CompletableFuture<Set<String>> getAppRoleIdsAsync(String userId) {
+        try {
+            return CompletableFuture.completedFuture(getAppRoleIds(userId));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+}
@@ -1,7 +1,10 @@
 package core;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface UserPool {
 
-    String verify(String userId, String password);
+    // Completes with the token issued for the credentials, without holding the calling thread
+    CompletableFuture<String> verify(String userId, String password);
 
 }
@@ -1,12 +1,25 @@
 package infrastructure.azure;
 
 import com.azure.core.credential.TokenCredential;
+import com.microsoft.graph.authentication.TokenCredentialAuthProvider;
+import com.microsoft.graph.requests.GraphServiceClient;
+import core.BatchingRoleAssignments;
+import core.CachingRoleAssignments;
+import core.CachingUserPool;
 import core.HttpBasicAuthenticator;
+import core.RoleAssignments;
 import core.UserPool;
 import infrastructure.azure.ad.AzureUserPool;
+import infrastructure.azure.ad.GraphBatchRoleAssignments;
+import infrastructure.azure.ad.GraphRoleAssignments;
 import lombok.Getter;
 
+import java.util.Collections;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class AzureFactory {
 
@@ -17,6 +30,21 @@ public class AzureFactory {
     private final String tenantId;
     private final String clientId;
     private final String clientSecret;
+    private final int credentialCacheMaximumSize;
+    private final long credentialCacheExpiryMarginMillis;
+    private final long roleAssignmentCacheTimeToLiveMillis;
+    private final long roleAssignmentRefreshAfterMillis;
+    private final int roleAssignmentCacheMaximumSize;
+    private final long roleAssignmentBatchWindowMillis;
+    private final int roleAssignmentBatchMaximumSize;
+    // Authenticator is stateless, so one instance serves all invocations of this worker
+    @Getter(lazy = true)
+    private final HttpBasicAuthenticator httpBasicAuthenticator = new HttpBasicAuthenticator(createAzureUserPool());
+    // The Graph client holds an HTTP connection pool and the access token, both meant to be reused
+    @Getter(lazy = true)
+    private final GraphServiceClient<?> graphClient = createGraphClient();
+    @Getter(lazy = true)
+    private final RoleAssignments roleAssignments = createRoleAssignments();
 
     private AzureFactory() {
         this(new AzureAdClientFactory(System.getenv("AZURE_TENANT_ID")), System.getenv());
@@ -27,14 +55,74 @@ public class AzureFactory {
         this.tenantId = conf.get("AZURE_TENANT_ID");
         this.clientId = conf.get("AZURE_CLIENT_ID");
         this.clientSecret = conf.get("AZURE_CLIENT_SECRET");
+        this.credentialCacheMaximumSize = Integer.parseInt(
+                conf.getOrDefault("CREDENTIAL_CACHE_MAXIMUM_SIZE", "10000"));
+        this.credentialCacheExpiryMarginMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(
+                conf.getOrDefault("CREDENTIAL_CACHE_EXPIRY_MARGIN_SECONDS", "60")));
+        this.roleAssignmentCacheTimeToLiveMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(
+                conf.getOrDefault("ROLE_ASSIGNMENT_CACHE_TTL_SECONDS", "300")));
+        this.roleAssignmentRefreshAfterMillis = TimeUnit.SECONDS.toMillis(Long.parseLong(
+                conf.getOrDefault("ROLE_ASSIGNMENT_REFRESH_AFTER_SECONDS", "240")));
+        this.roleAssignmentCacheMaximumSize = Integer.parseInt(
+                conf.getOrDefault("ROLE_ASSIGNMENT_CACHE_MAXIMUM_SIZE", "10000"));
+        this.roleAssignmentBatchWindowMillis = Long.parseLong(
+                conf.getOrDefault("ROLE_ASSIGNMENT_BATCH_WINDOW_MILLIS", "5"));
+        this.roleAssignmentBatchMaximumSize = Math.min(GraphBatchRoleAssignments.MAXIMUM_BATCH_SIZE, Integer.parseInt(
+                conf.getOrDefault("ROLE_ASSIGNMENT_BATCH_MAXIMUM_SIZE", "20")));
     }
 
-    public HttpBasicAuthenticator createHttpBasicAuthenticator() {
-        return new HttpBasicAuthenticator(createAzureUserPool());
+    // Each password grant takes a round trip to Azure AD, so issued tokens are reused
+    private UserPool createAzureUserPool() {
+        return new CachingUserPool(
+                new AzureUserPool(clientId, tenantId, clientSecret, azureFactory.getAzureIdentityClient()),
+                credentialCacheMaximumSize,
+                credentialCacheExpiryMarginMillis);
     }
 
-    private UserPool createAzureUserPool() {
-        return new AzureUserPool(clientId, tenantId, clientSecret, azureFactory.getAzureIdentityClient());
+    private GraphServiceClient<?> createGraphClient() {
+        return GraphServiceClient.builder()
+                .authenticationProvider(new TokenCredentialAuthProvider(
+                        Collections.singletonList("https://graph.microsoft.com/.default"), getAzureIdentityClient()))
+                .buildClient();
+    }
+
+    private RoleAssignments createRoleAssignments() {
+        return new CachingRoleAssignments(
+                createGraphRoleAssignments(),
+                createDaemonExecutor("role-assignment-refresh"),
+                roleAssignmentCacheTimeToLiveMillis,
+                roleAssignmentRefreshAfterMillis,
+                roleAssignmentCacheMaximumSize);
+    }
+
+    // Lookups of concurrent requests share one $batch round trip; a zero window sends each on its own
+    private RoleAssignments createGraphRoleAssignments() {
+        if (roleAssignmentBatchWindowMillis <= 0) {
+            return new GraphRoleAssignments(getGraphClient());
+        }
+
+        return new BatchingRoleAssignments(
+                new GraphBatchRoleAssignments(getGraphClient()),
+                createDaemonScheduler("role-assignment-batch"),
+                roleAssignmentBatchWindowMillis,
+                roleAssignmentBatchMaximumSize);
+    }
+
+    // Refreshes are deduplicated per user, so the queue is bounded by the number of cached users
+    private static ExecutorService createDaemonExecutor(String name) {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static ScheduledExecutorService createDaemonScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public TokenCredential getAzureIdentityClient() {
@@ -12,13 +12,16 @@ import core.UserPool;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
 
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 @RequiredArgsConstructor
 public class AzureUserPool implements UserPool {
 
     private static final Logger logger = LoggerFactory.getLogger(AzureUserPool.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
 
     private final String clientId;
     private final String tenantId;
@@ -26,26 +29,25 @@ public class AzureUserPool implements UserPool {
     private final ClientSecretCredential credential;
 
     @Override
-    public String verify(String username, String password) {
-        logger.info("Verifying user {}", username);
+    public CompletableFuture<String> verify(String username, String password) {
+        auditLog.info(logger, "Verifying user {}", username);
 
         // Implement authentication with Azure AD using `ClientSecretCredential`
         // Create request with Azure AD endpoint for token retrieval
-        String token = authenticateWithAzureAd(username, password, clientId);
-
-        return token;
+        return authenticateWithAzureAd(username, password, clientId);
     }
 
-    private String authenticateWithAzureAd(String username, String password, String appClientId) {
+    private CompletableFuture<String> authenticateWithAzureAd(String username, String password, String appClientId) {
         // Create a UsernamePasswordCredential using the helper method
         UsernamePasswordCredential usernamePasswordCredential = createUsernamePasswordCredential(username, password, appClientId);
        // Define the scope for the token (example: Azure Key Vault scope)
         TokenRequestContext tokenRequestContext = new TokenRequestContext()
                 .addScopes("https://vault.azure.net/.default");
 
-        // Retrieve the token
-        AccessToken accessToken = usernamePasswordCredential.getToken(tokenRequestContext).block();
-        return accessToken.getToken();
+        // Retrieve the token; the round trip to Azure AD completes the future instead of parking this thread
+        return usernamePasswordCredential.getToken(tokenRequestContext)
+                .map(AccessToken::getToken)
+                .toFuture();
     }
 
     // Helper method to create a UsernamePasswordCredential
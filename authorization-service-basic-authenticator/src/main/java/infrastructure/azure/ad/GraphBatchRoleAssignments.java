@@ -0,0 +1,107 @@
+package infrastructure.azure.ad;
+
+import com.google.gson.JsonElement;
+import com.microsoft.graph.content.BatchRequestContent;
+import com.microsoft.graph.content.BatchResponseContent;
+import com.microsoft.graph.content.BatchResponseStep;
+import com.microsoft.graph.models.AppRoleAssignment;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionRequestBuilder;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionResponse;
+import com.microsoft.graph.requests.GraphServiceClient;
+import core.BatchRoleAssignments;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+// Reads the app role assignments of several users with one JSON batch request
+@RequiredArgsConstructor
+public class GraphBatchRoleAssignments implements BatchRoleAssignments {
+
+    // Graph rejects batches with more steps than this
+    public static final int MAXIMUM_BATCH_SIZE = 20;
+
+    private static final int OK = 200;
+
+    private final GraphServiceClient<?> graphClient;
+
+    @Override
+    public CompletableFuture<Map<String, Set<String>>> getAppRoleIds(Collection<String> userIds) {
+        if (userIds.size() > MAXIMUM_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch of " + userIds.size() + " users exceeds " + MAXIMUM_BATCH_SIZE);
+        }
+
+        BatchRequestContent content = new BatchRequestContent();
+        Map<String, String> userIdsByStep = new HashMap<>();
+        for (String userId : userIds) {
+            userIdsByStep.put(content.addBatchRequestStep(
+                graphClient.users(userId).appRoleAssignments().buildRequest()), userId);
+        }
+
+        return graphClient.batch().buildRequest().postAsync(content)
+            .thenCompose(response -> readResponse(response, userIdsByStep));
+    }
+
+    private CompletableFuture<Map<String, Set<String>>> readResponse(BatchResponseContent response,
+                                                                    Map<String, String> userIdsByStep) {
+        Map<String, CompletableFuture<Set<String>>> lookups = new HashMap<>();
+        userIdsByStep.forEach((stepId, userId) -> {
+            BatchResponseStep<JsonElement> step = response.getResponseById(stepId);
+            if (step != null && step.status == OK) {
+                lookups.put(userId, readAssignments(step.getDeserializedBody(AppRoleAssignmentCollectionResponse.class)));
+            }
+        });
+
+        return CompletableFuture.allOf(lookups.values().toArray(new CompletableFuture<?>[0]))
+            .thenApply(done -> {
+                Map<String, Set<String>> appRoleIds = new HashMap<>();
+                lookups.forEach((userId, lookup) -> appRoleIds.put(userId, lookup.join()));
+                return appRoleIds;
+            });
+    }
+
+    // Further pages are rare, since a user seldom has more than a page of assignments
+    private CompletableFuture<Set<String>> readAssignments(AppRoleAssignmentCollectionResponse firstPage) {
+        Set<String> appRoleIds = new HashSet<>();
+        addAppRoleIds(appRoleIds, firstPage.value);
+        return readNextPages(appRoleIds, firstPage.nextLink).thenApply(Collections::unmodifiableSet);
+    }
+
+    // Each page is requested once the previous one has arrived, so no thread waits in between.
+    // This runs on the HTTP client's callback threads, which must never block on another call.
+    private CompletableFuture<Set<String>> readNextPages(Set<String> appRoleIds, String nextLink) {
+        if (nextLink == null) {
+            return CompletableFuture.completedFuture(appRoleIds);
+        }
+
+        return new AppRoleAssignmentCollectionRequestBuilder(nextLink, graphClient, null).buildRequest().getAsync()
+            .thenCompose(page -> {
+                if (page == null) {
+                    return CompletableFuture.completedFuture(appRoleIds);
+                }
+
+                addAppRoleIds(appRoleIds, page.getCurrentPage());
+                return readNextPages(appRoleIds,
+                    page.getNextPage() == null ? null : page.getNextPage().getRequestUrl());
+            });
+    }
+
+    private static void addAppRoleIds(Set<String> appRoleIds, List<AppRoleAssignment> assignments) {
+        if (assignments == null) {
+            return;
+        }
+
+        for (AppRoleAssignment assignment : assignments) {
+            if (assignment.appRoleId != null) {
+                appRoleIds.add(assignment.appRoleId.toString());
+            }
+        }
+    }
+
+}
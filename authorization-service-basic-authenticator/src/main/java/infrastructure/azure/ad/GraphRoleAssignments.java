@@ -0,0 +1,37 @@
+package infrastructure.azure.ad;
+
+import com.microsoft.graph.models.AppRoleAssignment;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionPage;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionRequestBuilder;
+import com.microsoft.graph.requests.GraphServiceClient;
+import core.RoleAssignments;
+import lombok.RequiredArgsConstructor;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+@RequiredArgsConstructor
+public class GraphRoleAssignments implements RoleAssignments {
+
+    private final GraphServiceClient<?> graphClient;
+
+    @Override
+    public Set<String> getAppRoleIds(String userId) {
+        Set<String> appRoleIds = new HashSet<>();
+        AppRoleAssignmentCollectionPage page = graphClient.users(userId).appRoleAssignments().buildRequest().get();
+        while (page != null) {
+            for (AppRoleAssignment assignment : page.getCurrentPage()) {
+                if (assignment.appRoleId != null) {
+                    appRoleIds.add(assignment.appRoleId.toString());
+                }
+            }
+
+            AppRoleAssignmentCollectionRequestBuilder nextPage = page.getNextPage();
+            page = nextPage == null ? null : nextPage.buildRequest().get();
+        }
+
+        return Collections.unmodifiableSet(appRoleIds);
+    }
+
+}
@@ -7,20 +7,23 @@ import core.HttpBasicAuthenticator;
 import core.Principal;
 import infrastructure.azure.AzureFactory;
 import com.microsoft.azure.functions.*;
-import com.microsoft.graph.authentication.TokenCredentialAuthProvider;
-import com.microsoft.graph.requests.GraphServiceClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
 import shared.infrastructure.azure.gateway.AuthorizerRequest;
 import shared.infrastructure.azure.gateway.AuthorizerResponse;
+import shared.infrastructure.azure.gateway.JsonUtil;
+import shared.infrastructure.azure.gateway.proxy.HttpHeaders;
 
-import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
 public class AuthorizerRequestHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthorizerRequestHandler.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
     private final AzureFactory factory;
     private static final String REQUIRED_ROLE_ID = "your-required-role-id"; // Define the required role ID here
 
@@ -37,7 +40,7 @@ public class AuthorizerRequestHandler {
             @HttpTrigger(name = "req", methods = {HttpMethod.POST}, authLevel = AuthorizationLevel.FUNCTION)
             HttpRequestMessage<Optional<AuthorizerRequest>> request) {
 
-        HttpBasicAuthenticator authenticator = factory.createHttpBasicAuthenticator();
+        HttpBasicAuthenticator authenticator = factory.getHttpBasicAuthenticator();
         Principal principal = new Principal();
         AuthorizerResponse response;
 
@@ -48,13 +51,17 @@ public class AuthorizerRequestHandler {
                         .body("Authorization token is missing").build();
             }
 
-            // Authenticate with Azure AD
-            principal = authenticator.authenticate(authToken);
-            logger.info("User {} authenticated successfully.", principal.getUsername());
+            // Authenticate with Azure AD and look up the user's app roles without holding this
+            // thread; the function runtime expects a result, so this is the one place we wait
+            CompletableFuture<Principal> authentication = authenticator.authenticate(authToken);
+            boolean hasRequiredRole = join(authentication.thenCompose(this::hasRequiredRole));
+            // The role check only completes after authentication, so this doesn't wait
+            principal = authentication.join();
+            auditLog.info(logger, "User {} authenticated successfully.", principal.getUsername());
 
             // Check if user has required role
-            if (!hasRequiredRole(principal, authToken)) {
-                logger.warn("User {} does not have the required role.", principal.getUsername());
+            if (!hasRequiredRole) {
+                auditLog.warn(logger, "User {} does not have the required role.", principal.getUsername());
                 return request.createResponseBuilder(HttpStatus.FORBIDDEN)
                         .body("User does not have the required role").build();
             }
@@ -69,29 +76,33 @@ public class AuthorizerRequestHandler {
                     .build();
 
             return request.createResponseBuilder(HttpStatus.OK)
-                    .body(response)
+                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .body(JsonUtil.toJsonString(response))
                     .build();
 
         } catch (Exception e) {
-            logger.error("Authentication failed: {}", e.getMessage(), e);
+            auditLog.error(logger, "Authentication failed: {}", e.getMessage(), e);
             return request.createResponseBuilder(HttpStatus.UNAUTHORIZED)
                     .body("Unauthorized: " + e.getMessage())
                     .build();
         }
     }
 
-    private boolean hasRequiredRole(Principal principal, String authToken) {
-        // Configure Graph client
-        TokenCredentialAuthProvider authProvider = new TokenCredentialAuthProvider(Collections.singletonList("https://graph.microsoft.com/.default"), factory.getAzureIdentityClient());
-        GraphServiceClient<?> graphClient = GraphServiceClient.builder()
-                .authenticationProvider(authProvider)
-                .buildClient();
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
 
-        // Fetch user's roles
-        var roles = graphClient.users(principal.getId()).appRoleAssignments().buildRequest().get();
+            throw e;
+        }
+    }
 
-        // Check if the required role ID is among the user's roles
-        return roles.getCurrentPage().stream()
-                .anyMatch(role -> REQUIRED_ROLE_ID.equals(role.appRoleId));
+    // Served from the role assignment cache, Graph is only asked for users not seen lately
+    private CompletableFuture<Boolean> hasRequiredRole(Principal principal) {
+        return factory.getRoleAssignments().getAppRoleIdsAsync(principal.getId())
+                .thenApply(appRoleIds -> appRoleIds.contains(REQUIRED_ROLE_ID));
     }
 }
@@ -0,0 +1,135 @@
+package core;
+
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+public class BatchingRoleAssignmentsTest {
+
+    private BatchRoleAssignments mockBatchRoleAssignments;
+    private List<Runnable> flushes;
+    private List<Collection<String>> batches;
+    private CompletableFuture<Map<String, Set<String>>> response;
+    private BatchingRoleAssignments roleAssignments;
+
+    @BeforeMethod
+    public void setUp() {
+        flushes = new ArrayList<>();
+        batches = new ArrayList<>();
+        response = new CompletableFuture<>();
+        mockBatchRoleAssignments = Mockito.mock(BatchRoleAssignments.class);
+        Mockito.when(mockBatchRoleAssignments.getAppRoleIds(Mockito.any())).thenAnswer(invocation -> {
+            batches.add(new HashSet<>(invocation.<Collection<String>>getArgument(0)));
+            return response;
+        });
+        ScheduledExecutorService scheduler = Mockito.mock(ScheduledExecutorService.class);
+        Mockito.when(scheduler.schedule(Mockito.any(Runnable.class), Mockito.anyLong(), Mockito.any()))
+            .thenAnswer(invocation -> {
+                flushes.add(invocation.getArgument(0));
+                return null;
+            });
+        roleAssignments = new BatchingRoleAssignments(mockBatchRoleAssignments, scheduler, 5L, 3);
+    }
+
+    @Test
+    public void testLookupsInOneWindowAreSentTogether() {
+        CompletableFuture<Set<String>> foo = roleAssignments.getAppRoleIdsAsync("foo");
+        CompletableFuture<Set<String>> bar = roleAssignments.getAppRoleIdsAsync("bar");
+        Assert.assertTrue(batches.isEmpty());
+        Assert.assertEquals(flushes.size(), 1);
+
+        flushes.get(0).run();
+        response.complete(appRoleIds("foo", "reader", "bar", "writer"));
+
+        Assert.assertEquals(batches, Collections.singletonList(new HashSet<>(Arrays.asList("foo", "bar"))));
+        Assert.assertEquals(foo.join(), Collections.singleton("reader"));
+        Assert.assertEquals(bar.join(), Collections.singleton("writer"));
+        Assert.assertEquals(roleAssignments.getBatchCount(), 1);
+    }
+
+    @Test
+    public void testFullBatchIsSentWithoutWaiting() {
+        roleAssignments.getAppRoleIdsAsync("foo");
+        roleAssignments.getAppRoleIdsAsync("bar");
+        roleAssignments.getAppRoleIdsAsync("baz");
+
+        Assert.assertEquals(batches.size(), 1);
+        Assert.assertEquals(batches.get(0).size(), 3);
+
+        // The timer of the window that filled up has nothing left to send
+        flushes.get(0).run();
+        Assert.assertEquals(batches.size(), 1);
+    }
+
+    @Test
+    public void testPendingUserIsLookedUpOnce() {
+        CompletableFuture<Set<String>> first = roleAssignments.getAppRoleIdsAsync("foo");
+        CompletableFuture<Set<String>> second = roleAssignments.getAppRoleIdsAsync("foo");
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(roleAssignments.getLookupCount(), 1);
+    }
+
+    @Test
+    public void testUserMissingFromResponseFails() {
+        CompletableFuture<Set<String>> foo = roleAssignments.getAppRoleIdsAsync("foo");
+        CompletableFuture<Set<String>> bar = roleAssignments.getAppRoleIdsAsync("bar");
+        flushes.get(0).run();
+        response.complete(appRoleIds("foo", "reader"));
+
+        Assert.assertEquals(foo.join(), Collections.singleton("reader"));
+        Assert.assertTrue(bar.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testFailedBatchFailsEveryLookup() {
+        CompletableFuture<Set<String>> foo = roleAssignments.getAppRoleIdsAsync("foo");
+        flushes.get(0).run();
+        response.completeExceptionally(new IllegalStateException("Graph is down"));
+
+        Assert.assertTrue(foo.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testGetAppRoleIdsRethrowsCause() {
+        BatchRoleAssignments failing = Mockito.mock(BatchRoleAssignments.class);
+        Mockito.when(failing.getAppRoleIds(Mockito.any())).thenThrow(new IllegalStateException("Graph is down"));
+        ScheduledExecutorService scheduler = Mockito.mock(ScheduledExecutorService.class);
+        Mockito.when(scheduler.schedule(Mockito.any(Runnable.class), Mockito.anyLong(), Mockito.any()))
+            .thenAnswer(invocation -> {
+                invocation.<Runnable>getArgument(0).run();
+                return null;
+            });
+        roleAssignments = new BatchingRoleAssignments(failing, scheduler, 5L, 3);
+
+        Assert.expectThrows(IllegalStateException.class, () -> roleAssignments.getAppRoleIds("foo"));
+        ArgumentCaptor<Long> delay = ArgumentCaptor.forClass(Long.class);
+        Mockito.verify(scheduler).schedule(Mockito.any(Runnable.class), delay.capture(), Mockito.eq(TimeUnit.MILLISECONDS));
+        Assert.assertEquals(delay.getValue().longValue(), 5L);
+    }
+
+    private static Map<String, Set<String>> appRoleIds(String... userAndRole) {
+        Map<String, Set<String>> appRoleIds = new HashMap<>();
+        for (int i = 0; i < userAndRole.length; i += 2) {
+            appRoleIds.put(userAndRole[i], Collections.singleton(userAndRole[i + 1]));
+        }
+
+        return appRoleIds;
+    }
+
+}
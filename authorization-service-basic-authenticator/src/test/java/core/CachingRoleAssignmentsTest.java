@@ -0,0 +1,166 @@
+package core;
+
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+public class CachingRoleAssignmentsTest {
+
+    private static final long NOW = 1234567890000L;
+
+    private RoleAssignments mockRoleAssignments;
+    private Clock clock;
+    private List<Runnable> refreshes;
+    private CachingRoleAssignments roleAssignments;
+
+    @BeforeMethod
+    public void setUp() {
+        mockRoleAssignments = Mockito.mock(RoleAssignments.class);
+        // Background refreshes go through the async lookup, which answers like the stubbed blocking one
+        Mockito.when(mockRoleAssignments.getAppRoleIdsAsync(Mockito.anyString())).thenAnswer(invocation -> {
+            try {
+                return CompletableFuture.completedFuture(mockRoleAssignments.getAppRoleIds(invocation.getArgument(0)));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        });
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(NOW);
+        refreshes = new ArrayList<>();
+        Executor executor = refreshes::add;
+        roleAssignments = new CachingRoleAssignments(mockRoleAssignments, executor, 300_000L, 240_000L, 10, clock);
+    }
+
+    @Test
+    public void testWarmUserIsServedFromCache() {
+        Mockito.when(mockRoleAssignments.getAppRoleIds("foo")).thenReturn(Collections.singleton("reader"));
+
+        Assert.assertEquals(roleAssignments.getAppRoleIds("foo"), Collections.singleton("reader"));
+        Assert.assertEquals(roleAssignments.getAppRoleIds("foo"), Collections.singleton("reader"));
+
+        Mockito.verify(mockRoleAssignments, Mockito.times(1)).getAppRoleIds("foo");
+        Assert.assertEquals(roleAssignments.getHitCount(), 1);
+        Assert.assertEquals(roleAssignments.getMissCount(), 1);
+    }
+
+    @Test
+    public void testStaleEntryIsRefreshedInBackground() {
+        Set<String> refreshed = Collections.singleton("writer");
+        Mockito.when(mockRoleAssignments.getAppRoleIds("foo")).thenReturn(Collections.singleton("reader"), refreshed);
+        roleAssignments.getAppRoleIds("foo");
+        Mockito.when(clock.millis()).thenReturn(NOW + 250_000L);
+
+        // The stale entry is served while a single refresh is queued
+        Assert.assertEquals(roleAssignments.getAppRoleIds("foo"), Collections.singleton("reader"));
+        Assert.assertEquals(roleAssignments.getAppRoleIds("foo"), Collections.singleton("reader"));
+        Assert.assertEquals(refreshes.size(), 1);
+
+        refreshes.get(0).run();
+
+        Assert.assertSame(roleAssignments.getAppRoleIds("foo"), refreshed);
+        Assert.assertEquals(roleAssignments.getRefreshCount(), 1);
+        Mockito.verify(mockRoleAssignments, Mockito.times(2)).getAppRoleIds("foo");
+    }
+
+    @Test
+    public void testRefreshDoesntWaitForAsyncLookup() {
+        Mockito.when(mockRoleAssignments.getAppRoleIds("foo")).thenReturn(Collections.singleton("reader"));
+        roleAssignments.getAppRoleIds("foo");
+        Mockito.when(clock.millis()).thenReturn(NOW + 250_000L);
+        CompletableFuture<Set<String>> lookup = new CompletableFuture<>();
+        Mockito.doReturn(lookup).when(mockRoleAssignments).getAppRoleIdsAsync("foo");
+        roleAssignments.getAppRoleIds("foo");
+
+        // The refresh task returns while the lookup is still pending, e.g. in an open batch window
+        refreshes.get(0).run();
+        Assert.assertEquals(roleAssignments.getRefreshCount(), 0);
+
+        Set<String> refreshed = Collections.singleton("writer");
+        lookup.complete(refreshed);
+
+        Assert.assertSame(roleAssignments.getAppRoleIds("foo"), refreshed);
+        Assert.assertEquals(roleAssignments.getRefreshCount(), 1);
+    }
+
+    @Test
+    public void testAsyncLookupIsCached() {
+        CompletableFuture<Set<String>> lookup = new CompletableFuture<>();
+        Mockito.doReturn(lookup).when(mockRoleAssignments).getAppRoleIdsAsync("foo");
+
+        // A miss is composed on the source's lookup instead of waiting for it
+        CompletableFuture<Set<String>> appRoleIds = roleAssignments.getAppRoleIdsAsync("foo");
+        Assert.assertFalse(appRoleIds.isDone());
+        lookup.complete(Collections.singleton("reader"));
+
+        Assert.assertEquals(appRoleIds.join(), Collections.singleton("reader"));
+        Assert.assertEquals(roleAssignments.getAppRoleIdsAsync("foo").join(), Collections.singleton("reader"));
+        Mockito.verify(mockRoleAssignments, Mockito.times(1)).getAppRoleIdsAsync("foo");
+        Mockito.verify(mockRoleAssignments, Mockito.never()).getAppRoleIds("foo");
+        Assert.assertEquals(roleAssignments.getHitCount(), 1);
+        Assert.assertEquals(roleAssignments.getMissCount(), 1);
+    }
+
+    @Test
+    public void testFailedRefreshIsRetried() {
+        Mockito.when(mockRoleAssignments.getAppRoleIds("foo")).thenReturn(Collections.singleton("reader"));
+        roleAssignments.getAppRoleIds("foo");
+        Mockito.when(clock.millis()).thenReturn(NOW + 250_000L);
+        Mockito.when(mockRoleAssignments.getAppRoleIds("foo")).thenThrow(new IllegalStateException("Graph is down"));
+        roleAssignments.getAppRoleIds("foo");
+
+        refreshes.get(0).run();
+        roleAssignments.getAppRoleIds("foo");
+
+        Assert.assertEquals(refreshes.size(), 2);
+        Assert.assertEquals(roleAssignments.getAppRoleIds("foo"), Collections.singleton("reader"));
+    }
+
+    @Test
+    public void testExpiredEntryIsLoadedAgain() {
+        Mockito.when(mockRoleAssignments.getAppRoleIds("foo"))
+            .thenReturn(Collections.singleton("reader"), Collections.emptySet());
+        roleAssignments.getAppRoleIds("foo");
+        Mockito.when(clock.millis()).thenReturn(NOW + 300_000L);
+
+        Assert.assertEquals(roleAssignments.getAppRoleIds("foo"), Collections.emptySet());
+        Assert.assertTrue(refreshes.isEmpty());
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        Mockito.when(mockRoleAssignments.getAppRoleIds(Mockito.anyString())).thenReturn(Collections.emptySet());
+
+        for (int i = 0; i < 25; i++) {
+            roleAssignments.getAppRoleIds("user" + i);
+        }
+
+        Assert.assertTrue(roleAssignments.size() <= 10);
+    }
+
+    @Test
+    public void testExpiredEntriesMakeRoomFirst() {
+        CachingRoleAssignments roleAssignments =
+            new CachingRoleAssignments(mockRoleAssignments, refreshes::add, 300_000L, 240_000L, 2, clock);
+        Mockito.when(mockRoleAssignments.getAppRoleIds(Mockito.anyString())).thenReturn(Collections.emptySet());
+        roleAssignments.getAppRoleIds("old");
+        Mockito.when(clock.millis()).thenReturn(NOW + 200_000L);
+        roleAssignments.getAppRoleIds("live");
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 300_000L);
+        roleAssignments.getAppRoleIds("new");
+        roleAssignments.getAppRoleIds("live");
+
+        Assert.assertEquals(roleAssignments.size(), 2);
+        Mockito.verify(mockRoleAssignments, Mockito.times(1)).getAppRoleIds("live");
+    }
+
+}
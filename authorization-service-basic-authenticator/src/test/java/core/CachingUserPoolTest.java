@@ -0,0 +1,211 @@
+package core;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+
+public class CachingUserPoolTest {
+
+    private static final long NOW = 1234567890000L;
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+
+    private UserPool mockUserPool;
+    private Clock clock;
+    private CachingUserPool userPool;
+
+    @BeforeMethod
+    public void setUp() {
+        mockUserPool = Mockito.mock(UserPool.class);
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(NOW);
+        userPool = new CachingUserPool(mockUserPool, 10, 60_000L, clock);
+    }
+
+    @Test
+    public void testRepeatedCredentialsAreServedFromCache() throws Exception {
+        String token = token(NOW + 3_600_000L);
+        Mockito.when(mockUserPool.verify("foo", "secret")).thenReturn(CompletableFuture.completedFuture(token));
+
+        Assert.assertEquals(userPool.verify("foo", "secret").join(), token);
+        Assert.assertEquals(userPool.verify("foo", "secret").join(), token);
+
+        Mockito.verify(mockUserPool, Mockito.times(1)).verify("foo", "secret");
+        Assert.assertEquals(userPool.getHitCount(), 1);
+        Assert.assertEquals(userPool.getMissCount(), 1);
+    }
+
+    @Test
+    public void testOtherPasswordIsVerified() throws Exception {
+        Mockito.when(mockUserPool.verify("foo", "secret")).thenReturn(
+            CompletableFuture.completedFuture(token(NOW + 3_600_000L)));
+        Mockito.when(mockUserPool.verify("foo", "wrong")).thenThrow(new IllegalStateException("Invalid credentials"));
+        userPool.verify("foo", "secret");
+
+        Assert.expectThrows(IllegalStateException.class, () -> userPool.verify("foo", "wrong"));
+        Assert.expectThrows(IllegalStateException.class, () -> userPool.verify("foo", "wrong"));
+
+        Mockito.verify(mockUserPool, Mockito.times(2)).verify("foo", "wrong");
+        Assert.assertEquals(userPool.size(), 1);
+    }
+
+    @Test
+    public void testTokenIsReplacedShortlyBeforeExpiry() throws Exception {
+        String first = token(NOW + 120_000L);
+        String second = token(NOW + 3_600_000L);
+        Mockito.when(mockUserPool.verify("foo", "secret")).thenReturn(
+            CompletableFuture.completedFuture(first), CompletableFuture.completedFuture(second));
+        userPool.verify("foo", "secret");
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 60_000L);
+
+        Assert.assertEquals(userPool.verify("foo", "secret").join(), second);
+        Mockito.verify(mockUserPool, Mockito.times(2)).verify("foo", "secret");
+    }
+
+    @Test
+    public void testTokenWithoutExpiryIsNotCached() {
+        Mockito.when(mockUserPool.verify("foo", "secret")).thenReturn(CompletableFuture.completedFuture("opaque-token"));
+
+        userPool.verify("foo", "secret");
+        userPool.verify("foo", "secret");
+
+        Mockito.verify(mockUserPool, Mockito.times(2)).verify("foo", "secret");
+        Assert.assertEquals(userPool.size(), 0);
+    }
+
+    @Test
+    public void testSizeIsBounded() throws Exception {
+        String token = token(NOW + 3_600_000L);
+        Mockito.when(mockUserPool.verify(Mockito.anyString(), Mockito.anyString()))
+            .thenReturn(CompletableFuture.completedFuture(token));
+
+        for (int i = 0; i < 25; i++) {
+            userPool.verify("user" + i, "secret");
+        }
+
+        Assert.assertTrue(userPool.size() <= 10);
+    }
+
+    @Test
+    public void testExpiredTokensMakeRoomFirst() throws Exception {
+        CachingUserPool userPool = new CachingUserPool(mockUserPool, 2, 60_000L, clock);
+        Mockito.when(mockUserPool.verify("old", "secret")).thenReturn(
+            CompletableFuture.completedFuture(token(NOW + 120_000L)));
+        Mockito.when(mockUserPool.verify(Mockito.matches("live|new"), Mockito.eq("secret"))).thenReturn(
+            CompletableFuture.completedFuture(token(NOW + 3_600_000L)));
+        userPool.verify("old", "secret");
+        userPool.verify("live", "secret");
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 61_000L);
+        userPool.verify("new", "secret");
+        userPool.verify("live", "secret");
+
+        Assert.assertEquals(userPool.size(), 2);
+        Mockito.verify(mockUserPool, Mockito.times(1)).verify("live", "secret");
+    }
+
+    @Test
+    public void testTokenIsCachedOnceIssued() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        Mockito.when(mockUserPool.verify("foo", "secret")).thenReturn(pending);
+
+        CompletableFuture<String> actual = userPool.verify("foo", "secret");
+        Assert.assertFalse(actual.isDone());
+        Assert.assertEquals(userPool.size(), 0);
+
+        pending.complete(token(NOW + 3_600_000L));
+
+        Assert.assertTrue(actual.isDone());
+        Assert.assertEquals(userPool.size(), 1);
+    }
+
+    @Test
+    public void testFailedVerificationIsNotCached() {
+        Mockito.when(mockUserPool.verify("foo", "wrong"))
+            .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("Invalid credentials")));
+
+        Assert.assertTrue(userPool.verify("foo", "wrong").isCompletedExceptionally());
+        Assert.assertEquals(userPool.size(), 0);
+    }
+
+    @Test
+    public void testConcurrentCallersShareOneVerification() throws Exception {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        Mockito.when(mockUserPool.verify("foo", "secret")).thenReturn(pending);
+
+        CompletableFuture<String> first = userPool.verify("foo", "secret");
+        CompletableFuture<String> second = userPool.verify("foo", "secret");
+        Assert.assertEquals(userPool.getInFlightCount(), 1);
+
+        String token = token(NOW + 3_600_000L);
+        pending.complete(token);
+
+        Assert.assertEquals(first.join(), token);
+        Assert.assertEquals(second.join(), token);
+        Mockito.verify(mockUserPool, Mockito.times(1)).verify("foo", "secret");
+        Assert.assertEquals(userPool.getCoalescedCount(), 1);
+        Assert.assertEquals(userPool.getInFlightCount(), 0);
+    }
+
+    @Test
+    public void testConcurrentCallersShareFailure() {
+        CompletableFuture<String> pending = new CompletableFuture<>();
+        Mockito.when(mockUserPool.verify("foo", "wrong")).thenReturn(pending);
+
+        CompletableFuture<String> first = userPool.verify("foo", "wrong");
+        CompletableFuture<String> second = userPool.verify("foo", "wrong");
+        pending.completeExceptionally(new IllegalStateException("Invalid credentials"));
+
+        Assert.assertTrue(first.isCompletedExceptionally());
+        Assert.assertTrue(second.isCompletedExceptionally());
+        Assert.assertEquals(userPool.getInFlightCount(), 0);
+
+        // A later attempt goes to the user pool again
+        Mockito.when(mockUserPool.verify("foo", "wrong")).thenReturn(new CompletableFuture<>());
+        userPool.verify("foo", "wrong");
+        Mockito.verify(mockUserPool, Mockito.times(2)).verify("foo", "wrong");
+    }
+
+    @Test
+    public void testOtherPasswordIsNotCoalesced() {
+        Mockito.when(mockUserPool.verify(Mockito.anyString(), Mockito.anyString())).thenReturn(new CompletableFuture<>());
+
+        userPool.verify("foo", "secret");
+        userPool.verify("foo", "wrong");
+
+        Mockito.verify(mockUserPool).verify("foo", "secret");
+        Mockito.verify(mockUserPool).verify("foo", "wrong");
+        Assert.assertEquals(userPool.getCoalescedCount(), 0);
+    }
+
+    @Test
+    public void testUsernameAndPasswordDontRunTogether() throws Exception {
+        Mockito.when(mockUserPool.verify("foo", "bar")).thenReturn(
+            CompletableFuture.completedFuture(token(NOW + 3_600_000L)));
+        Mockito.when(mockUserPool.verify("foob", "ar")).thenReturn(
+            CompletableFuture.completedFuture(token(NOW + 3_600_000L)));
+        userPool.verify("foo", "bar");
+
+        userPool.verify("foob", "ar");
+
+        Mockito.verify(mockUserPool).verify("foob", "ar");
+    }
+
+    private static String token(long expiresAt) throws Exception {
+        SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256),
+            new JWTClaimsSet.Builder().subject("foo").expirationTime(new Date(expiresAt)).build());
+        jwt.sign(new MACSigner(SECRET));
+        return jwt.serialize();
+    }
+
+}
@@ -9,9 +9,26 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.MACSigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 public class HttpBasicAuthenticatorTest {
@@ -33,14 +50,14 @@ public class HttpBasicAuthenticatorTest {
 
         // Configure mock to return an Azure AD access token for valid credentials
         Mockito.when(mockUserPool.verify(Mockito.anyString(), Mockito.anyString()))
-                .thenReturn(accessToken);
+                .thenReturn(CompletableFuture.completedFuture(accessToken));
     }
 
     @Test
     public void testAuth() {
         // Test a valid Azure AD token
         Principal actual = basicAuthenticator.authenticate(
-                "Basic aHR0cHdhdGNoOmY=");
+                "Basic aHR0cHdhdGNoOmY=").join();
 
         Assert.assertNotNull(actual);
         Assert.assertEquals(actual.getId(), "1234567890"); // Replace with the expected Azure AD subject ID
@@ -50,6 +67,20 @@ public class HttpBasicAuthenticatorTest {
         Mockito.verify(mockUserPool).verify("httpwatch", "f");
     }
 
+    @Test
+    public void testAuthDoesNotWaitForUserPool() {
+        CompletableFuture<String> token = new CompletableFuture<>();
+        Mockito.when(mockUserPool.verify("httpwatch", "f")).thenReturn(token);
+
+        CompletableFuture<Principal> actual = basicAuthenticator.authenticate("Basic aHR0cHdhdGNoOmY=");
+        Assert.assertFalse(actual.isDone());
+
+        token.complete(new BufferedReader(new InputStreamReader(
+                HttpBasicAuthenticatorTest.class.getResourceAsStream("/AzureAccessToken.jwt")))
+                .lines().collect(Collectors.joining()));
+        Assert.assertEquals(actual.join().getUsername(), "admin");
+    }
+
     @DataProvider
     public Object[][] samples() {
         return new Object[][]{
@@ -62,19 +93,62 @@ public class HttpBasicAuthenticatorTest {
     @Test(dataProvider = "samples", expectedExceptions = BasicAuthenticationException.class)
     public void testFailAuth(String header) {
         // Test invalid or malformed tokens
-        Principal actual = basicAuthenticator.authenticate(header);
+        Principal actual = basicAuthenticator.authenticate(header).join();
 
         Assert.assertNull(actual);
     }
 
+    @Test
+    public void testConcurrentAuthentication() throws Exception {
+        // One shared authenticator serves all invocations, so principals must never mix between users
+        MACSigner signer = new MACSigner(new byte[32]);
+        Mockito.reset(mockUserPool);
+        Mockito.when(mockUserPool.verify(Mockito.anyString(), Mockito.anyString())).thenAnswer(invocation -> {
+            SignedJWT jwt = new SignedJWT(new JWSHeader(JWSAlgorithm.HS256), new JWTClaimsSet.Builder()
+                    .subject(invocation.getArgument(0))
+                    .claim("name", invocation.getArgument(0))
+                    .expirationTime(new Date(1234567890000L))
+                    .build());
+            jwt.sign(signer);
+            return CompletableFuture.completedFuture(jwt.serialize());
+        });
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            String username = "user" + i;
+            String header = "Basic " + Base64.getEncoder().encodeToString(
+                    (username + ":secret").getBytes(StandardCharsets.UTF_8));
+            results.add(executor.submit(() -> {
+                start.await();
+                for (int j = 0; j < 50; j++) {
+                    Principal actual = basicAuthenticator.authenticate(header).join();
+                    Assert.assertEquals(actual.getId(), username);
+                    Assert.assertEquals(actual.getUsername(), username);
+                }
+
+                return null;
+            }));
+        }
+
+        start.countDown();
+        for (Future<?> result : results) {
+            result.get(30, TimeUnit.SECONDS);
+        }
+
+        executor.shutdown();
+    }
+
     @Test(expectedExceptions = RuntimeException.class)
     public void testFailAuthWithException() {
         // Reset and simulate an error from Azure AD during token verification
         Mockito.reset(mockUserPool);
         Mockito.when(mockUserPool.verify("httpwatch", "f"))
-                .thenThrow(RuntimeException.class);
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException()));
 
-        Principal actual = basicAuthenticator.authenticate("Basic aHR0cHdhdGNoOmY=");
+        Principal actual = basicAuthenticator.authenticate("Basic aHR0cHdhdGNoOmY=").join();
 
         Assert.assertNull(actual);
     }
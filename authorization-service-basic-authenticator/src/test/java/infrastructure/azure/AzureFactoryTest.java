@@ -38,10 +38,11 @@ public class AzureFactoryTest {
     }
 
     @Test
-    public void testCreateHttpBasicAuthenticator() {
-        HttpBasicAuthenticator actual = azureFactory.createHttpBasicAuthenticator();
+    public void testGetHttpBasicAuthenticator() {
+        HttpBasicAuthenticator actual = azureFactory.getHttpBasicAuthenticator();
 
         Assert.assertNotNull(actual);
+        Assert.assertSame(azureFactory.getHttpBasicAuthenticator(), actual);
     }
 
     @Test
@@ -47,7 +47,7 @@ public class AzureUserPoolTest {
                 .thenReturn(Mono.just(mockAccessToken));
 
         // Call the verify method on AzureUserPool
-        String actualToken = userPool.verify("username", "password");
+        String actualToken = userPool.verify("username", "password").join();
 
         // Verify the response
         Assert.assertNotNull(actualToken);
@@ -0,0 +1,183 @@
+package infrastructure.azure.ad;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.microsoft.graph.requests.GraphServiceClient;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Runs against a local stand-in for the Graph $batch endpoint
+public class GraphBatchRoleAssignmentsTest {
+
+    private static final String READER = "a0f1c3b4-67e8-49c2-8f1e-d3f8a5b7c8d9";
+    private static final String WRITER = "b1f2c3d4-67e8-49c2-8f1e-d3f8a5b7c8d9";
+    private static final Pattern USER_URL = Pattern.compile("/users/([^/]+)/appRoleAssignments");
+
+    private HttpServer server;
+    private GraphServiceClient<?> graphClient;
+    private final AtomicInteger batchRequests = new AtomicInteger();
+    private final AtomicInteger pageRequests = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/v1.0/$batch", this::handleBatch);
+        server.createContext("/v1.0/users/", this::handleNextPage);
+        server.start();
+
+        String serviceRoot = "http://localhost:" + server.getAddress().getPort() + "/v1.0";
+        graphClient = GraphServiceClient.builder()
+            .authenticationProvider(url -> CompletableFuture.completedFuture("token"))
+            .buildClient();
+        graphClient.setServiceRoot(serviceRoot);
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    @BeforeMethod
+    public void resetCounts() {
+        batchRequests.set(0);
+        pageRequests.set(0);
+    }
+
+    @Test
+    public void testUsersAreReadInOneRequest() {
+        Map<String, Set<String>> actual = new GraphBatchRoleAssignments(graphClient)
+            .getAppRoleIds(Arrays.asList("reader", "writer", "nobody")).join();
+
+        Assert.assertEquals(actual.get("reader"), Collections.singleton(READER));
+        Assert.assertEquals(actual.get("writer"), Collections.singleton(WRITER));
+        Assert.assertEquals(actual.get("nobody"), Collections.emptySet());
+        Assert.assertEquals(batchRequests.get(), 1);
+    }
+
+    @Test
+    public void testFailedStepIsLeftOut() {
+        Map<String, Set<String>> actual = new GraphBatchRoleAssignments(graphClient)
+            .getAppRoleIds(Arrays.asList("reader", "missing")).join();
+
+        Assert.assertEquals(actual.keySet(), Collections.singleton("reader"));
+    }
+
+    @Test
+    public void testFurtherPagesAreFollowed() {
+        Map<String, Set<String>> actual = new GraphBatchRoleAssignments(graphClient)
+            .getAppRoleIds(Collections.singletonList("paged")).join();
+
+        Assert.assertEquals(actual.get("paged"), new HashSet<>(Arrays.asList(READER, WRITER)));
+        Assert.assertEquals(pageRequests.get(), 1);
+    }
+
+    @Test
+    public void testOversizedBatchIsRejected() {
+        String[] userIds = new String[GraphBatchRoleAssignments.MAXIMUM_BATCH_SIZE + 1];
+        Arrays.fill(userIds, "reader");
+
+        Assert.expectThrows(IllegalArgumentException.class,
+            () -> new GraphBatchRoleAssignments(graphClient).getAppRoleIds(Arrays.asList(userIds)));
+    }
+
+    private void handleBatch(HttpExchange exchange) throws IOException {
+        batchRequests.incrementAndGet();
+        JsonObject batch;
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            batch = JsonParser.parseReader(reader).getAsJsonObject();
+        }
+
+        JsonArray responses = new JsonArray();
+        for (JsonElement request : batch.getAsJsonArray("requests")) {
+            JsonObject step = request.getAsJsonObject();
+            Matcher matcher = USER_URL.matcher(step.get("url").getAsString());
+            String userId = matcher.find() ? matcher.group(1) : "";
+
+            JsonObject response = new JsonObject();
+            response.add("id", step.get("id"));
+            JsonObject headers = new JsonObject();
+            headers.addProperty("Content-Type", "application/json");
+            response.add("headers", headers);
+            if ("missing".equals(userId)) {
+                response.addProperty("status", 404);
+                response.add("body", JsonParser.parseString(
+                    "{\"error\":{\"code\":\"Request_ResourceNotFound\",\"message\":\"Not found\"}}"));
+            } else {
+                response.addProperty("status", 200);
+                response.add("body", firstPage(userId));
+            }
+
+            responses.add(response);
+        }
+
+        JsonObject body = new JsonObject();
+        body.add("responses", responses);
+        respond(exchange, body);
+    }
+
+    private JsonObject firstPage(String userId) {
+        switch (userId) {
+            case "reader":
+                return page(READER);
+            case "writer":
+                return page(WRITER);
+            case "paged":
+                JsonObject page = page(READER);
+                page.addProperty("@odata.nextLink", "http://localhost:" + server.getAddress().getPort()
+                    + "/v1.0/users/paged/appRoleAssignments?$skiptoken=2");
+                return page;
+            default:
+                return page();
+        }
+    }
+
+    private void handleNextPage(HttpExchange exchange) throws IOException {
+        pageRequests.incrementAndGet();
+        respond(exchange, page(WRITER));
+    }
+
+    private static JsonObject page(String... appRoleIds) {
+        JsonArray value = new JsonArray();
+        for (String appRoleId : appRoleIds) {
+            JsonObject assignment = new JsonObject();
+            assignment.addProperty("appRoleId", appRoleId);
+            value.add(assignment);
+        }
+
+        JsonObject page = new JsonObject();
+        page.add("value", value);
+        return page;
+    }
+
+    private static void respond(HttpExchange exchange, JsonObject body) throws IOException {
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package infrastructure.azure.ad;
+
+import com.microsoft.graph.models.AppRoleAssignment;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionPage;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionRequest;
+import com.microsoft.graph.requests.AppRoleAssignmentCollectionRequestBuilder;
+import com.microsoft.graph.requests.GraphServiceClient;
+import com.microsoft.graph.requests.UserRequestBuilder;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+public class GraphRoleAssignmentsTest {
+
+    private static final String USER_ID = "32944624-1f4a-4f34-bdf6-5450679ef1bf";
+
+    @Test
+    public void testGetAppRoleIdsFollowsPages() {
+        AppRoleAssignmentCollectionPage secondPage = page(null, "b1f2c3d4-67e8-49c2-8f1e-d3f8a5b7c8d9");
+        AppRoleAssignmentCollectionRequestBuilder nextPage = requestBuilder(secondPage);
+        AppRoleAssignmentCollectionPage firstPage = page(nextPage, "a0f1c3b4-67e8-49c2-8f1e-d3f8a5b7c8d9");
+        GraphServiceClient<?> graphClient = graphClient(firstPage);
+
+        Set<String> actual = new GraphRoleAssignments(graphClient).getAppRoleIds(USER_ID);
+
+        Assert.assertEquals(actual, new HashSet<>(Arrays.asList(
+            "a0f1c3b4-67e8-49c2-8f1e-d3f8a5b7c8d9", "b1f2c3d4-67e8-49c2-8f1e-d3f8a5b7c8d9")));
+    }
+
+    @Test
+    public void testGetAppRoleIdsWithoutAssignments() {
+        GraphServiceClient<?> graphClient = graphClient(page(null));
+
+        Assert.assertEquals(new GraphRoleAssignments(graphClient).getAppRoleIds(USER_ID), Collections.emptySet());
+    }
+
+    private static GraphServiceClient<?> graphClient(AppRoleAssignmentCollectionPage page) {
+        AppRoleAssignmentCollectionRequestBuilder appRoleAssignments = requestBuilder(page);
+        UserRequestBuilder user = Mockito.mock(UserRequestBuilder.class);
+        Mockito.when(user.appRoleAssignments()).thenReturn(appRoleAssignments);
+        GraphServiceClient<?> graphClient = Mockito.mock(GraphServiceClient.class);
+        Mockito.when(graphClient.users(USER_ID)).thenReturn(user);
+        return graphClient;
+    }
+
+    private static AppRoleAssignmentCollectionRequestBuilder requestBuilder(AppRoleAssignmentCollectionPage page) {
+        AppRoleAssignmentCollectionRequest request = Mockito.mock(AppRoleAssignmentCollectionRequest.class);
+        Mockito.when(request.get()).thenReturn(page);
+        AppRoleAssignmentCollectionRequestBuilder requestBuilder = Mockito.mock(AppRoleAssignmentCollectionRequestBuilder.class);
+        Mockito.when(requestBuilder.buildRequest()).thenReturn(request);
+        return requestBuilder;
+    }
+
+    private static AppRoleAssignmentCollectionPage page(AppRoleAssignmentCollectionRequestBuilder nextPage,
+                                                        String... appRoleIds) {
+        AppRoleAssignmentCollectionPage page = Mockito.mock(AppRoleAssignmentCollectionPage.class);
+        AppRoleAssignment[] assignments = new AppRoleAssignment[appRoleIds.length];
+        for (int i = 0; i < appRoleIds.length; i++) {
+            assignments[i] = new AppRoleAssignment();
+            assignments[i].appRoleId = UUID.fromString(appRoleIds[i]);
+            assignments[i].principalId = UUID.fromString(USER_ID);
+        }
+
+        Mockito.when(page.getCurrentPage()).thenReturn(Arrays.asList(assignments));
+        Mockito.when(page.getNextPage()).thenReturn(nextPage);
+        return page;
+    }
+
+}
@@ -4,9 +4,9 @@ import com.azure.core.credential.AccessToken;
 import com.azure.core.credential.TokenCredential;
 import com.azure.core.credential.TokenRequestContext;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.microsoft.graph.requests.*;
 import core.HttpBasicAuthenticator;
 import core.Principal;
+import core.RoleAssignments;
 import infrastructure.azure.AzureFactory;
 import reactor.core.publisher.Mono;
 import shared.core.http.BasicAuthenticationException;
@@ -15,8 +15,7 @@ import com.microsoft.azure.functions.ExecutionContext;
 import com.microsoft.azure.functions.HttpRequestMessage;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatus;
-import com.microsoft.graph.authentication.TokenCredentialAuthProvider;
-import com.microsoft.graph.models.AppRoleAssignment;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
@@ -30,7 +29,7 @@ import java.time.OffsetDateTime;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 public class AuthorizerRequestHandlerTest {
 
@@ -41,11 +40,9 @@ public class AuthorizerRequestHandlerTest {
     @Mock
     private HttpRequestMessage<Optional<AuthorizerRequest>> mockRequest;
     @Mock
-    private TokenCredentialAuthProvider mockAuthProvider;
-    @Mock
-    private GraphServiceClient<?> mockGraphClient;
-    @Mock
     private TokenCredential mockTokenCredential;
+    @Mock
+    private RoleAssignments mockRoleAssignments;
 
     private AuthorizerRequestHandler handler;
     private AuthorizerRequest request;
@@ -59,6 +56,7 @@ public class AuthorizerRequestHandlerTest {
 
         // Configure factory to return a mock TokenCredential
         Mockito.when(mockFactory.getAzureIdentityClient()).thenReturn(mockTokenCredential);
+        Mockito.when(mockFactory.getRoleAssignments()).thenReturn(mockRoleAssignments);
 
         handler = new AuthorizerRequestHandler(mockFactory);
         request = makeRequest();
@@ -69,61 +67,43 @@ public class AuthorizerRequestHandlerTest {
 
     @Test
     public void testAuthentication() throws JsonProcessingException {
-        MockitoAnnotations.initMocks(this);
-
         // Configure mock TokenCredential to return a valid Mono<AccessToken>
         AccessToken mockAccessToken = new AccessToken("mocked-azure-ad-token", OffsetDateTime.now().plusHours(1));
         Mockito.when(mockTokenCredential.getToken(Mockito.any(TokenRequestContext.class)))
                 .thenReturn(Mono.just(mockAccessToken));
-        String jsonBody = "{"
-                + "\"principalId\": \"" + principal.getId() + "\","
-                + "\"context\": {"
-                + "    \"username\": \"" + principal.getUsername() + "\","
-                + "    \"scope\": \"foo,bar\","
-                + "    \"expirationTime\": 1234567890"
-                + "}"
-                + "}";
         // Mock the behavior of HttpRequestMessage.createResponseBuilder
         HttpResponseMessage.Builder mockResponseBuilder = Mockito.mock(HttpResponseMessage.Builder.class);
         HttpResponseMessage mockResponse = Mockito.mock(HttpResponseMessage.class);
         Mockito.when(mockResponseBuilder.body(Mockito.any())).thenReturn(mockResponseBuilder);
+        Mockito.when(mockResponseBuilder.header(Mockito.anyString(), Mockito.anyString())).thenReturn(mockResponseBuilder);
         Mockito.when(mockResponseBuilder.status(Mockito.any())).thenReturn(mockResponseBuilder);
         Mockito.when(mockResponseBuilder.build()).thenReturn(mockResponse);
         Mockito.when(mockResponse.getStatus()).thenReturn(HttpStatus.OK);
         Mockito.when(mockRequest.createResponseBuilder(Mockito.any(HttpStatus.class))).thenReturn(mockResponseBuilder);
-        Mockito.when(mockResponse.getBody()).thenReturn(jsonBody);
 
         // Set up other mocks for the Graph API client and request chain
-        Mockito.when(mockHttpBasicAuthenticator.authenticate(Mockito.anyString())).thenReturn(principal);
+        Mockito.when(mockHttpBasicAuthenticator.authenticate(Mockito.anyString()))
+                .thenReturn(CompletableFuture.completedFuture(principal));
         Mockito.when(mockRequest.getHeaders()).thenReturn(Collections.singletonMap("Authorization", "Bearer mock_token"));
         Mockito.when(mockRequest.getBody()).thenReturn(Optional.of(request));
 
-        AppRoleAssignment requiredRoleAssignment = new AppRoleAssignment();
-        requiredRoleAssignment.appRoleId = UUID.fromString("a0f1c3b4-67e8-49c2-8f1e-d3f8a5b7c8d9");
-        requiredRoleAssignment.principalId = UUID.fromString(principal.getId());
-
-        AppRoleAssignmentCollectionPage mockRoleAssignmentsPage = Mockito.mock(AppRoleAssignmentCollectionPage.class);
-        Mockito.when(mockRoleAssignmentsPage.getCurrentPage()).thenReturn(Collections.singletonList(requiredRoleAssignment));
-
-        UserRequestBuilder mockUserRequestBuilder = Mockito.mock(UserRequestBuilder.class);
-        AppRoleAssignmentCollectionRequestBuilder mockAppRoleAssignmentRequestBuilder = Mockito.mock(AppRoleAssignmentCollectionRequestBuilder.class);
-        AppRoleAssignmentCollectionRequest mockAppRoleAssignmentRequest = Mockito.mock(AppRoleAssignmentCollectionRequest.class);
-
-        Mockito.when(mockGraphClient.users(principal.getId())).thenReturn(mockUserRequestBuilder);
-        Mockito.when(mockUserRequestBuilder.appRoleAssignments()).thenReturn(mockAppRoleAssignmentRequestBuilder);
-        Mockito.when(mockAppRoleAssignmentRequestBuilder.buildRequest()).thenReturn(mockAppRoleAssignmentRequest);
-        Mockito.when(mockAppRoleAssignmentRequest.get()).thenReturn(mockRoleAssignmentsPage);
-       // Configure factory to return a mock authenticator and graph client
-        Mockito.when(mockFactory.createHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
+        Mockito.when(mockRoleAssignments.getAppRoleIdsAsync(principal.getId()))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singleton(REQUIRED_ROLE_ID)));
+       // Configure factory to return a mock authenticator
+        Mockito.when(mockFactory.getHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
 
 
         // Run the handler
         HttpResponseMessage response = handler.run(mockRequest);
 
         Assert.assertNotNull(response);
-      // Parse and verify the JSON response body
+        Mockito.verify(mockRequest).createResponseBuilder(HttpStatus.OK);
+        Mockito.verify(mockResponseBuilder).header("Content-Type", "application/json");
+        // Parse and verify the JSON body the handler wrote
+        ArgumentCaptor<Object> body = ArgumentCaptor.forClass(Object.class);
+        Mockito.verify(mockResponseBuilder).body(body.capture());
         ObjectMapper objectMapper = new ObjectMapper();
-        JsonNode responseBody = objectMapper.readTree((String) response.getBody());
+        JsonNode responseBody = objectMapper.readTree((String) body.getValue());
 
         Assert.assertEquals(responseBody.get("principalId").asText(), principal.getId());
         Assert.assertEquals(responseBody.get("context").get("username").asText(), principal.getUsername());
@@ -146,7 +126,7 @@ public class AuthorizerRequestHandlerTest {
         Mockito.when(mockRequest.createResponseBuilder(Mockito.any(HttpStatus.class))).thenReturn(mockResponseBuilder);
         Mockito.when(mockRequest.getHeaders()).thenReturn(Collections.singletonMap("Authorization", "Bearer mock_token"));
         Mockito.when(mockRequest.getBody()).thenReturn(Optional.of(request));
-        Mockito.when(mockFactory.createHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
+        Mockito.when(mockFactory.getHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
         Mockito.when(mockResponse.getBody()).thenReturn("Unauthorized: Basic authentication failed");
 
         HttpResponseMessage response = handler.run(mockRequest);
@@ -159,7 +139,8 @@ public class AuthorizerRequestHandlerTest {
 
     @Test
     public void testUserWithoutRequiredRole() {
-        Mockito.when(mockHttpBasicAuthenticator.authenticate(Mockito.anyString())).thenReturn(principal);
+        Mockito.when(mockHttpBasicAuthenticator.authenticate(Mockito.anyString()))
+                .thenReturn(CompletableFuture.completedFuture(principal));
         Mockito.when(mockRequest.getHeaders()).thenReturn(Collections.singletonMap("Authorization", "Bearer mock_token"));
         Mockito.when(mockRequest.getBody()).thenReturn(Optional.of(request));
         HttpResponseMessage.Builder mockResponseBuilder = Mockito.mock(HttpResponseMessage.Builder.class);
@@ -171,29 +152,18 @@ public class AuthorizerRequestHandlerTest {
         Mockito.when(mockRequest.createResponseBuilder(Mockito.any(HttpStatus.class))).thenReturn(mockResponseBuilder);
         Mockito.when(mockRequest.getHeaders()).thenReturn(Collections.singletonMap("Authorization", "Bearer mock_token"));
         Mockito.when(mockRequest.getBody()).thenReturn(Optional.of(request));
-        Mockito.when(mockFactory.createHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
+        Mockito.when(mockFactory.getHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
         Mockito.when(mockResponse.getBody()).thenReturn("User does not have the required role");
-        UserRequestBuilder mockUserRequestBuilder = Mockito.mock(UserRequestBuilder.class);
-        AppRoleAssignmentCollectionRequestBuilder mockAppRoleAssignmentRequestBuilder = Mockito.mock(AppRoleAssignmentCollectionRequestBuilder.class);
-        AppRoleAssignmentCollectionRequest mockAppRoleAssignmentRequest = Mockito.mock(AppRoleAssignmentCollectionRequest.class);
-        AppRoleAssignmentCollectionPage mockRoleAssignmentsPage = Mockito.mock(AppRoleAssignmentCollectionPage.class);
-        Mockito.when(mockGraphClient.users(principal.getId())).thenReturn(mockUserRequestBuilder);
-        Mockito.when(mockUserRequestBuilder.appRoleAssignments()).thenReturn(mockAppRoleAssignmentRequestBuilder);
-        Mockito.when(mockAppRoleAssignmentRequestBuilder.buildRequest()).thenReturn(mockAppRoleAssignmentRequest);
-        Mockito.when(mockAppRoleAssignmentRequest.get()).thenReturn(mockRoleAssignmentsPage);
-        // Create a mock AppRoleAssignmentCollectionPage and configure it to return an empty list for getCurrentPage()
-        AppRoleAssignmentCollectionPage emptyRoleAssignmentsPage = Mockito.mock(AppRoleAssignmentCollectionPage.class);
-        Mockito.when(emptyRoleAssignmentsPage.getCurrentPage()).thenReturn(Collections.emptyList());
-
-        // Configure the mock GraphServiceClient to return the empty role assignments page
-        Mockito.when(mockGraphClient.users(principal.getId()).appRoleAssignments().buildRequest().get())
-                .thenReturn(emptyRoleAssignmentsPage);
-        Mockito.when(mockFactory.createHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
+        // The user has no app roles assigned
+        Mockito.when(mockRoleAssignments.getAppRoleIdsAsync(principal.getId()))
+                .thenReturn(CompletableFuture.completedFuture(Collections.emptySet()));
+        Mockito.when(mockFactory.getHttpBasicAuthenticator()).thenReturn(mockHttpBasicAuthenticator);
 
         HttpResponseMessage response = handler.run(mockRequest);
 
         Assert.assertNotNull(response);
         Assert.assertEquals(response.getStatus(), HttpStatus.FORBIDDEN);
+        Mockito.verify(mockRequest).createResponseBuilder(HttpStatus.FORBIDDEN);
         Assert.assertEquals(response.getBody(), "User does not have the required role");
     }
 
@@ -0,0 +1,238 @@
+package authorization.jwt.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Matches a concrete action such as "Microsoft.Web/sites/config/read" against Azure RBAC
+// action patterns, where "*" stands for any sequence of characters and case is ignored.
+// The patterns form a trie whose states are combined into DFA states on first use, so a
+// lookup makes one transition per character of the action.
+public final class ActionMatcher {
+
+    private static final int MAX_CACHED_STATES = 16_384;
+    private static final long[] NONE = new long[0];
+
+    private final List<Node> nodes;
+    private final int size;
+    private final ConcurrentMap<StateKey, State> states = new ConcurrentHashMap<>();
+    private final State start;
+
+    private ActionMatcher(List<Node> nodes, int size) {
+        this.nodes = nodes;
+        this.size = size;
+        BitSet initial = new BitSet(nodes.size());
+        close(initial, nodes.get(0));
+        this.start = state(initial);
+    }
+
+    // Pattern i of the list is reported as bit i of the match result
+    public static ActionMatcher compile(List<String> patterns) {
+        List<Node> nodes = new ArrayList<>();
+        Node root = new Node(0, false);
+        nodes.add(root);
+        for (int i = 0; i < patterns.size(); i++) {
+            Node node = root;
+            String pattern = patterns.get(i);
+            for (int j = 0; j < pattern.length(); j++) {
+                char c = pattern.charAt(j);
+                if (c == '*') {
+                    if (node.star == null) {
+                        node.star = new Node(nodes.size(), true);
+                        nodes.add(node.star);
+                    }
+
+                    node = node.star;
+                } else {
+                    Node child = node.children.get(lowerCase(c));
+                    if (child == null) {
+                        child = new Node(nodes.size(), false);
+                        node.children.put(lowerCase(c), child);
+                        nodes.add(child);
+                    }
+
+                    node = child;
+                }
+            }
+
+            node.accepts.set(i);
+        }
+
+        return new ActionMatcher(nodes, patterns.size());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Returns the bits of all patterns matching the action
+    public long[] match(String action) {
+        State state = start;
+        for (int i = 0; i < action.length() && state.nodes.length > 0; i++) {
+            state = next(state, lowerCase(action.charAt(i)));
+        }
+
+        return state.accepts;
+    }
+
+    // Matches a single pattern without an automaton, for patterns not compiled into one yet
+    public static boolean matches(String pattern, String action) {
+        int p = 0;
+        int a = 0;
+        int star = -1;
+        int resume = 0;
+        while (a < action.length()) {
+            if (p < pattern.length() && pattern.charAt(p) == '*') {
+                star = p++;
+                resume = a;
+            } else if (p < pattern.length() && lowerCase(pattern.charAt(p)) == lowerCase(action.charAt(a))) {
+                p++;
+                a++;
+            } else if (star >= 0) {
+                // The last "*" takes one more character and the rest is tried again
+                p = star + 1;
+                a = ++resume;
+            } else {
+                return false;
+            }
+        }
+
+        while (p < pattern.length() && pattern.charAt(p) == '*') {
+            p++;
+        }
+
+        return p == pattern.length();
+    }
+
+    private State next(State state, char c) {
+        if (c < State.ASCII && state.transitions != null) {
+            State next = state.transitions.get(c);
+            if (next == null) {
+                next = state(step(state, c));
+                state.transitions.set(c, next);
+            }
+
+            return next;
+        }
+
+        return state(step(state, c));
+    }
+
+    private BitSet step(State state, char c) {
+        BitSet next = new BitSet(nodes.size());
+        for (int id : state.nodes) {
+            Node node = nodes.get(id);
+            if (node.loops) {
+                close(next, node);
+            }
+
+            Node child = node.children.get(c);
+            if (child != null) {
+                close(next, child);
+            }
+        }
+
+        return next;
+    }
+
+    // A node reached through "*" may match nothing, so its parent also stands for it
+    private static void close(BitSet set, Node node) {
+        while (node != null && !set.get(node.id)) {
+            set.set(node.id);
+            node = node.star;
+        }
+    }
+
+    private State state(BitSet set) {
+        StateKey key = new StateKey(set.stream().toArray());
+        State state = states.get(key);
+        if (state != null) {
+            return state;
+        }
+
+        long[] accepts = NONE;
+        for (int id : key.nodes) {
+            BitSet nodeAccepts = nodes.get(id).accepts;
+            if (!nodeAccepts.isEmpty()) {
+                accepts = PermissionIndex.or(accepts, nodeAccepts.toLongArray());
+            }
+        }
+
+        // Past the limit states are still computed, but neither kept nor given transitions
+        if (states.size() >= MAX_CACHED_STATES) {
+            return new State(key.nodes, accepts, false);
+        }
+
+        state = new State(key.nodes, accepts, true);
+        State existing = states.putIfAbsent(key, state);
+        return existing == null ? state : existing;
+    }
+
+    private static char lowerCase(char c) {
+        if (c < State.ASCII) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+
+        return Character.toLowerCase(c);
+    }
+
+    private static final class Node {
+
+        private final int id;
+        private final boolean loops;
+        private final Map<Character, Node> children = new HashMap<>();
+        private final BitSet accepts = new BitSet();
+        private Node star;
+
+        private Node(int id, boolean loops) {
+            this.id = id;
+            this.loops = loops;
+        }
+
+    }
+
+    private static final class State {
+
+        private static final int ASCII = 128;
+
+        private final int[] nodes;
+        private final long[] accepts;
+        private final AtomicReferenceArray<State> transitions;
+
+        private State(int[] nodes, long[] accepts, boolean cached) {
+            this.nodes = nodes;
+            this.accepts = accepts;
+            this.transitions = cached ? new AtomicReferenceArray<>(ASCII) : null;
+        }
+
+    }
+
+    private static final class StateKey {
+
+        private final int[] nodes;
+        private final int hashCode;
+
+        private StateKey(int[] nodes) {
+            this.nodes = nodes;
+            this.hashCode = Arrays.hashCode(nodes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof StateKey && Arrays.equals(nodes, ((StateKey) o).nodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+
+    }
+
+}
@@ -0,0 +1,39 @@
+package authorization.jwt.core;
+
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RequiredArgsConstructor
+public class CachingPolicyRepository implements PolicyRepository {
+
+    private final PolicyRepository policyRepository;
+    private final RoleDefinitionCache roleDefinitionCache;
+
+    @Override
+    public List<RoleDefinition> getRoleDefinitions(Claims claims) {
+        List<String> roleIds = getRoleIds(claims);
+        List<RoleDefinition> roleDefinitions = new ArrayList<>(roleIds.size());
+        for (String roleId : roleIds) {
+            RoleDefinition roleDefinition = getRoleDefinition(roleId);
+            if (roleDefinition != null) {
+                roleDefinitions.add(roleDefinition);
+            }
+        }
+
+        return roleDefinitions;
+    }
+
+    @Override
+    public List<String> getRoleIds(Claims claims) {
+        return policyRepository.getRoleIds(claims);
+    }
+
+    @Override
+    public RoleDefinition getRoleDefinition(String roleId) {
+        return roleDefinitionCache.get(roleId, policyRepository::getRoleDefinition);
+    }
+
+}
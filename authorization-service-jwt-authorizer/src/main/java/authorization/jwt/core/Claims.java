@@ -3,6 +3,8 @@ package authorization.jwt.core;
 import lombok.Data;
 
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @Data
@@ -11,5 +13,18 @@ public class Claims {
     private String username;
     private List<String> roles;
     private ZonedDateTime expiredAt;
+    private ZonedDateTime notBefore;
+    private String tokenId;
 
-}
\ No newline at end of file
+    // Cached claims are shared between requests, so each one gets its own instance with read-only roles
+    public Claims copy() {
+        Claims copy = new Claims();
+        copy.setUsername(username);
+        copy.setRoles(roles == null ? null : Collections.unmodifiableList(new ArrayList<>(roles)));
+        copy.setExpiredAt(expiredAt);
+        copy.setNotBefore(notBefore);
+        copy.setTokenId(tokenId);
+        return copy;
+    }
+
+}
@@ -1,22 +1,131 @@
 package authorization.jwt.core;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.nimbusds.jwt.JWTClaimsSet;
 
+import java.io.IOException;
 import java.text.ParseException;
+import java.time.DateTimeException;
+import java.time.Instant;
 import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class ClaimsTranslator {
 
+    private static final String USERNAME = "cognito:username";
+    private static final String ROLES = "cognito:roles";
+    private static final String EXPIRATION_TIME = "exp";
+    private static final String NOT_BEFORE = "nbf";
+    private static final String TOKEN_ID = "jti";
+    private static final ZoneId UTC = ZoneId.of("UTC");
+
     private ClaimsTranslator() {
     }
 
     public static Claims from(JWTClaimsSet claimsSet) throws ParseException {
         Claims claims = new Claims();
-        claims.setUsername(claimsSet.getStringClaim("cognito:username"));
-        claims.setRoles(claimsSet.getStringListClaim("cognito:roles"));
+        claims.setUsername(claimsSet.getStringClaim(USERNAME));
+        claims.setRoles(claimsSet.getStringListClaim(ROLES));
         claims.setExpiredAt(claimsSet.getExpirationTime()
-            .toInstant().atZone(ZoneId.of("UTC")));
+            .toInstant().atZone(UTC));
+        if (claimsSet.getNotBeforeTime() != null) {
+            claims.setNotBefore(claimsSet.getNotBeforeTime().toInstant().atZone(UTC));
+        }
+
+        claims.setTokenId(claimsSet.getJWTID());
         return claims;
     }
 
-}
\ No newline at end of file
+    // Streams over the decoded JWT payload and keeps only the claims used by the authorizer
+    public static Claims from(byte[] payload) throws ParseException {
+        Claims claims = new Claims();
+        try (JsonParser parser = CompactJws.createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ParseException("JWT payload is not a JSON object", 0);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (name) {
+                    case USERNAME:
+                        claims.setUsername(stringValue(parser, value, name));
+                        break;
+                    case ROLES:
+                        claims.setRoles(stringListValue(parser, value, name));
+                        break;
+                    case EXPIRATION_TIME:
+                        claims.setExpiredAt(dateValue(parser, value, name));
+                        break;
+                    case NOT_BEFORE:
+                        claims.setNotBefore(dateValue(parser, value, name));
+                        break;
+                    case TOKEN_ID:
+                        claims.setTokenId(stringValue(parser, value, name));
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw CompactJws.parseException(e);
+        }
+
+        return claims;
+    }
+
+    private static String stringValue(JsonParser parser, JsonToken value, String name)
+        throws IOException, ParseException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        if (value != JsonToken.VALUE_STRING) {
+            throw new ParseException("The " + name + " claim is not a String", 0);
+        }
+
+        return parser.getText();
+    }
+
+    private static List<String> stringListValue(JsonParser parser, JsonToken value, String name)
+        throws IOException, ParseException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        if (value != JsonToken.START_ARRAY) {
+            throw new ParseException("The " + name + " claim is not a list / JSON array", 0);
+        }
+
+        List<String> values = new ArrayList<>();
+        for (JsonToken item = parser.nextToken(); item != JsonToken.END_ARRAY; item = parser.nextToken()) {
+            values.add(stringValue(parser, item, name));
+        }
+
+        return values;
+    }
+
+    private static ZonedDateTime dateValue(JsonParser parser, JsonToken value, String name)
+        throws IOException, ParseException {
+        if (value == JsonToken.VALUE_NULL) {
+            return null;
+        }
+
+        if (value != JsonToken.VALUE_NUMBER_INT && value != JsonToken.VALUE_NUMBER_FLOAT) {
+            throw new ParseException("The " + name + " claim is not a Number", 0);
+        }
+
+        // The token is untrusted, so a date out of range is a malformed token and not a server error
+        try {
+            return Instant.ofEpochSecond(parser.getLongValue()).atZone(UTC);
+        } catch (DateTimeException | ArithmeticException e) {
+            ParseException exception = new ParseException("The " + name + " claim is out of range", 0);
+            exception.initCause(e);
+            throw exception;
+        }
+    }
+
+}
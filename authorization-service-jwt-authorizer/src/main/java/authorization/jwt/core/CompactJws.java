@@ -0,0 +1,181 @@
+package authorization.jwt.core;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.nimbusds.jose.JWSAlgorithm;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Arrays;
+
+public final class CompactJws {
+
+    public static final int MAX_TOKEN_LENGTH = 8 * 1024;
+
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] BASE64URL_ALPHABET = new byte[128];
+
+    static {
+        Arrays.fill(BASE64URL_ALPHABET, (byte) -1);
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_";
+        for (int i = 0; i < alphabet.length(); i++) {
+            BASE64URL_ALPHABET[alphabet.charAt(i)] = (byte) i;
+        }
+    }
+
+    private final String source;
+    private final int start;
+    private final int firstDot;
+    private final int secondDot;
+    private final int end;
+
+    private CompactJws(String source, int start, int firstDot, int secondDot, int end) {
+        this.source = source;
+        this.start = start;
+        this.firstDot = firstDot;
+        this.secondDot = secondDot;
+        this.end = end;
+    }
+
+    // Locates both dots in a single pass over the header without copying the token
+    public static CompactJws parse(String authorizationHeader) {
+        if (authorizationHeader == null
+            || !authorizationHeader.startsWith(BEARER_PREFIX)
+            || authorizationHeader.length() - BEARER_PREFIX.length() > MAX_TOKEN_LENGTH) {
+            throw new JwtVerificationException("Incorrect header format");
+        }
+
+        int start = BEARER_PREFIX.length();
+        int end = authorizationHeader.length();
+        int firstDot = -1;
+        int secondDot = -1;
+        int dots = 0;
+        for (int i = start; i < end; i++) {
+            char c = authorizationHeader.charAt(i);
+            if (c == '.') {
+                if (dots == 0) {
+                    firstDot = i;
+                } else if (dots == 1) {
+                    secondDot = i;
+                }
+
+                dots++;
+            } else if (c >= BASE64URL_ALPHABET.length || BASE64URL_ALPHABET[c] < 0) {
+                throw new JwtVerificationException("Incorrect header format");
+            }
+        }
+
+        if (dots != 2 || firstDot == start || secondDot == firstDot + 1 || secondDot == end - 1) {
+            throw new JwtVerificationException("JWT couldn't be parsed");
+        }
+
+        return new CompactJws(authorizationHeader, start, firstDot, secondDot, end);
+    }
+
+    public int length() {
+        return end - start;
+    }
+
+    public TokenDigest digest() {
+        return TokenDigest.of(source, start, end);
+    }
+
+    public Header decodeHeader() throws ParseException {
+        String algorithm = null;
+        String keyId = null;
+        boolean critical = false;
+        try (JsonParser parser = createParser(decode(start, firstDot))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new ParseException("JWS header is not a JSON object", 0);
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("alg".equals(name) && value == JsonToken.VALUE_STRING) {
+                    algorithm = parser.getText();
+                } else if ("kid".equals(name) && value == JsonToken.VALUE_STRING) {
+                    keyId = parser.getText();
+                } else if ("crit".equals(name)) {
+                    critical = true;
+                    parser.skipChildren();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } catch (IOException e) {
+            throw parseException(e);
+        }
+
+        if (algorithm == null) {
+            throw new ParseException("JWS header has no algorithm", 0);
+        }
+
+        return new Header(JWSAlgorithm.parse(algorithm), keyId, critical);
+    }
+
+    public Claims decodeClaims() throws ParseException {
+        return ClaimsTranslator.from(decode(firstDot + 1, secondDot));
+    }
+
+    public byte[] signingInput() {
+        byte[] signingInput = new byte[secondDot - start];
+        for (int i = 0; i < signingInput.length; i++) {
+            signingInput[i] = (byte) source.charAt(start + i);
+        }
+
+        return signingInput;
+    }
+
+    public byte[] signature() throws ParseException {
+        return decode(secondDot + 1, end);
+    }
+
+    private byte[] decode(int from, int to) throws ParseException {
+        int length = to - from;
+        if (length % 4 == 1) {
+            throw new ParseException("Invalid Base64URL length", from);
+        }
+
+        byte[] decoded = new byte[length * 3 / 4];
+        int buffer = 0;
+        int bits = 0;
+        int position = 0;
+        for (int i = from; i < to; i++) {
+            buffer = (buffer << 6) | BASE64URL_ALPHABET[source.charAt(i)];
+            bits += 6;
+            if (bits >= 8) {
+                bits -= 8;
+                decoded[position++] = (byte) (buffer >> bits);
+                buffer &= (1 << bits) - 1;
+            }
+        }
+
+        return decoded;
+    }
+
+    static ParseException parseException(IOException e) {
+        ParseException exception = new ParseException(e.getMessage(), 0);
+        exception.initCause(e);
+        return exception;
+    }
+
+    static JsonParser createParser(byte[] json) throws IOException {
+        return JSON_FACTORY.createParser(json);
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    public static final class Header {
+
+        private final JWSAlgorithm algorithm;
+        private final String keyId;
+        private final boolean critical;
+
+    }
+
+}
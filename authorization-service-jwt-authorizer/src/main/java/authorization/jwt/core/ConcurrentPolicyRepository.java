@@ -0,0 +1,85 @@
+package authorization.jwt.core;
+
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+@RequiredArgsConstructor
+public class ConcurrentPolicyRepository implements PolicyRepository {
+
+    private final PolicyRepository policyRepository;
+    private final Executor executor;
+    private final long timeoutMillis;
+
+    @Override
+    public List<RoleDefinition> getRoleDefinitions(Claims claims) {
+        try {
+            return getRoleDefinitionsAsync(claims).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+
+            throw e;
+        }
+    }
+
+    // Looks up all roles of the token at once, so latency follows the slowest lookup
+    @Override
+    public CompletableFuture<List<RoleDefinition>> getRoleDefinitionsAsync(Claims claims) {
+        List<String> roleIds = getRoleIds(claims);
+        List<CompletableFuture<RoleDefinition>> lookups = new ArrayList<>(roleIds.size());
+        for (String roleId : roleIds) {
+            lookups.add(CompletableFuture.supplyAsync(() -> getRoleDefinition(roleId), executor));
+        }
+
+        return CompletableFuture.allOf(lookups.toArray(new CompletableFuture[0]))
+            .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+            .handle((ignored, error) -> {
+                if (error != null) {
+                    throw translate(error);
+                }
+
+                List<RoleDefinition> roleDefinitions = new ArrayList<>(lookups.size());
+                for (CompletableFuture<RoleDefinition> lookup : lookups) {
+                    RoleDefinition roleDefinition = lookup.join();
+                    if (roleDefinition != null) {
+                        roleDefinitions.add(roleDefinition);
+                    }
+                }
+
+                return roleDefinitions;
+            });
+    }
+
+    @Override
+    public List<String> getRoleIds(Claims claims) {
+        return policyRepository.getRoleIds(claims);
+    }
+
+    @Override
+    public RoleDefinition getRoleDefinition(String roleId) {
+        return policyRepository.getRoleDefinition(roleId);
+    }
+
+    private static RuntimeException translate(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null
+            ? error.getCause()
+            : error;
+        if (cause instanceof TimeoutException) {
+            return new PolicyLookupException("Role definitions couldn't be retrieved in time", cause);
+        }
+
+        return cause instanceof RuntimeException
+            ? (RuntimeException) cause
+            : new PolicyLookupException("Role definitions couldn't be retrieved", cause);
+    }
+
+}
@@ -0,0 +1,211 @@
+package authorization.jwt.core;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps authorization decisions per principal, role set and method ARN. Slots are found by
+// linear probing on a 64-bit key, and entries from before the last role change are ignored.
+public class DecisionCache<V> {
+
+    private static final int MAX_PROBES = 8;
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final AtomicReferenceArray<Entry<V>> slots;
+    private final int mask;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    private final AtomicLong epoch = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DecisionCache(int maximumSize, long timeToLiveMillis) {
+        this(maximumSize, timeToLiveMillis, Clock.systemUTC());
+    }
+
+    public DecisionCache(int maximumSize, long timeToLiveMillis, Clock clock) {
+        int capacity = Integer.highestOneBit(Math.max(maximumSize, 1) * 2 - 1) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+    }
+
+    // The key remembers the epoch it was created in, so a decision built while roles
+    // changed is never stored as current.
+    public Key key(String principal, List<String> roleIds, String methodArn) {
+        List<String> roleSet = sorted(roleIds);
+        long roleSetHash = hashRoleSet(roleSet);
+        long hash = mix(hash(hash(FNV_OFFSET_BASIS, principal) * FNV_PRIME ^ roleSetHash, methodArn));
+        return new Key(hash, principal, roleSet, methodArn, epoch.get());
+    }
+
+    public V get(Key key) {
+        V value = find(key);
+        if (value != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+
+        return value;
+    }
+
+    // Checks for a current decision without counting a hit or a miss
+    public boolean contains(Key key) {
+        return find(key) != null;
+    }
+
+    public void put(Key key, V value) {
+        if (key.epoch != epoch.get()) {
+            return;
+        }
+
+        long now = clock.millis();
+        Entry<V> entry = new Entry<>(key, value, now + timeToLiveMillis);
+        int victim = slot(key.hash, 0);
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int index = slot(key.hash, i);
+            Entry<V> existing = slots.get(index);
+            if (existing == null || existing.key.hash == key.hash && existing.key.matches(key)) {
+                slots.set(index, entry);
+                return;
+            }
+
+            if (existing.key.epoch != key.epoch || existing.expiresAt <= now) {
+                victim = index;
+            }
+        }
+
+        // The probe window is full of live decisions, so one of them gives way
+        slots.set(victim, entry);
+        evictions.increment();
+    }
+
+    // Every role change can alter any decision, and role changes are rare
+    public void invalidateAll() {
+        epoch.incrementAndGet();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private V find(Key key) {
+        long now = clock.millis();
+        for (int i = 0; i < MAX_PROBES; i++) {
+            Entry<V> entry = slots.get(slot(key.hash, i));
+            if (entry == null) {
+                break;
+            }
+
+            if (entry.key.hash == key.hash && entry.key.matches(key)) {
+                if (entry.key.epoch == epoch.get() && entry.expiresAt > now) {
+                    return entry.value;
+                }
+
+                break;
+            }
+        }
+
+        return null;
+    }
+
+    private int slot(long hash, int probe) {
+        return (int) (hash + probe) & mask;
+    }
+
+    // The key keeps this list, so it must not change afterwards
+    private static List<String> sorted(List<String> roleIds) {
+        List<String> sorted = new ArrayList<>(roleIds);
+        if (sorted.size() > 1) {
+            Collections.sort(sorted);
+        }
+
+        return sorted;
+    }
+
+    static long hashRoleSet(List<String> sortedRoleIds) {
+        long hash = FNV_OFFSET_BASIS;
+        for (String roleId : sortedRoleIds) {
+            hash = hash(hash, roleId) * FNV_PRIME ^ ',';
+        }
+
+        return hash;
+    }
+
+    private static long hash(long hash, String value) {
+        if (value == null) {
+            return hash * FNV_PRIME;
+        }
+
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+
+        return hash;
+    }
+
+    // Spreads FNV output so that neighbouring slots don't share low bits
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    public static final class Key {
+
+        private final long hash;
+        private final String principal;
+        private final List<String> roleSet;
+        private final String methodArn;
+        private final long epoch;
+
+        private Key(long hash, String principal, List<String> roleSet, String methodArn, long epoch) {
+            this.hash = hash;
+            this.principal = principal;
+            this.roleSet = roleSet;
+            this.methodArn = methodArn;
+            this.epoch = epoch;
+        }
+
+        // Every component is compared in full, so a hash collision is never served
+        private boolean matches(Key other) {
+            return Objects.equals(principal, other.principal)
+                && Objects.equals(methodArn, other.methodArn)
+                && roleSet.equals(other.roleSet);
+        }
+
+    }
+
+    private static final class Entry<V> {
+
+        private final Key key;
+        private final V value;
+        private final long expiresAt;
+
+        private Entry(Key key, V value, long expiresAt) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+package authorization.jwt.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Union of the permissions of all roles a principal holds. As in Azure RBAC, notActions only
+// take away from the actions of their own permission block, so blocks without notActions are
+// folded into one set and the others are kept apart.
+public final class EffectivePermissions {
+
+    private final PermissionIndex.Generation index;
+    private final long[] actions;
+    private final List<Block> blocks;
+    private final long[] blockActions;
+
+    EffectivePermissions(PermissionIndex.Generation index, long[] actions, List<Block> blocks) {
+        this.index = index;
+        this.actions = actions;
+        this.blocks = blocks;
+        long[] blockActions = new long[0];
+        for (Block block : blocks) {
+            blockActions = PermissionIndex.or(blockActions, block.actions);
+        }
+
+        this.blockActions = blockActions;
+    }
+
+    // Allowed when some permission block has a matching action and no matching notAction.
+    // An action no block grants is denied without looking at any notActions.
+    public boolean isAllowed(String action) {
+        long[] matches = index.match(action);
+        if (intersects(matches, actions)) {
+            return true;
+        }
+
+        if (!intersects(matches, blockActions)) {
+            return false;
+        }
+
+        for (Block block : blocks) {
+            if (intersects(matches, block.actions) && !intersects(matches, block.notActions)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    public List<String> getActions() {
+        return toActions(PermissionIndex.or(actions, blockActions));
+    }
+
+    public List<String> getNotActions() {
+        long[] words = new long[0];
+        for (Block block : blocks) {
+            words = PermissionIndex.or(words, block.notActions);
+        }
+
+        return toActions(words);
+    }
+
+    private List<String> toActions(long[] words) {
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                result.add(index.actionOf((i << 6) + Long.numberOfTrailingZeros(word)));
+                word &= word - 1;
+            }
+        }
+
+        return result;
+    }
+
+    private static boolean intersects(long[] left, long[] right) {
+        for (int i = 0, length = Math.min(left.length, right.length); i < length; i++) {
+            if ((left[i] & right[i]) != 0) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // A permission block that has notActions
+    static final class Block {
+
+        private final long[] actions;
+        private final long[] notActions;
+
+        Block(long[] actions, long[] notActions) {
+            this.actions = actions;
+            this.notActions = notActions;
+        }
+
+    }
+
+}
@@ -2,77 +2,204 @@ package authorization.jwt.core;
 
 import com.nimbusds.jose.JOSEException;
 import com.nimbusds.jose.KeySourceException;
-import com.nimbusds.jose.crypto.RSASSAVerifier;
-import com.nimbusds.jose.jwk.JWK;
-import com.nimbusds.jose.jwk.JWKMatcher;
-import com.nimbusds.jose.jwk.JWKSelector;
-import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.jwk.source.JWKSource;
 import com.nimbusds.jose.proc.SecurityContext;
-import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.SignedJWT;
-import lombok.RequiredArgsConstructor;
 
 import java.text.ParseException;
-import java.util.Date;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.time.ZonedDateTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-@RequiredArgsConstructor
 public class Jwt {
 
-    private static final Pattern AUTHORIZATION_HEADER_PATTERN =
-        Pattern.compile("Bearer (?<jwt>[0-9A-Za-z.\\-_]*)");
+    private static final int DEFAULT_CACHE_SIZE = 10_000;
 
-    private final JWKSource<? extends SecurityContext> jwkSource;
+    private final VerifierRegistry verifierRegistry;
+    private final VerifiedTokenCache verifiedTokenCache;
+    private final RevocationStore revocationStore;
+    private final TokenFilter tokenFilter;
+    private final RejectedTokenCache rejectedTokenCache;
+    private final StageLatencies stageLatencies;
+    private final ConcurrentMap<TokenDigest, CompletableFuture<Claims>> inFlight = new ConcurrentHashMap<>();
+
+    public Jwt(JWKSource<? extends SecurityContext> jwkSource) {
+        this(builder(new VerifierRegistry(jwkSource)));
+    }
+
+    private Jwt(Builder builder) {
+        this.verifierRegistry = builder.verifierRegistry;
+        this.verifiedTokenCache = builder.verifiedTokenCache;
+        this.revocationStore = builder.revocationStore;
+        this.tokenFilter = builder.tokenFilter != null ? builder.tokenFilter : new TokenFilter(verifierRegistry);
+        this.rejectedTokenCache = builder.rejectedTokenCache;
+        this.stageLatencies = builder.stageLatencies;
+    }
+
+    public static Builder builder(VerifierRegistry verifierRegistry) {
+        return new Builder(verifierRegistry);
+    }
 
     public Claims verify(String header) {
-        Matcher matcher = AUTHORIZATION_HEADER_PATTERN.matcher(header);
-        if (!matcher.matches()) {
-            throw new JwtVerificationException("Incorrect header format");
+        CompactJws jws = tokenFilter.parse(header);
+        TokenDigest digest = jws.digest();
+        Claims claims = verifiedTokenCache.get(digest);
+        if (claims == null) {
+            String reason = rejectedTokenCache.get(digest);
+            if (reason != null) {
+                throw new JwtVerificationException(reason);
+            }
+
+            claims = verifyOnce(jws, digest);
+        }
+
+        // Checked on every request, so that a revocation also stops tokens verified before it
+        if (revocationStore.isRevoked(claims)) {
+            throw new JwtVerificationException("JWT has been revoked");
         }
 
+        return claims;
+    }
+
+    // Decodes the claims without checking the signature, so that work based on them can start
+    // while the token is verified. Returns null when there's nothing worth overlapping: the token
+    // was verified before, is malformed, has expired, is revoked or is signed with an unknown key.
+    public Claims peek(String header) {
         try {
-            return checkJWT(matcher.group("jwt"));
-        } catch (ParseException | KeySourceException e) {
-            throw new JwtVerificationException("JWT couldn't be parsed", e);
+            CompactJws jws = CompactJws.parse(header);
+            if (verifiedTokenCache.contains(jws.digest())
+                || !verifierRegistry.contains(jws.decodeHeader().getKeyId())) {
+                return null;
+            }
+
+            Claims claims = jws.decodeClaims();
+            checkExpirationTime(claims);
+            return revocationStore.isRevoked(claims) ? null : claims;
+        } catch (ParseException | RuntimeException e) {
+            return null;
         }
     }
 
-    private Claims checkJWT(String authorization) throws ParseException, KeySourceException {
-        SignedJWT jwt = SignedJWT.parse(authorization);
-        if (!checkSignature(jwt)) {
-            throw new JwtVerificationException("JWS object didn't pass the verification");
+    // Concurrent first requests with the same token wait for a single signature check
+    private Claims verifyOnce(CompactJws jws, TokenDigest digest) {
+        CompletableFuture<Claims> pending = new CompletableFuture<>();
+        CompletableFuture<Claims> existing = inFlight.putIfAbsent(digest, pending);
+        if (existing != null) {
+            try {
+                return existing.join().copy();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
         }
 
-        JWTClaimsSet claimsSet = jwt.getJWTClaimsSet();
-        checkExpirationTime(claimsSet);
+        try {
+            Claims claims = checkJWT(jws);
+            verifiedTokenCache.put(digest, claims);
+            pending.complete(claims);
+            return claims;
+        } catch (ParseException | KeySourceException e) {
+            throw fail(pending, reject(digest, new JwtVerificationException("JWT couldn't be parsed", e)));
+        } catch (JwtVerificationException e) {
+            throw fail(pending, reject(digest, e));
+        } catch (RuntimeException e) {
+            throw fail(pending, e);
+        } finally {
+            inFlight.remove(digest, pending);
+        }
+    }
+
+    private static RuntimeException fail(CompletableFuture<Claims> pending, RuntimeException e) {
+        pending.completeExceptionally(e);
+        return e;
+    }
 
-        return ClaimsTranslator.from(claimsSet);
+    private JwtVerificationException reject(TokenDigest digest, JwtVerificationException rejection) {
+        rejectedTokenCache.put(digest, rejection);
+        return rejection;
     }
 
-    private boolean checkSignature(SignedJWT jwt) throws KeySourceException {
-        JWKSelector selector = new JWKSelector(
-            new JWKMatcher.Builder()
-                .keyID(jwt.getHeader().getKeyID())
-                .publicOnly(true)
-                .build());
+    private Claims checkJWT(CompactJws jws) throws ParseException, KeySourceException {
+        long start = LatencyHistogram.start();
+        CompactJws.Header header = jws.decodeHeader();
+        Claims claims = jws.decodeClaims();
+        stageLatencies.recordSince(StageLatencies.Stage.PARSE, start);
+
+        start = LatencyHistogram.start();
+        PooledRSAVerifier verifier = tokenFilter.check(header, claims);
+        stageLatencies.recordSince(StageLatencies.Stage.KEY_LOOKUP, start);
+
+        start = LatencyHistogram.start();
+        boolean verified = checkSignature(jws, header, verifier);
+        stageLatencies.recordSince(StageLatencies.Stage.SIGNATURE, start);
+        if (!verified) {
+            throw new JwtVerificationException("JWS object didn't pass the verification");
+        }
+
+        return claims;
+    }
 
-        List<JWK> keys = jwkSource.get(selector, null);
+    private boolean checkSignature(CompactJws jws, CompactJws.Header header, PooledRSAVerifier verifier)
+        throws ParseException {
         try {
-            return !keys.isEmpty()
-                && jwt.verify(new RSASSAVerifier((RSAKey) keys.get(0)));
+            return !header.isCritical()
+                && verifier.verify(header.getAlgorithm(), jws.signingInput(), jws.signature());
         } catch (JOSEException e) {
-            throw new JwtVerificationException("JWS object couldn't be verified", e);
+            throw new JwtKeyException("JWS object couldn't be verified", e);
         }
     }
 
-    private void checkExpirationTime(JWTClaimsSet claimsSet) throws ParseException {
-        final Date expirationTime = claimsSet.getExpirationTime();
-        if (expirationTime == null || new Date().after(expirationTime)) {
+    private void checkExpirationTime(Claims claims) {
+        final ZonedDateTime expirationTime = claims.getExpiredAt();
+        if (expirationTime == null || ZonedDateTime.now().isAfter(expirationTime)) {
             throw new JwtVerificationException("JWT has expired");
         }
     }
 
-}
\ No newline at end of file
+    // Whatever isn't set keeps its default: no revocations, the standard checks over the registry
+    // and no rejected tokens remembered
+    public static final class Builder {
+
+        private final VerifierRegistry verifierRegistry;
+        private VerifiedTokenCache verifiedTokenCache = new VerifiedTokenCache(DEFAULT_CACHE_SIZE);
+        private RevocationStore revocationStore = new RevocationStore();
+        private TokenFilter tokenFilter;
+        private RejectedTokenCache rejectedTokenCache = RejectedTokenCache.disabled();
+        private StageLatencies stageLatencies = new StageLatencies();
+
+        private Builder(VerifierRegistry verifierRegistry) {
+            this.verifierRegistry = verifierRegistry;
+        }
+
+        public Builder withVerifiedTokenCache(VerifiedTokenCache verifiedTokenCache) {
+            this.verifiedTokenCache = verifiedTokenCache;
+            return this;
+        }
+
+        public Builder withRevocationStore(RevocationStore revocationStore) {
+            this.revocationStore = revocationStore;
+            return this;
+        }
+
+        public Builder withTokenFilter(TokenFilter tokenFilter) {
+            this.tokenFilter = tokenFilter;
+            return this;
+        }
+
+        public Builder withRejectedTokenCache(RejectedTokenCache rejectedTokenCache) {
+            this.rejectedTokenCache = rejectedTokenCache;
+            return this;
+        }
+
+        public Builder withStageLatencies(StageLatencies stageLatencies) {
+            this.stageLatencies = stageLatencies;
+            return this;
+        }
+
+        public Jwt build() {
+            return new Jwt(this);
+        }
+
+    }
+
+}
@@ -0,0 +1,11 @@
+package authorization.jwt.core;
+
+// Rejection caused by a key or verifier on our side rather than by the token, e.g. a published
+// key that couldn't be converted, so it says nothing about whether the token is bad
+public class JwtKeyException extends JwtVerificationException {
+
+    public JwtKeyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
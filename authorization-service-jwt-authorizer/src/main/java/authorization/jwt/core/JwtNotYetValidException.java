@@ -0,0 +1,18 @@
+package authorization.jwt.core;
+
+import lombok.Getter;
+
+import java.time.Instant;
+
+// Rejection of a token whose "nbf" claim lies ahead, so it only holds until that instant
+@Getter
+public class JwtNotYetValidException extends JwtVerificationException {
+
+    private final Instant notBefore;
+
+    public JwtNotYetValidException(String message, Instant notBefore) {
+        super(message);
+        this.notBefore = notBefore;
+    }
+
+}
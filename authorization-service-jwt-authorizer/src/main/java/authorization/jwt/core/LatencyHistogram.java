@@ -0,0 +1,122 @@
+package authorization.jwt.core;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts latencies in log-linear buckets: every power of two is split into 16 buckets, so a
+// percentile is off by at most 1/16 of the value. Recording is a few shifts and one atomic
+// increment, and the histogram takes the same 5 KB however many values it has seen.
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Some 4.9 hours in nanoseconds, longer values go to the last bucket
+    private static final long MAX_VALUE = (1L << 44) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        counts.incrementAndGet(index(value));
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    // Returns the start time to pass to recordSince
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    // Concurrent recordings may or may not be part of the snapshot
+    public Snapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshotCounts[i] = counts.get(i);
+        }
+
+        return new Snapshot(snapshotCounts, max.get());
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        return ((long) (index % SUB_BUCKETS + SUB_BUCKETS + 1) << shift) - 1;
+    }
+
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long max) {
+            this.counts = counts;
+            this.max = max;
+            long count = 0;
+            for (long bucket : counts) {
+                count += bucket;
+            }
+
+            this.count = count;
+        }
+
+        // Values recorded after the previous snapshot, the maximum is the one since the start
+        public Snapshot since(Snapshot previous) {
+            long[] difference = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                difference[i] = counts[i] - previous.counts[i];
+            }
+
+            return new Snapshot(difference, max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax(TimeUnit unit) {
+            return unit.convert(max, TimeUnit.NANOSECONDS);
+        }
+
+        // Returns the upper bound of the bucket holding the given fraction of values, e.g. 0.99
+        public long getPercentile(double fraction, TimeUnit unit) {
+            if (count == 0) {
+                return 0;
+            }
+
+            long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return unit.convert(Math.min(highestValue(i), max), TimeUnit.NANOSECONDS);
+                }
+            }
+
+            return unit.convert(max, TimeUnit.NANOSECONDS);
+        }
+
+    }
+
+}
@@ -0,0 +1,251 @@
+package authorization.jwt.core;
+
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Assigns every distinct action pattern a bit, so that roles compile to bitsets and
+// merging roles or testing an action costs a few word operations. Patterns registered since
+// the matcher was last compiled are matched one by one until the recompile executor has
+// caught up, so a new action never recompiles the automaton on the request thread.
+public class PermissionIndex {
+
+    private static final int DEFAULT_MAXIMUM_ROLES = 1000;
+
+    private final Executor recompileExecutor;
+    private final int maximumRoles;
+    private final ConcurrentMap<String, CompiledRole> compiledRoles = new ConcurrentHashMap<>();
+    private volatile Generation generation;
+
+    public PermissionIndex() {
+        this(Runnable::run, DEFAULT_MAXIMUM_ROLES);
+    }
+
+    public PermissionIndex(Executor recompileExecutor, int maximumRoles) {
+        this.recompileExecutor = recompileExecutor;
+        this.maximumRoles = maximumRoles;
+        this.generation = new Generation(recompileExecutor);
+    }
+
+    public EffectivePermissions merge(List<RoleDefinition> roleDefinitions) {
+        Generation current = generation;
+        long[] allowed = new long[0];
+        List<EffectivePermissions.Block> blocks = new ArrayList<>();
+        for (RoleDefinition roleDefinition : roleDefinitions) {
+            CompiledRole compiledRole = compile(roleDefinition, current);
+            allowed = or(allowed, compiledRole.actions);
+            blocks.addAll(compiledRole.blocks);
+        }
+
+        return new EffectivePermissions(current, allowed, blocks);
+    }
+
+    // Bits of replaced or evicted roles are never reused, so the index starts over whenever
+    // roles change. Role changes are rare, and roles in use are compiled again on first use.
+    public void invalidateAll() {
+        generation = new Generation(recompileExecutor);
+        compiledRoles.clear();
+    }
+
+    public int size() {
+        return generation.size;
+    }
+
+    // Role definitions are cached upstream, so the same instance is compiled only once
+    // until a refreshed definition replaces it.
+    private CompiledRole compile(RoleDefinition roleDefinition, Generation current) {
+        String roleId = roleDefinition.id();
+        CompiledRole compiledRole = roleId == null ? null : compiledRoles.get(roleId);
+        if (compiledRole != null && compiledRole.roleDefinition == roleDefinition
+                && compiledRole.generation == current) {
+            return compiledRole;
+        }
+
+        // Blocks without notActions can't take anything away, so their actions are merged
+        long[] allowed = new long[0];
+        List<EffectivePermissions.Block> blocks = new ArrayList<>();
+        Set<Permission> permissions = roleDefinition.permissions();
+        if (permissions != null) {
+            for (Permission permission : permissions) {
+                long[] actions = current.set(new long[0], permission.actions());
+                long[] notActions = current.set(new long[0], permission.notActions());
+                if (isEmpty(notActions)) {
+                    allowed = or(allowed, actions);
+                } else {
+                    blocks.add(new EffectivePermissions.Block(actions, notActions));
+                }
+            }
+        }
+
+        compiledRole = new CompiledRole(roleDefinition, current, allowed, blocks);
+        if (roleId != null && current == generation) {
+            // Roles that fell out of use still hold their bits, so past the limit the index starts over
+            if (compiledRoles.size() >= maximumRoles && !compiledRoles.containsKey(roleId)) {
+                invalidateAll();
+            } else {
+                compiledRoles.put(roleId, compiledRole);
+            }
+        }
+
+        return compiledRole;
+    }
+
+    private static boolean isEmpty(long[] words) {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    static long[] or(long[] left, long[] right) {
+        long[] result = Arrays.copyOf(left, Math.max(left.length, right.length));
+        for (int i = 0; i < right.length; i++) {
+            result[i] |= right[i];
+        }
+
+        return result;
+    }
+
+    // The bits and the matcher of one index lifetime. Permissions keep the generation they
+    // were merged in, so starting over never changes the meaning of their bits.
+    static final class Generation {
+
+        private final Executor recompileExecutor;
+        private final ConcurrentMap<String, Integer> bits = new ConcurrentHashMap<>();
+        private final AtomicBoolean recompiling = new AtomicBoolean();
+        private volatile String[] actions = new String[64];
+        // Written after the action it counts, so readers see every action below it
+        private volatile int size;
+        private volatile ActionMatcher matcher = ActionMatcher.compile(Collections.emptyList());
+
+        private Generation(Executor recompileExecutor) {
+            this.recompileExecutor = recompileExecutor;
+        }
+
+        // Returns the bits of all registered patterns matching a concrete action
+        long[] match(String action) {
+            ActionMatcher current = matcher;
+            long[] matches = current.match(action);
+            int registered = size;
+            if (current.size() < registered) {
+                matches = matchPending(matches, action, current.size(), registered);
+                scheduleRecompile();
+            }
+
+            return matches;
+        }
+
+        String actionOf(int bit) {
+            return actions[bit];
+        }
+
+        private long[] matchPending(long[] matches, String action, int from, int to) {
+            String[] patterns = actions;
+            long[] result = Arrays.copyOf(matches, Math.max(matches.length, ((to - 1) >> 6) + 1));
+            for (int bit = from; bit < to; bit++) {
+                if (ActionMatcher.matches(patterns[bit], action)) {
+                    result[bit >> 6] |= 1L << bit;
+                }
+            }
+
+            return result;
+        }
+
+        private void scheduleRecompile() {
+            if (recompiling.compareAndSet(false, true)) {
+                try {
+                    recompileExecutor.execute(this::recompile);
+                } catch (RejectedExecutionException e) {
+                    recompiling.set(false);
+                }
+            }
+        }
+
+        private void recompile() {
+            ActionMatcher recompiled;
+            try {
+                int registered = size;
+                recompiled = ActionMatcher.compile(Arrays.asList(Arrays.copyOf(actions, registered)));
+                matcher = recompiled;
+            } finally {
+                recompiling.set(false);
+            }
+
+            if (recompiled.size() < size) {
+                scheduleRecompile();
+            }
+        }
+
+        private long[] set(long[] words, List<String> actions) {
+            if (actions == null) {
+                return words;
+            }
+
+            for (String action : actions) {
+                int bit = register(action);
+                if (bit >> 6 >= words.length) {
+                    words = Arrays.copyOf(words, (bit >> 6) + 1);
+                }
+
+                words[bit >> 6] |= 1L << bit;
+            }
+
+            return words;
+        }
+
+        private int register(String action) {
+            Integer bit = bits.get(action);
+            if (bit != null) {
+                return bit;
+            }
+
+            synchronized (this) {
+                bit = bits.get(action);
+                if (bit == null) {
+                    bit = size;
+                    if (bit == actions.length) {
+                        actions = Arrays.copyOf(actions, actions.length * 2);
+                    }
+
+                    actions[bit] = action;
+                    size = bit + 1;
+                    bits.put(action, bit);
+                }
+
+                return bit;
+            }
+        }
+
+    }
+
+    private static final class CompiledRole {
+
+        private final RoleDefinition roleDefinition;
+        private final Generation generation;
+        private final long[] actions;
+        private final List<EffectivePermissions.Block> blocks;
+
+        private CompiledRole(RoleDefinition roleDefinition, Generation generation, long[] actions,
+                             List<EffectivePermissions.Block> blocks) {
+            this.roleDefinition = roleDefinition;
+            this.generation = generation;
+            this.actions = actions;
+            this.blocks = blocks;
+        }
+
+    }
+
+}
@@ -0,0 +1,15 @@
+package authorization.jwt.core;
+
+import shared.core.AuthorizationServiceException;
+
+public class PolicyLookupException extends AuthorizationServiceException {
+
+    public PolicyLookupException(String message) {
+        super(message);
+    }
+
+    public PolicyLookupException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
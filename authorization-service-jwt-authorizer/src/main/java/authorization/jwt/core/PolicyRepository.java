@@ -3,10 +3,22 @@ package authorization.jwt.core;
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface PolicyRepository {
 
     // Returns a list of Azure Role Definitions (permissions) based on JWT claims
     List<RoleDefinition> getRoleDefinitions(Claims claims);
 
-}
\ No newline at end of file
+    // Returns the same Role Definitions as getRoleDefinitions without blocking the caller
+    default CompletableFuture<List<RoleDefinition>> getRoleDefinitionsAsync(Claims claims) {
+        return CompletableFuture.completedFuture(getRoleDefinitions(claims));
+    }
+
+    // Returns IDs of Azure Role Definitions referenced by JWT claims
+    List<String> getRoleIds(Claims claims);
+
+    // Returns Azure Role Definition by its ID or null when it doesn't exist
+    RoleDefinition getRoleDefinition(String roleId);
+
+}
@@ -0,0 +1,102 @@
+package authorization.jwt.core;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSVerifier;
+import com.nimbusds.jose.jca.JCAContext;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.Base64URL;
+import lombok.Getter;
+
+import java.security.GeneralSecurityException;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+public class PooledRSAVerifier implements JWSVerifier {
+
+    private static final Map<JWSAlgorithm, String> JCA_ALGORITHMS;
+
+    static {
+        Map<JWSAlgorithm, String> algorithms = new LinkedHashMap<>();
+        algorithms.put(JWSAlgorithm.RS256, "SHA256withRSA");
+        algorithms.put(JWSAlgorithm.RS384, "SHA384withRSA");
+        algorithms.put(JWSAlgorithm.RS512, "SHA512withRSA");
+        JCA_ALGORITHMS = Collections.unmodifiableMap(algorithms);
+    }
+
+    // Signature objects are not thread-safe, so every worker thread keeps its own per algorithm
+    private static final ThreadLocal<Map<JWSAlgorithm, Signature>> SIGNATURES =
+        ThreadLocal.withInitial(HashMap::new);
+
+    @Getter
+    private final RSAKey key;
+    private final RSAPublicKey publicKey;
+    private final JCAContext jcaContext = new JCAContext();
+
+    public PooledRSAVerifier(RSAKey key) throws JOSEException {
+        this.key = key;
+        this.publicKey = key.toRSAPublicKey();
+    }
+
+    @Override
+    public boolean verify(JWSHeader header, byte[] signingInput, Base64URL signature) throws JOSEException {
+        return verify(header.getAlgorithm(), signingInput, signature.decode());
+    }
+
+    public boolean verify(JWSAlgorithm algorithm, byte[] signingInput, byte[] signature) throws JOSEException {
+        Signature verifier = signature(algorithm);
+        try {
+            verifier.initVerify(publicKey);
+            verifier.update(signingInput);
+            return verifier.verify(signature);
+        } catch (SignatureException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            throw new JOSEException("Invalid RSA public key: " + e.getMessage(), e);
+        }
+    }
+
+    public boolean hasSameKey(RSAKey other) {
+        return key.getModulus().equals(other.getModulus())
+            && key.getPublicExponent().equals(other.getPublicExponent());
+    }
+
+    @Override
+    public Set<JWSAlgorithm> supportedJWSAlgorithms() {
+        return JCA_ALGORITHMS.keySet();
+    }
+
+    @Override
+    public JCAContext getJCAContext() {
+        return jcaContext;
+    }
+
+    private static Signature signature(JWSAlgorithm algorithm) throws JOSEException {
+        String jcaAlgorithm = JCA_ALGORITHMS.get(algorithm);
+        if (jcaAlgorithm == null) {
+            throw new JOSEException("Unsupported JWS algorithm " + algorithm);
+        }
+
+        Map<JWSAlgorithm, Signature> signatures = SIGNATURES.get();
+        Signature signature = signatures.get(algorithm);
+        if (signature == null) {
+            try {
+                signature = Signature.getInstance(jcaAlgorithm);
+            } catch (GeneralSecurityException e) {
+                throw new JOSEException("Unsupported RSASSA algorithm: " + e.getMessage(), e);
+            }
+
+            signatures.put(algorithm, signature);
+        }
+
+        return signature;
+    }
+
+}
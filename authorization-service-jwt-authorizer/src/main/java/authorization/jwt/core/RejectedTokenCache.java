@@ -0,0 +1,156 @@
+package authorization.jwt.core;
+
+import com.nimbusds.jose.KeySourceException;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Remembers digests of tokens that failed verification for a short while, so that clients
+// retrying a bad token are answered without another signature check. The table has a fixed
+// number of slots apart from the verified token cache, so a flood of bad tokens only ever
+// pushes out other bad tokens.
+public class RejectedTokenCache {
+
+    private static final int MAX_PROBES = 4;
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final long timeToLiveMillis;
+    private final Clock clock;
+
+    private final ConcurrentMap<String, LongAdder> rejections = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RejectedTokenCache(int maximumSize, long timeToLiveMillis) {
+        this(maximumSize, timeToLiveMillis, Clock.systemUTC());
+    }
+
+    public RejectedTokenCache(int maximumSize, long timeToLiveMillis, Clock clock) {
+        int capacity = maximumSize <= 0 ? 0 : Integer.highestOneBit(maximumSize * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.clock = clock;
+    }
+
+    public static RejectedTokenCache disabled() {
+        return new RejectedTokenCache(0, 0);
+    }
+
+    // Returns the reason the token was rejected for or null when it wasn't rejected lately
+    public String get(TokenDigest digest) {
+        if (slots.length() == 0) {
+            return null;
+        }
+
+        long now = clock.millis();
+        for (int i = 0; i < MAX_PROBES; i++) {
+            Entry entry = slots.get(slot(digest, i));
+            if (entry != null && entry.expiresAt > now && entry.digest.equals(digest)) {
+                hits.increment();
+                count(entry.reason);
+                return entry.reason;
+            }
+        }
+
+        return null;
+    }
+
+    public void put(TokenDigest digest, JwtVerificationException rejection) {
+        count(rejection.getMessage());
+        // A key set that couldn't be fetched or a key that couldn't be used says nothing about the token itself
+        if (slots.length() == 0 || rejection instanceof JwtKeyException
+            || rejection.getCause() instanceof KeySourceException) {
+            return;
+        }
+
+        long now = clock.millis();
+        long expiresAt = now + timeToLiveMillis;
+        // A token that isn't valid yet must be verified again once it becomes valid
+        if (rejection instanceof JwtNotYetValidException) {
+            expiresAt = Math.min(expiresAt, ((JwtNotYetValidException) rejection).getNotBefore().toEpochMilli());
+            if (expiresAt <= now) {
+                return;
+            }
+        }
+
+        Entry entry = new Entry(digest, rejection.getMessage(), expiresAt);
+        int victim = slot(digest, 0);
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < MAX_PROBES; i++) {
+            int index = slot(digest, i);
+            Entry existing = slots.get(index);
+            if (existing == null || existing.expiresAt <= now || existing.digest.equals(digest)) {
+                slots.set(index, entry);
+                return;
+            }
+
+            if (existing.expiresAt < oldest) {
+                oldest = existing.expiresAt;
+                victim = index;
+            }
+        }
+
+        slots.set(victim, entry);
+        evictions.increment();
+    }
+
+    // Tokens signed with a key that was unknown may pass once the key set changes
+    public void invalidateAll() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getRejectionCount(String reason) {
+        LongAdder count = rejections.get(reason);
+        return count == null ? 0 : count.sum();
+    }
+
+    // Rejections per reason, both verified and answered from the cache
+    public Map<String, Long> getRejectionCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        rejections.forEach((reason, count) -> counts.put(reason, count.sum()));
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private void count(String reason) {
+        rejections.computeIfAbsent(String.valueOf(reason), key -> new LongAdder()).increment();
+    }
+
+    private int slot(TokenDigest digest, int probe) {
+        // The digest is a hash already, its hash code only needs spreading
+        int hash = digest.hashCode();
+        return (hash ^ (hash >>> 16)) + probe & mask;
+    }
+
+    private static final class Entry {
+
+        private final TokenDigest digest;
+        private final String reason;
+        private final long expiresAt;
+
+        private Entry(TokenDigest digest, String reason, long expiresAt) {
+            this.digest = digest;
+            this.reason = reason;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,270 @@
+package authorization.jwt.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+// Immutable set of revoked token IDs and usernames. Every entry is kept as a 128-bit digest in
+// an open-addressing table, with a Bloom filter in front of it, so that checking a value that
+// isn't revoked costs a few bit probes and allocates nothing.
+public final class RevocationList {
+
+    private static final int HASHES = 7;
+    private static final int BLOOM_BITS_PER_ENTRY = 10;
+    private static final int MIN_BLOOM_BITS = 1024;
+    private static final long NEVER = Long.MAX_VALUE;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long TOKEN_SEED = 0xcbf29ce484222325L;
+    private static final long USER_SEED = 0x84222325cbf29ce4L;
+
+    private static final RevocationList EMPTY = new Builder().build(0);
+
+    private final long[] bloom;
+    private final long bloomMask;
+    private final long[] high;
+    private final long[] low;
+    private final long[] expiresAt;
+    private final int tableMask;
+    private final int size;
+
+    private RevocationList(long[] bloom, long[] high, long[] low, long[] expiresAt, int size) {
+        this.bloom = bloom;
+        this.bloomMask = (long) bloom.length * Long.SIZE - 1;
+        this.high = high;
+        this.low = low;
+        this.expiresAt = expiresAt;
+        this.tableMask = high.length - 1;
+        this.size = size;
+    }
+
+    public static RevocationList empty() {
+        return EMPTY;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    // One entry per line: "jti <token ID> [<expiry in epoch seconds>]" or "user <username> [...]".
+    // Blank lines and lines starting with "#" are skipped.
+    public static RevocationList load(Path path, long nowMillis) throws IOException {
+        Builder builder = new Builder();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            int lineNumber = 0;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split("\\s+");
+                if (fields.length > 3) {
+                    throw new IOException("Malformed revocation entry at line " + lineNumber);
+                }
+
+                long expiry = NEVER;
+                if (fields.length == 3) {
+                    try {
+                        expiry = TimeUnit.SECONDS.toMillis(Long.parseLong(fields[2]));
+                    } catch (NumberFormatException e) {
+                        throw new IOException("Malformed revocation expiry at line " + lineNumber, e);
+                    }
+                }
+
+                if ("jti".equals(fields[0]) && fields.length > 1) {
+                    builder.addTokenId(fields[1], expiry);
+                } else if ("user".equals(fields[0]) && fields.length > 1) {
+                    builder.addUsername(fields[1], expiry);
+                } else {
+                    throw new IOException("Malformed revocation entry at line " + lineNumber);
+                }
+            }
+        }
+
+        return builder.build(nowMillis);
+    }
+
+    public boolean isRevoked(Claims claims, Clock clock) {
+        return isRevoked(TOKEN_SEED, claims.getTokenId(), clock)
+            || isRevoked(USER_SEED, claims.getUsername(), clock);
+    }
+
+    public boolean isTokenIdRevoked(String tokenId, Clock clock) {
+        return isRevoked(TOKEN_SEED, tokenId, clock);
+    }
+
+    public boolean isUsernameRevoked(String username, Clock clock) {
+        return isRevoked(USER_SEED, username, clock);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Entries of both lists, with those expired by now dropped
+    public RevocationList merge(RevocationList other, long nowMillis) {
+        Builder builder = new Builder();
+        builder.addAll(this);
+        builder.addAll(other);
+        return builder.build(nowMillis);
+    }
+
+    private boolean isRevoked(long seed, String value, Clock clock) {
+        if (value == null || size == 0) {
+            return false;
+        }
+
+        long h1 = hash(seed, value);
+        long h2 = hash(~seed, value) | 1L;
+        if (!mightContain(h1, h2)) {
+            return false;
+        }
+
+        int slot = find(high, low, tableMask, h1, h2);
+        return slot >= 0 && expiresAt[slot] > clock.millis();
+    }
+
+    private boolean mightContain(long h1, long h2) {
+        for (int i = 0; i < HASHES; i++) {
+            long bit = (h1 + i * h2) & bloomMask;
+            if ((bloom[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static int find(long[] high, long[] low, int mask, long h1, long h2) {
+        for (int slot = (int) h1 & mask; ; slot = (slot + 1) & mask) {
+            if (low[slot] == 0) {
+                return -1;
+            }
+
+            if (high[slot] == h1 && low[slot] == h2) {
+                return slot;
+            }
+        }
+    }
+
+    // FNV-1a over the characters, finished with a 64-bit mix so that neighbouring values spread
+    private static long hash(long seed, String value) {
+        long hash = seed;
+        for (int i = 0; i < value.length(); i++) {
+            hash = (hash ^ value.charAt(i)) * FNV_PRIME;
+        }
+
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    public static final class Builder {
+
+        private long[] high = new long[16];
+        private long[] low = new long[16];
+        private long[] expiresAt = new long[16];
+        private int count;
+
+        private Builder() {
+        }
+
+        public Builder addTokenId(String tokenId, long expiresAtMillis) {
+            return add(TOKEN_SEED, tokenId, expiresAtMillis);
+        }
+
+        public Builder addUsername(String username, long expiresAtMillis) {
+            return add(USER_SEED, username, expiresAtMillis);
+        }
+
+        public Builder addTokenId(String tokenId) {
+            return addTokenId(tokenId, NEVER);
+        }
+
+        public Builder addUsername(String username) {
+            return addUsername(username, NEVER);
+        }
+
+        private Builder add(long seed, String value, long expiresAtMillis) {
+            // The low word is odd, so a zero marks an empty slot of the table
+            return add(hash(seed, value), hash(~seed, value) | 1L, expiresAtMillis);
+        }
+
+        private Builder add(long h1, long h2, long expiresAtMillis) {
+            if (count == high.length) {
+                high = Arrays.copyOf(high, count * 2);
+                low = Arrays.copyOf(low, count * 2);
+                expiresAt = Arrays.copyOf(expiresAt, count * 2);
+            }
+
+            high[count] = h1;
+            low[count] = h2;
+            expiresAt[count] = expiresAtMillis;
+            count++;
+            return this;
+        }
+
+        private void addAll(RevocationList list) {
+            for (int slot = 0; slot < list.low.length; slot++) {
+                if (list.low[slot] != 0) {
+                    add(list.high[slot], list.low[slot], list.expiresAt[slot]);
+                }
+            }
+        }
+
+        // The table is kept at most three quarters full, duplicates keep the latest expiry
+        public RevocationList build(long nowMillis) {
+            int capacity = nextPowerOfTwo(count + count / 3 + 1);
+            long[] tableHigh = new long[capacity];
+            long[] tableLow = new long[capacity];
+            long[] tableExpiresAt = new long[capacity];
+            int size = 0;
+            for (int i = 0; i < count; i++) {
+                if (expiresAt[i] <= nowMillis) {
+                    continue;
+                }
+
+                int slot = find(tableHigh, tableLow, capacity - 1, high[i], low[i]);
+                if (slot >= 0) {
+                    tableExpiresAt[slot] = Math.max(tableExpiresAt[slot], expiresAt[i]);
+                    continue;
+                }
+
+                slot = (int) high[i] & (capacity - 1);
+                while (tableLow[slot] != 0) {
+                    slot = (slot + 1) & (capacity - 1);
+                }
+
+                tableHigh[slot] = high[i];
+                tableLow[slot] = low[i];
+                tableExpiresAt[slot] = expiresAt[i];
+                size++;
+            }
+
+            long bloomBits = Long.highestOneBit(Math.max((long) size * BLOOM_BITS_PER_ENTRY, MIN_BLOOM_BITS) * 2 - 1);
+            long[] bloom = new long[(int) (bloomBits / Long.SIZE)];
+            for (int slot = 0; slot < capacity; slot++) {
+                if (tableLow[slot] != 0) {
+                    for (int i = 0; i < HASHES; i++) {
+                        long bit = (tableHigh[slot] + i * tableLow[slot]) & (bloomBits - 1);
+                        bloom[(int) (bit >>> 6)] |= 1L << bit;
+                    }
+                }
+            }
+
+            return new RevocationList(bloom, tableHigh, tableLow, tableExpiresAt, size);
+        }
+
+        private static int nextPowerOfTwo(int value) {
+            return value <= 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+package authorization.jwt.core;
+
+import java.time.Clock;
+import java.util.concurrent.atomic.LongAdder;
+
+// Holds the revocation list in force. Entries loaded from the revocation file and entries pushed
+// by administrators are merged into a new list, which replaces the current one atomically.
+public class RevocationStore {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 1_000_000;
+
+    private final int maximumSize;
+    private final Clock clock;
+    private final LongAdder rejections = new LongAdder();
+
+    private RevocationList loaded = RevocationList.empty();
+    private RevocationList pushed = RevocationList.empty();
+    private volatile RevocationList current = RevocationList.empty();
+
+    public RevocationStore() {
+        this(DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public RevocationStore(int maximumSize) {
+        this(maximumSize, Clock.systemUTC());
+    }
+
+    public RevocationStore(int maximumSize, Clock clock) {
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    public boolean isRevoked(Claims claims) {
+        if (current.isRevoked(claims, clock)) {
+            rejections.increment();
+            return true;
+        }
+
+        return false;
+    }
+
+    // Replaces the entries of the revocation file, pushed entries are kept
+    public synchronized void replace(RevocationList list) {
+        swap(list, pushed);
+    }
+
+    // Adds entries until they expire or the worker restarts
+    public synchronized void push(RevocationList additions) {
+        swap(loaded, pushed.merge(additions, clock.millis()));
+    }
+
+    public int size() {
+        return current.size();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    private void swap(RevocationList loaded, RevocationList pushed) {
+        RevocationList merged = loaded.merge(pushed, clock.millis());
+        if (merged.size() > maximumSize) {
+            throw new IllegalArgumentException("Revocation list exceeds " + maximumSize + " entries");
+        }
+
+        this.loaded = loaded;
+        this.pushed = pushed;
+        this.current = merged;
+    }
+
+}
@@ -0,0 +1,259 @@
+package authorization.jwt.core;
+
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class RoleDefinitionCache {
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+    private final ConcurrentMap<String, Entry> entries;
+    private final ConcurrentMap<String, CompletableFuture<Entry>> loads;
+    private final long timeToLiveMillis;
+    private final long negativeTimeToLiveMillis;
+    private final int maximumSize;
+    private final Clock clock;
+
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+    private final List<BiConsumer<RoleDefinition, RoleDefinition>> entryListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loadCount = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public RoleDefinitionCache(long timeToLiveMillis, long negativeTimeToLiveMillis, int maximumSize) {
+        this(timeToLiveMillis, negativeTimeToLiveMillis, maximumSize, Clock.systemUTC());
+    }
+
+    public RoleDefinitionCache(long timeToLiveMillis, long negativeTimeToLiveMillis, int maximumSize, Clock clock) {
+        this.entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+        this.loads = new ConcurrentHashMap<>();
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.negativeTimeToLiveMillis = negativeTimeToLiveMillis;
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    // Listeners learn the ID of every role whose definition changed or was invalidated
+    public void addListener(Consumer<String> listener) {
+        listeners.add(listener);
+    }
+
+    // Entry listeners learn every definition the cache starts or stops serving, as the removed
+    // and the added definition, either of which may be null. Evictions are reported too.
+    public void addEntryListener(BiConsumer<RoleDefinition, RoleDefinition> listener) {
+        entryListeners.add(listener);
+    }
+
+    // Returns the cached Role Definition or loads it, with concurrent misses for the same ID
+    // sharing a single load. Not found results and failures are cached for a shorter time.
+    public RoleDefinition get(String roleId, Function<String, RoleDefinition> loader) {
+        Entry entry = entries.get(roleId);
+        if (entry != null && entry.expiresAt > clock.millis()) {
+            hits.increment();
+            return entry.value();
+        }
+
+        misses.increment();
+        CompletableFuture<Entry> load = new CompletableFuture<>();
+        CompletableFuture<Entry> existing = loads.putIfAbsent(roleId, load);
+        if (existing != null) {
+            return existing.join().value();
+        }
+
+        try {
+            entry = load(roleId, loader);
+            store(roleId, entry);
+            load.complete(entry);
+        } catch (Error e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loads.remove(roleId, load);
+        }
+
+        return entry.value();
+    }
+
+    public void invalidate(String roleId) {
+        dropped(entries.remove(roleId));
+        notifyListeners(roleId);
+    }
+
+    public void invalidateAll() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            dropped(entry);
+        }
+
+        notifyListeners(null);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    private Entry load(String roleId, Function<String, RoleDefinition> loader) {
+        loadCount.increment();
+        try {
+            RoleDefinition roleDefinition = loader.apply(roleId);
+            long timeToLive = roleDefinition == null ? negativeTimeToLiveMillis : timeToLiveMillis;
+            return new Entry(roleId, roleDefinition, null, clock.millis() + timeToLive);
+        } catch (RuntimeException e) {
+            return new Entry(roleId, null, e, clock.millis() + negativeTimeToLiveMillis);
+        }
+    }
+
+    private void store(String roleId, Entry entry) {
+        if (maximumSize <= 0) {
+            return;
+        }
+
+        if (entries.size() >= maximumSize && !entries.containsKey(roleId)) {
+            makeRoom(clock.millis());
+        }
+
+        Entry previous = entries.put(roleId, entry);
+        RoleDefinition removed = previous == null ? null : previous.roleDefinition;
+        if (removed != null || entry.roleDefinition != null) {
+            notifyEntryListeners(removed, entry.roleDefinition);
+        }
+
+        if (previous != null && previous.error == null && entry.error == null
+                && !isSameDefinition(previous.roleDefinition, entry.roleDefinition)) {
+            notifyListeners(roleId);
+        }
+    }
+
+    private void makeRoom(long now) {
+        // Expired definitions are dropped at most once per interval, otherwise arbitrary
+        // entries give way, so a cache full of live entries doesn't scan on every insert.
+        long previous = lastSweep.get();
+        if (now - previous >= SWEEP_INTERVAL_MILLIS && lastSweep.compareAndSet(previous, now)) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry existing = iterator.next();
+                if (existing.expiresAt <= now) {
+                    iterator.remove();
+                    dropped(existing);
+                }
+            }
+        }
+
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() >= maximumSize && iterator.hasNext()) {
+            Entry evicted = iterator.next();
+            iterator.remove();
+            evictions.increment();
+            dropped(evicted);
+        }
+    }
+
+    private void dropped(Entry entry) {
+        if (entry != null && entry.roleDefinition != null) {
+            notifyEntryListeners(entry.roleDefinition, null);
+        }
+    }
+
+    private void notifyListeners(String roleId) {
+        for (Consumer<String> listener : listeners) {
+            listener.accept(roleId);
+        }
+    }
+
+    private void notifyEntryListeners(RoleDefinition removed, RoleDefinition added) {
+        for (BiConsumer<RoleDefinition, RoleDefinition> listener : entryListeners) {
+            listener.accept(removed, added);
+        }
+    }
+
+    // Reloads return new instances, so definitions are compared by what decisions depend on
+    private static boolean isSameDefinition(RoleDefinition left, RoleDefinition right) {
+        if (left == right) {
+            return true;
+        }
+
+        if (left == null || right == null) {
+            return false;
+        }
+
+        return Objects.equals(left.roleName(), right.roleName())
+                && Objects.equals(left.assignableScopes(), right.assignableScopes())
+                && Objects.equals(permissionsOf(left), permissionsOf(right));
+    }
+
+    private static Set<List<List<String>>> permissionsOf(RoleDefinition roleDefinition) {
+        if (roleDefinition.permissions() == null) {
+            return Collections.emptySet();
+        }
+
+        Set<List<List<String>>> permissions = new HashSet<>();
+        for (Permission permission : roleDefinition.permissions()) {
+            permissions.add(Arrays.asList(permission.actions(), permission.notActions()));
+        }
+
+        return permissions;
+    }
+
+    private static final class Entry {
+
+        private final String roleId;
+        private final RoleDefinition roleDefinition;
+        private final RuntimeException error;
+        private final long expiresAt;
+
+        private Entry(String roleId, RoleDefinition roleDefinition, RuntimeException error, long expiresAt) {
+            this.roleId = roleId;
+            this.roleDefinition = roleDefinition;
+            this.error = error;
+            this.expiresAt = expiresAt;
+        }
+
+        private RoleDefinition value() {
+            if (error != null) {
+                throw new PolicyLookupException("Role definition " + roleId + " couldn't be retrieved", error);
+            }
+
+            return roleDefinition;
+        }
+
+    }
+
+}
@@ -0,0 +1,75 @@
+package authorization.jwt.core;
+
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+// Starts role definition lookups from the unverified claims, so that they run while the
+// signature is checked. The lookups are handed out only once the token has been verified.
+@RequiredArgsConstructor
+public class RolePrefetcher {
+
+    private final Jwt jwt;
+    private final PolicyRepository policyRepository;
+
+    public Prefetch start(String header) {
+        return start(header, unverified -> true);
+    }
+
+    // Lookups start only for claims that need them, e.g. those without a cached decision
+    public Prefetch start(String header, Predicate<Claims> needsRoleDefinitions) {
+        Claims unverified = jwt.peek(header);
+        return new Prefetch(header, unverified,
+            unverified == null || !needsRoleDefinitions.test(unverified)
+                ? null
+                : policyRepository.getRoleDefinitionsAsync(unverified));
+    }
+
+    public final class Prefetch {
+
+        private final String header;
+        private final Claims unverified;
+        private final CompletableFuture<List<RoleDefinition>> roleDefinitions;
+
+        private Prefetch(String header, Claims unverified, CompletableFuture<List<RoleDefinition>> roleDefinitions) {
+            this.header = header;
+            this.unverified = unverified;
+            this.roleDefinitions = roleDefinitions;
+        }
+
+        public Claims verify() {
+            try {
+                return jwt.verify(header);
+            } catch (RuntimeException e) {
+                discard();
+                throw e;
+            }
+        }
+
+        // The prefetched lookup only serves the claims it was started for
+        public CompletableFuture<List<RoleDefinition>> getRoleDefinitionsAsync(Claims claims) {
+            if (roleDefinitions != null && Objects.equals(unverified.getRoles(), claims.getRoles())) {
+                return roleDefinitions;
+            }
+
+            discard();
+            return policyRepository.getRoleDefinitionsAsync(claims);
+        }
+
+        public boolean isStarted() {
+            return roleDefinitions != null;
+        }
+
+        private void discard() {
+            if (roleDefinitions != null) {
+                roleDefinitions.cancel(false);
+            }
+        }
+
+    }
+
+}
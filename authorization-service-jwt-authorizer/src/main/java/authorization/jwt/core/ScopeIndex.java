@@ -0,0 +1,311 @@
+package authorization.jwt.core;
+
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Indexes the assignable scopes of Role Definitions in a trie keyed by path segment, so that
+// the roles applying at a resource are found by walking its path once. A role assignable at
+// a scope applies there and at every resource below it. The index is fed by the role
+// definition cache or snapshot as definitions come and go, not by the requests that use them.
+public class ScopeIndex {
+
+    private static final String ROOT = "/";
+
+    private final Node root = new Node();
+    private final ConcurrentMap<String, IndexedRole> indexedRoles = new ConcurrentHashMap<>();
+
+    // Role definitions are cached upstream, so the same instance is indexed only once
+    // until a refreshed definition replaces it.
+    public void add(RoleDefinition roleDefinition) {
+        String roleId = roleDefinition.id();
+        if (roleId == null) {
+            return;
+        }
+
+        IndexedRole indexedRole = indexedRoles.get(roleId);
+        if (indexedRole != null && indexedRole.roleDefinition == roleDefinition) {
+            return;
+        }
+
+        synchronized (this) {
+            indexedRole = indexedRoles.get(roleId);
+            if (indexedRole != null && indexedRole.roleDefinition == roleDefinition) {
+                return;
+            }
+
+            List<String> scopes = scopesOf(roleDefinition);
+            for (String scope : scopes) {
+                node(scope).roleIds.add(roleId);
+            }
+
+            if (indexedRole != null) {
+                for (String scope : indexedRole.scopes) {
+                    if (!scopes.contains(scope)) {
+                        unlink(scope, roleId);
+                    }
+                }
+            }
+
+            indexedRoles.put(roleId, new IndexedRole(roleDefinition, scopes));
+        }
+    }
+
+    // Drops the role unless a newer definition has replaced it in the meantime
+    public synchronized void remove(RoleDefinition roleDefinition) {
+        String roleId = roleDefinition.id();
+        IndexedRole indexedRole = roleId == null ? null : indexedRoles.get(roleId);
+        if (indexedRole == null || indexedRole.roleDefinition != roleDefinition) {
+            return;
+        }
+
+        for (String scope : indexedRole.scopes) {
+            unlink(scope, roleId);
+        }
+
+        indexedRoles.remove(roleId);
+    }
+
+    // Takes a change of the definitions served upstream, where either side may be missing
+    public void replace(RoleDefinition removed, RoleDefinition added) {
+        if (added != null) {
+            add(added);
+        }
+
+        if (removed != null && (added == null || !Objects.equals(removed.id(), added.id()))) {
+            remove(removed);
+        }
+    }
+
+    // Indexes a whole new set of definitions, e.g. a swapped snapshot, and drops the rest
+    public synchronized void replaceAll(Collection<RoleDefinition> roleDefinitions) {
+        Set<String> roleIds = new HashSet<>();
+        for (RoleDefinition roleDefinition : roleDefinitions) {
+            add(roleDefinition);
+            roleIds.add(roleDefinition.id());
+        }
+
+        for (IndexedRole indexedRole : new ArrayList<>(indexedRoles.values())) {
+            if (!roleIds.contains(indexedRole.roleDefinition.id())) {
+                remove(indexedRole.roleDefinition);
+            }
+        }
+    }
+
+    // Returns the roles that apply at the resource, in their original order. Roles without an
+    // ID or scopes aren't bound to any scope and always apply. A definition the index doesn't
+    // hold, e.g. one loaded while the cache was full, is checked against its own scopes.
+    public List<RoleDefinition> applicableAt(List<RoleDefinition> roleDefinitions, String resourcePath) {
+        List<Set<String>> path = null;
+        List<String> segments = null;
+        List<RoleDefinition> applicable = new ArrayList<>(roleDefinitions.size());
+        for (RoleDefinition roleDefinition : roleDefinitions) {
+            String roleId = roleDefinition.id();
+            IndexedRole indexedRole = roleId == null ? null : indexedRoles.get(roleId);
+            boolean applies;
+            if (roleId == null) {
+                applies = true;
+            } else if (indexedRole != null && indexedRole.roleDefinition == roleDefinition) {
+                if (path == null) {
+                    path = path(resourcePath);
+                }
+
+                applies = indexedRole.scopes.isEmpty() || appliesOnPath(roleId, path);
+            } else {
+                if (segments == null) {
+                    segments = segments(resourcePath);
+                }
+
+                applies = appliesAt(scopesOf(roleDefinition), segments);
+            }
+
+            if (applies) {
+                applicable.add(roleDefinition);
+            }
+        }
+
+        return applicable;
+    }
+
+    // Returns the IDs of all indexed roles that apply at the resource
+    public Set<String> roleIdsAt(String resourcePath) {
+        Set<String> roleIds = new LinkedHashSet<>();
+        for (Set<String> nodeRoleIds : path(resourcePath)) {
+            roleIds.addAll(nodeRoleIds);
+        }
+
+        return roleIds;
+    }
+
+    public int size() {
+        return indexedRoles.size();
+    }
+
+    private static boolean appliesOnPath(String roleId, List<Set<String>> path) {
+        for (Set<String> roleIds : path) {
+            if (roleIds.contains(roleId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    // Collects the roles of every node from the root down to the resource
+    private List<Set<String>> path(String resourcePath) {
+        List<Set<String>> path = new ArrayList<>();
+        Node node = root;
+        path.add(node.roleIds);
+        int start = 0;
+        int length = resourcePath == null ? 0 : resourcePath.length();
+        while (node != null && start < length) {
+            int end = resourcePath.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            if (end > start) {
+                node = node.children.get(segment(resourcePath, start, end));
+                if (node != null && !node.roleIds.isEmpty()) {
+                    path.add(node.roleIds);
+                }
+            }
+
+            start = end + 1;
+        }
+
+        return path;
+    }
+
+    private static boolean appliesAt(List<String> scopes, List<String> resourceSegments) {
+        if (scopes.isEmpty()) {
+            return true;
+        }
+
+        for (String scope : scopes) {
+            List<String> scopeSegments = segments(scope);
+            if (scopeSegments.size() <= resourceSegments.size()
+                    && scopeSegments.equals(resourceSegments.subList(0, scopeSegments.size()))) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private static List<String> segments(String path) {
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int length = path == null ? 0 : path.length();
+        while (start < length) {
+            int end = path.indexOf('/', start);
+            if (end < 0) {
+                end = length;
+            }
+
+            if (end > start) {
+                segments.add(segment(path, start, end));
+            }
+
+            start = end + 1;
+        }
+
+        return segments;
+    }
+
+    // Removes the role from the scope's node and prunes the nodes left without roles
+    private void unlink(String scope, String roleId) {
+        List<Node> nodes = new ArrayList<>();
+        List<String> segments = segments(scope);
+        Node node = root;
+        nodes.add(node);
+        for (String segment : segments) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return;
+            }
+
+            nodes.add(node);
+        }
+
+        node.roleIds.remove(roleId);
+        for (int i = nodes.size() - 1; i > 0; i--) {
+            Node child = nodes.get(i);
+            if (!child.roleIds.isEmpty() || !child.children.isEmpty()) {
+                break;
+            }
+
+            nodes.get(i - 1).children.remove(segments.get(i - 1), child);
+        }
+    }
+
+    private Node node(String scope) {
+        Node node = root;
+        int start = 0;
+        while (start < scope.length()) {
+            int end = scope.indexOf('/', start);
+            if (end < 0) {
+                end = scope.length();
+            }
+
+            if (end > start) {
+                node = node.children.computeIfAbsent(segment(scope, start, end), segment -> new Node());
+            }
+
+            start = end + 1;
+        }
+
+        return node;
+    }
+
+    private static List<String> scopesOf(RoleDefinition roleDefinition) {
+        Collection<String> assignableScopes = roleDefinition.assignableScopes();
+        if (assignableScopes == null) {
+            return Collections.emptyList();
+        }
+
+        List<String> scopes = new ArrayList<>(assignableScopes.size());
+        for (String scope : assignableScopes) {
+            if (scope != null && !scopes.contains(scope)) {
+                scopes.add(scope.isEmpty() ? ROOT : scope);
+            }
+        }
+
+        return scopes;
+    }
+
+    // Azure resource IDs compare case-insensitively
+    private static String segment(String path, int start, int end) {
+        return path.substring(start, end).toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Node {
+
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private final Set<String> roleIds = ConcurrentHashMap.newKeySet();
+
+    }
+
+    private static final class IndexedRole {
+
+        private final RoleDefinition roleDefinition;
+        private final List<String> scopes;
+
+        private IndexedRole(RoleDefinition roleDefinition, List<String> scopes) {
+            this.roleDefinition = roleDefinition;
+            this.scopes = scopes;
+        }
+
+    }
+
+}
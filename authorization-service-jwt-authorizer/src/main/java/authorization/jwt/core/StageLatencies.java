@@ -0,0 +1,70 @@
+package authorization.jwt.core;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Latency histograms for each stage of an authorization, from the token header to the response
+public class StageLatencies {
+
+    public enum Stage {
+        // Splitting the compact serialization and decoding header and claims
+        PARSE,
+        // Finding the verifier for the key ID, which may fetch the key set, after the cheap checks
+        KEY_LOOKUP,
+        SIGNATURE,
+        ROLE_LOOKUP,
+        POLICY_EVALUATION,
+        // Building the response, including the encoding of policy documents
+        RESPONSE,
+        TOTAL
+    }
+
+    private final Map<Stage, LatencyHistogram> histograms = new EnumMap<>(Stage.class);
+
+    public StageLatencies() {
+        for (Stage stage : Stage.values()) {
+            histograms.put(stage, new LatencyHistogram());
+        }
+    }
+
+    public LatencyHistogram get(Stage stage) {
+        return histograms.get(stage);
+    }
+
+    public void recordSince(Stage stage, long startNanos) {
+        histograms.get(stage).recordSince(startNanos);
+    }
+
+    public Map<Stage, LatencyHistogram.Snapshot> snapshot() {
+        Map<Stage, LatencyHistogram.Snapshot> snapshot = new EnumMap<>(Stage.class);
+        histograms.forEach((stage, histogram) -> snapshot.put(stage, histogram.snapshot()));
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    // One line in microseconds, e.g. "PARSE n=120 p50=8 p99=31 max=90, KEY_LOOKUP ...".
+    // Stages without values are left out.
+    public static String summary(Map<Stage, LatencyHistogram.Snapshot> snapshot) {
+        StringBuilder summary = new StringBuilder();
+        snapshot.forEach((stage, histogram) -> {
+            if (histogram.getCount() == 0) {
+                return;
+            }
+
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+
+            summary.append(stage)
+                .append(" n=").append(histogram.getCount())
+                .append(" p50=").append(histogram.getPercentile(0.5, TimeUnit.MICROSECONDS))
+                .append(" p90=").append(histogram.getPercentile(0.9, TimeUnit.MICROSECONDS))
+                .append(" p99=").append(histogram.getPercentile(0.99, TimeUnit.MICROSECONDS))
+                .append(" max=").append(histogram.getMax(TimeUnit.MICROSECONDS));
+        });
+
+        return summary.toString();
+    }
+
+}
@@ -0,0 +1,69 @@
+package authorization.jwt.core;
+
+import lombok.SneakyThrows;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+public final class TokenDigest {
+
+    private static final ThreadLocal<MessageDigest> SHA_256 =
+        ThreadLocal.withInitial(TokenDigest::createMessageDigest);
+    private static final ThreadLocal<byte[]> BUFFER =
+        ThreadLocal.withInitial(() -> new byte[CompactJws.MAX_TOKEN_LENGTH]);
+
+    private final byte[] value;
+    private final int hashCode;
+
+    private TokenDigest(byte[] value) {
+        this.value = value;
+        this.hashCode = Arrays.hashCode(value);
+    }
+
+    public static TokenDigest of(String token) {
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        return new TokenDigest(
+            digest.digest(token.getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    // Digests an ASCII region of a string through a reusable per-thread buffer
+    public static TokenDigest of(String source, int from, int to) {
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < to - from) {
+            buffer = new byte[to - from];
+            BUFFER.set(buffer);
+        }
+
+        for (int i = from; i < to; i++) {
+            buffer[i - from] = (byte) source.charAt(i);
+        }
+
+        MessageDigest digest = SHA_256.get();
+        digest.reset();
+        digest.update(buffer, 0, to - from);
+        return new TokenDigest(digest.digest());
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+
+        return o instanceof TokenDigest
+            && Arrays.equals(value, ((TokenDigest) o).value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @SneakyThrows
+    private static MessageDigest createMessageDigest() {
+        return MessageDigest.getInstance("SHA-256");
+    }
+
+}
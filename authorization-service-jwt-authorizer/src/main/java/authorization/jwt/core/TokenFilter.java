@@ -0,0 +1,89 @@
+package authorization.jwt.core;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+// Ordered checks that need no cryptography. They run before the signature is verified, so that
+// malformed, foreign or expired tokens cost a parse at most. Rejections are counted per stage.
+public class TokenFilter {
+
+    public static final Set<JWSAlgorithm> DEFAULT_ALGORITHMS = Collections.unmodifiableSet(new HashSet<>(
+        Arrays.asList(JWSAlgorithm.RS256, JWSAlgorithm.RS384, JWSAlgorithm.RS512)));
+
+    public enum Stage {
+        FORMAT, ALGORITHM, EXPIRATION, NOT_BEFORE, KEY_ID
+    }
+
+    private final VerifierRegistry verifierRegistry;
+    private final Set<JWSAlgorithm> allowedAlgorithms;
+    private final Clock clock;
+    private final Map<Stage, LongAdder> rejections = new EnumMap<>(Stage.class);
+
+    public TokenFilter(VerifierRegistry verifierRegistry) {
+        this(verifierRegistry, DEFAULT_ALGORITHMS, Clock.systemUTC());
+    }
+
+    public TokenFilter(VerifierRegistry verifierRegistry, Set<JWSAlgorithm> allowedAlgorithms, Clock clock) {
+        this.verifierRegistry = verifierRegistry;
+        this.allowedAlgorithms = allowedAlgorithms;
+        this.clock = clock;
+        for (Stage stage : Stage.values()) {
+            rejections.put(stage, new LongAdder());
+        }
+    }
+
+    // Length, alphabet and structure of the compact serialization
+    public CompactJws parse(String header) {
+        try {
+            return CompactJws.parse(header);
+        } catch (JwtVerificationException e) {
+            rejections.get(Stage.FORMAT).increment();
+            throw e;
+        }
+    }
+
+    // Returns the verifier for the signing key, the stages that only read the token go first
+    public PooledRSAVerifier check(CompactJws.Header header, Claims claims) throws KeySourceException {
+        if (!allowedAlgorithms.contains(header.getAlgorithm())) {
+            throw reject(Stage.ALGORITHM, "JWS algorithm isn't allowed");
+        }
+
+        Instant now = clock.instant();
+        if (claims.getExpiredAt() == null || now.isAfter(claims.getExpiredAt().toInstant())) {
+            throw reject(Stage.EXPIRATION, "JWT has expired");
+        }
+
+        if (claims.getNotBefore() != null && now.isBefore(claims.getNotBefore().toInstant())) {
+            rejections.get(Stage.NOT_BEFORE).increment();
+            throw new JwtNotYetValidException("JWT isn't valid yet", claims.getNotBefore().toInstant());
+        }
+
+        // An unknown key may trigger a rate-limited key set fetch, so this stage comes last
+        PooledRSAVerifier verifier = header.getKeyId() == null ? null : verifierRegistry.get(header.getKeyId());
+        if (verifier == null) {
+            throw reject(Stage.KEY_ID, "JWS object didn't pass the verification");
+        }
+
+        return verifier;
+    }
+
+    public long getRejectionCount(Stage stage) {
+        return rejections.get(stage).sum();
+    }
+
+    private JwtVerificationException reject(Stage stage, String message) {
+        rejections.get(stage).increment();
+        return new JwtVerificationException(message);
+    }
+
+}
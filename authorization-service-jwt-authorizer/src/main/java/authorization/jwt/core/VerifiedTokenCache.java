@@ -0,0 +1,143 @@
+package authorization.jwt.core;
+
+import java.time.Clock;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+public class VerifiedTokenCache {
+
+    private static final long SWEEP_INTERVAL_MILLIS = 1000L;
+
+    private final ConcurrentMap<TokenDigest, Entry> entries;
+    private final int maximumSize;
+    private final Clock clock;
+
+    private final AtomicLong lastSweep = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    public VerifiedTokenCache(int maximumSize) {
+        this(maximumSize, Clock.systemUTC());
+    }
+
+    public VerifiedTokenCache(int maximumSize, Clock clock) {
+        this.entries = new ConcurrentHashMap<>(Math.min(maximumSize, 1024));
+        this.maximumSize = maximumSize;
+        this.clock = clock;
+    }
+
+    public Claims get(TokenDigest digest) {
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+
+        if (entry.expiresAt <= clock.millis()) {
+            if (entries.remove(digest, entry)) {
+                expirations.increment();
+            }
+
+            misses.increment();
+            return null;
+        }
+
+        hits.increment();
+        return entry.claims.copy();
+    }
+
+    // Unlike get, doesn't count as a lookup
+    public boolean contains(TokenDigest digest) {
+        Entry entry = entries.get(digest);
+        return entry != null && entry.expiresAt > clock.millis();
+    }
+
+    public void put(TokenDigest digest, Claims claims) {
+        if (maximumSize <= 0 || claims.getExpiredAt() == null) {
+            return;
+        }
+
+        long now = clock.millis();
+        long expiresAt = claims.getExpiredAt().toInstant().toEpochMilli();
+        if (expiresAt <= now) {
+            return;
+        }
+
+        if (entries.size() >= maximumSize && !entries.containsKey(digest)) {
+            makeRoom(now);
+        }
+
+        entries.put(digest, new Entry(claims.copy(), expiresAt));
+    }
+
+    public void invalidateAll() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long requests = hits + getMissCount();
+        return requests == 0 ? 0.0 : (double) hits / requests;
+    }
+
+    private void makeRoom(long now) {
+        // Expired tokens are dropped at most once per interval, otherwise arbitrary
+        // entries give way so that the size bound holds under a flood of new tokens.
+        long previous = lastSweep.get();
+        if (now - previous >= SWEEP_INTERVAL_MILLIS && lastSweep.compareAndSet(previous, now)) {
+            entries.values().removeIf(entry -> {
+                boolean expired = entry.expiresAt <= now;
+                if (expired) {
+                    expirations.increment();
+                }
+
+                return expired;
+            });
+        }
+
+        Iterator<TokenDigest> iterator = entries.keySet().iterator();
+        while (entries.size() >= maximumSize && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+            evictions.increment();
+        }
+    }
+
+    private static final class Entry {
+
+        private final Claims claims;
+        private final long expiresAt;
+
+        private Entry(Claims claims, long expiresAt) {
+            this.claims = claims;
+            this.expiresAt = expiresAt;
+        }
+
+    }
+
+}
@@ -0,0 +1,148 @@
+package authorization.jwt.core;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Verifiers are kept for at most the given age, after which the key source is asked again,
+// so a key dropped from the key set stops verifying tokens even if no update reports it.
+public class VerifierRegistry {
+
+    public static final long DEFAULT_MAXIMUM_AGE_MILLIS = 300_000L;
+
+    private final JWKSource<? extends SecurityContext> jwkSource;
+    private final ConcurrentMap<String, Entry> verifiers;
+    private final long maximumAgeMillis;
+    private final Clock clock;
+    private Map<String, RSAKey> published = Collections.emptyMap();
+
+    public VerifierRegistry(JWKSource<? extends SecurityContext> jwkSource) {
+        this(jwkSource, DEFAULT_MAXIMUM_AGE_MILLIS, Clock.systemUTC());
+    }
+
+    public VerifierRegistry(JWKSource<? extends SecurityContext> jwkSource, long maximumAgeMillis, Clock clock) {
+        this.jwkSource = jwkSource;
+        this.verifiers = new ConcurrentHashMap<>();
+        this.maximumAgeMillis = maximumAgeMillis;
+        this.clock = clock;
+    }
+
+    public PooledRSAVerifier get(String keyId) throws KeySourceException {
+        if (keyId != null) {
+            Entry entry = verifiers.get(keyId);
+            if (entry != null && isFresh(entry)) {
+                return entry.verifier;
+            }
+        }
+
+        List<JWK> keys = jwkSource.get(new JWKSelector(
+            new JWKMatcher.Builder()
+                .keyID(keyId)
+                .publicOnly(true)
+                .build()), null);
+
+        if (keys.isEmpty() || !(keys.get(0) instanceof RSAKey)) {
+            if (keyId != null) {
+                verifiers.remove(keyId);
+            }
+
+            return null;
+        }
+
+        RSAKey key = (RSAKey) keys.get(0);
+        Entry existing = keyId == null ? null : verifiers.get(keyId);
+        PooledRSAVerifier verifier = existing != null && existing.verifier.hasSameKey(key)
+            ? existing.verifier
+            : createVerifier(key);
+        if (keyId != null) {
+            verifiers.put(keyId, new Entry(verifier, clock.millis()));
+        }
+
+        return verifier;
+    }
+
+    public boolean contains(String keyId) {
+        if (keyId == null) {
+            return false;
+        }
+
+        Entry entry = verifiers.get(keyId);
+        return entry != null && isFresh(entry);
+    }
+
+    // Returns whether a key published or verified with before was dropped or replaced, so that
+    // callers can forget tokens the withdrawn key signed
+    public synchronized boolean update(List<JWK> keys) {
+        Map<String, RSAKey> current = new HashMap<>();
+        boolean withdrawn = false;
+        for (JWK key : keys) {
+            if (!(key instanceof RSAKey) || key.getKeyID() == null) {
+                continue;
+            }
+
+            RSAKey rsaKey = (RSAKey) key;
+            current.put(rsaKey.getKeyID(), rsaKey);
+            Entry existing = verifiers.get(rsaKey.getKeyID());
+            boolean sameKey = existing != null && existing.verifier.hasSameKey(rsaKey);
+            withdrawn |= existing != null && !sameKey;
+            PooledRSAVerifier verifier = sameKey ? existing.verifier : createVerifier(rsaKey);
+            verifiers.put(rsaKey.getKeyID(), new Entry(verifier, clock.millis()));
+        }
+
+        withdrawn |= verifiers.keySet().retainAll(current.keySet());
+        for (Map.Entry<String, RSAKey> entry : published.entrySet()) {
+            RSAKey key = current.get(entry.getKey());
+            withdrawn |= key == null || !isSameKey(key, entry.getValue());
+        }
+
+        published = current;
+        return withdrawn;
+    }
+
+    public int size() {
+        return verifiers.size();
+    }
+
+    private boolean isFresh(Entry entry) {
+        return clock.millis() - entry.loadedAt < maximumAgeMillis;
+    }
+
+    private static boolean isSameKey(RSAKey key, RSAKey other) {
+        return key.getModulus().equals(other.getModulus())
+            && key.getPublicExponent().equals(other.getPublicExponent());
+    }
+
+    private static PooledRSAVerifier createVerifier(RSAKey key) {
+        try {
+            return new PooledRSAVerifier(key);
+        } catch (JOSEException e) {
+            throw new JwtKeyException("JWK couldn't be converted to RSA public key", e);
+        }
+    }
+
+    private static final class Entry {
+
+        private final PooledRSAVerifier verifier;
+        private final long loadedAt;
+
+        private Entry(PooledRSAVerifier verifier, long loadedAt) {
+            this.verifier = verifier;
+            this.loadedAt = loadedAt;
+        }
+
+    }
+
+}
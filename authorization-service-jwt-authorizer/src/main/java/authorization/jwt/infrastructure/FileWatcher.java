@@ -0,0 +1,74 @@
+package authorization.jwt.infrastructure;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.ExecutorService;
+
+// Reloads a file whenever it's created or replaced. A failed reload is logged and the
+// watcher keeps going, so the previously loaded contents stay in use.
+public class FileWatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileWatcher.class);
+
+    private final Path path;
+    private final ExecutorService executor;
+    private final Reloader reloader;
+
+    public FileWatcher(Path path, ExecutorService executor, Reloader reloader) {
+        this.path = path.toAbsolutePath();
+        this.executor = executor;
+        this.reloader = reloader;
+    }
+
+    public void start() throws IOException {
+        WatchService watchService = path.getFileSystem().newWatchService();
+        path.getParent().register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        executor.execute(() -> watch(watchService));
+    }
+
+    private void watch(WatchService watchService) {
+        try (WatchService ignored = watchService) {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= path.getFileName().equals(event.context());
+                }
+
+                if (changed) {
+                    try {
+                        reloader.reload();
+                    } catch (IOException | RuntimeException e) {
+                        logger.warn("{} couldn't be reloaded", path, e);
+                    }
+                }
+
+                if (!key.reset()) {
+                    logger.warn("Stopped watching {}", path);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | ClosedWatchServiceException e) {
+            logger.warn("Watching {} failed", path, e);
+        }
+    }
+
+    @FunctionalInterface
+    public interface Reloader {
+
+        void reload() throws IOException;
+
+    }
+
+}
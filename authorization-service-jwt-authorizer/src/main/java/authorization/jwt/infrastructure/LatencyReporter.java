@@ -0,0 +1,54 @@
+package authorization.jwt.infrastructure;
+
+import authorization.jwt.core.LatencyHistogram;
+import authorization.jwt.core.StageLatencies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Logs the stage latencies of each interval as a single line. Nothing is logged for an
+// interval without authorizations.
+public class LatencyReporter {
+
+    private static final Logger logger = LoggerFactory.getLogger(LatencyReporter.class);
+
+    private final StageLatencies stageLatencies;
+    private final ScheduledExecutorService scheduler;
+    private final long intervalMillis;
+
+    private Map<StageLatencies.Stage, LatencyHistogram.Snapshot> previous;
+
+    public LatencyReporter(StageLatencies stageLatencies, ScheduledExecutorService scheduler, long intervalMillis) {
+        this.stageLatencies = stageLatencies;
+        this.scheduler = scheduler;
+        this.intervalMillis = intervalMillis;
+    }
+
+    public void start() {
+        previous = stageLatencies.snapshot();
+        scheduler.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Runs on the scheduler thread only
+    void report() {
+        try {
+            Map<StageLatencies.Stage, LatencyHistogram.Snapshot> current = stageLatencies.snapshot();
+            Map<StageLatencies.Stage, LatencyHistogram.Snapshot> interval = new EnumMap<>(StageLatencies.Stage.class);
+            current.forEach((stage, snapshot) -> interval.put(stage, snapshot.since(previous.get(stage))));
+            previous = current;
+
+            String summary = StageLatencies.summary(interval);
+            if (!summary.isEmpty()) {
+                logger.info("Latencies (us): {}", summary);
+            }
+        } catch (RuntimeException e) {
+            // An exception would cancel all further reports
+            logger.warn("Latencies couldn't be reported", e);
+        }
+    }
+
+}
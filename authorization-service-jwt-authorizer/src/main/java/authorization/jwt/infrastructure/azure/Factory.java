@@ -1,43 +1,209 @@
 package authorization.jwt.infrastructure.azure;
+import authorization.jwt.infrastructure.FileWatcher;
+import authorization.jwt.infrastructure.LatencyReporter;
 import authorization.jwt.infrastructure.azure.rbac.AzureResourceManagerWrapper;
 import com.azure.core.credential.TokenCredential;
 import com.azure.core.management.AzureEnvironment;
 import com.azure.core.management.profile.AzureProfile;
 import com.azure.identity.DefaultAzureCredentialBuilder;
 import com.azure.resourcemanager.AzureResourceManager;
+import authorization.jwt.core.CachingPolicyRepository;
+import authorization.jwt.core.ConcurrentPolicyRepository;
+import authorization.jwt.core.DecisionCache;
 import authorization.jwt.core.Jwt;
+import authorization.jwt.core.PermissionIndex;
 import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.core.RejectedTokenCache;
+import authorization.jwt.core.RevocationList;
+import authorization.jwt.core.RevocationStore;
+import authorization.jwt.core.RoleDefinitionCache;
+import authorization.jwt.core.ScopeIndex;
+import authorization.jwt.core.StageLatencies;
+import authorization.jwt.core.TokenFilter;
+import authorization.jwt.core.VerifiedTokenCache;
+import authorization.jwt.core.VerifierRegistry;
 import authorization.jwt.infrastructure.azure.rbac.RolePolicyRepository;
-import com.nimbusds.jose.jwk.source.JWKSource;
+import authorization.jwt.infrastructure.azure.rbac.SnapshotPolicyRepository;
+import authorization.jwt.infrastructure.azure.ad.RefreshingJWKSource;
+import com.nimbusds.jose.JWSAlgorithm;
 import com.nimbusds.jose.jwk.source.RemoteJWKSet;
-import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
 import lombok.Getter;
 import lombok.SneakyThrows;
+import shared.infrastructure.azure.gateway.AuthorizerResponse;
 
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 public class Factory {
 
     private static final String AZURE_TENANT_ID = "AZURE_AD_TENANT_ID";
     private static final String AZURE_SUBSCRIPTION_ID = "AZURE_AD_SUBSCRIPTION_ID";
     private static final String AZURE_AD_CLIENT_ID = "AZURE_AD_CLIENT_ID";
+    private static final String JWT_CACHE_MAXIMUM_SIZE = "JWT_CACHE_MAXIMUM_SIZE";
+    private static final String JWT_ALLOWED_ALGORITHMS = "JWT_ALLOWED_ALGORITHMS";
+    private static final String JWT_REJECTION_CACHE_MAXIMUM_SIZE = "JWT_REJECTION_CACHE_MAXIMUM_SIZE";
+    private static final String JWT_REJECTION_CACHE_TTL_SECONDS = "JWT_REJECTION_CACHE_TTL_SECONDS";
+    private static final String JWKS_REFRESH_INTERVAL_SECONDS = "JWKS_REFRESH_INTERVAL_SECONDS";
+    private static final String JWKS_MIN_FETCH_INTERVAL_SECONDS = "JWKS_MIN_FETCH_INTERVAL_SECONDS";
+    private static final String ROLE_CACHE_TTL_SECONDS = "ROLE_CACHE_TTL_SECONDS";
+    private static final String ROLE_CACHE_NEGATIVE_TTL_SECONDS = "ROLE_CACHE_NEGATIVE_TTL_SECONDS";
+    private static final String ROLE_CACHE_MAXIMUM_SIZE = "ROLE_CACHE_MAXIMUM_SIZE";
+    private static final String DECISION_CACHE_MAXIMUM_SIZE = "DECISION_CACHE_MAXIMUM_SIZE";
+    private static final String ROLE_LOOKUP_THREADS = "ROLE_LOOKUP_THREADS";
+    private static final String ROLE_LOOKUP_QUEUE_SIZE = "ROLE_LOOKUP_QUEUE_SIZE";
+    private static final String ROLE_LOOKUP_TIMEOUT_MILLIS = "ROLE_LOOKUP_TIMEOUT_MILLIS";
+    private static final String ROLE_DEFINITION_SNAPSHOT_PATH = "ROLE_DEFINITION_SNAPSHOT_PATH";
+    private static final String ROLE_PREFETCH_ENABLED = "ROLE_PREFETCH_ENABLED";
+    private static final String REVOCATION_LIST_PATH = "REVOCATION_LIST_PATH";
+    private static final String REVOCATION_LIST_MAXIMUM_SIZE = "REVOCATION_LIST_MAXIMUM_SIZE";
+    private static final String BATCH_MAXIMUM_SIZE = "BATCH_MAXIMUM_SIZE";
+    private static final String BATCH_VERIFICATION_THREADS = "BATCH_VERIFICATION_THREADS";
+    private static final String LATENCY_SUMMARY_INTERVAL_SECONDS = "LATENCY_SUMMARY_INTERVAL_SECONDS";
 
     @Getter(lazy = true)
     private static final Factory instance = new Factory(System.getenv());
 
     private final String azureTenantId;
     private final String azureSubscriptionId;
-    private final JWKSource<? extends SecurityContext> jwkSource;
+    private final VerifierRegistry verifierRegistry;
     private final AzureResourceManager azureResourceManager;
+    private final ExecutorService roleLookupExecutor;
+    private final long roleLookupTimeoutMillis;
+    private final String roleDefinitionSnapshotPath;
+    @Getter
+    private final VerifiedTokenCache verifiedTokenCache;
+    @Getter
+    private final RoleDefinitionCache roleDefinitionCache;
+    @Getter
+    private final PermissionIndex permissionIndex;
+    @Getter
+    private final ScopeIndex scopeIndex = new ScopeIndex();
+    @Getter
+    private final StageLatencies stageLatencies = new StageLatencies();
+    @Getter
+    private final DecisionCache<AuthorizerResponse> decisionCache;
+    @Getter
+    private final RevocationStore revocationStore;
+    @Getter
+    private final TokenFilter tokenFilter;
+    @Getter
+    private final RejectedTokenCache rejectedTokenCache;
+    @Getter
+    private final boolean rolePrefetchEnabled;
+    @Getter
+    private final int batchMaximumSize;
+    @Getter
+    private final ExecutorService batchVerificationExecutor;
+    // Shared by all invocations of this worker, so both must be thread-safe
+    @Getter(lazy = true)
+    private final Jwt jsonWebToken = createJsonWebToken();
+    @Getter(lazy = true)
+    private final PolicyRepository rolePolicyRepository = createRolePolicyRepository();
 
     @SneakyThrows
     public Factory(Map<String, String> env) {
         azureTenantId = env.get(AZURE_TENANT_ID);
         azureSubscriptionId = env.get(AZURE_SUBSCRIPTION_ID);
-        // Set up JWKSource using Azure AD endpoint for JWT verification
-        jwkSource = new RemoteJWKSet<>(new URL(String.format(
-                "https://login.microsoftonline.com/%s/discovery/v2.0/keys", azureTenantId)));
+        long jwksRefreshIntervalMillis =
+                TimeUnit.SECONDS.toMillis(Long.parseLong(env.getOrDefault(JWKS_REFRESH_INTERVAL_SECONDS, "3600")));
+        // Set up JWKSource using Azure AD endpoint for JWT verification, refreshed in background
+        RefreshingJWKSource jwkSource = new RefreshingJWKSource(
+                new URL(String.format("https://login.microsoftonline.com/%s/discovery/v2.0/keys", azureTenantId)),
+                new DefaultResourceRetriever(
+                        RemoteJWKSet.DEFAULT_HTTP_CONNECT_TIMEOUT,
+                        RemoteJWKSet.DEFAULT_HTTP_READ_TIMEOUT,
+                        RemoteJWKSet.DEFAULT_HTTP_SIZE_LIMIT),
+                createDaemonScheduler("jwks-refresh"),
+                jwksRefreshIntervalMillis,
+                TimeUnit.SECONDS.toMillis(Long.parseLong(env.getOrDefault(JWKS_MIN_FETCH_INTERVAL_SECONDS, "30"))));
+        // A verifier outlives its key by at most one refresh, even if an update goes missing
+        verifierRegistry = new VerifierRegistry(jwkSource, jwksRefreshIntervalMillis, Clock.systemUTC());
+        // Sized apart from the verified token cache, so bad tokens can't push out good ones
+        rejectedTokenCache = new RejectedTokenCache(
+                Integer.parseInt(env.getOrDefault(JWT_REJECTION_CACHE_MAXIMUM_SIZE, "10000")),
+                TimeUnit.SECONDS.toMillis(Long.parseLong(env.getOrDefault(JWT_REJECTION_CACHE_TTL_SECONDS, "30"))));
+        verifiedTokenCache = new VerifiedTokenCache(
+                Integer.parseInt(env.getOrDefault(JWT_CACHE_MAXIMUM_SIZE, "10000")));
+        // Tokens signed by a withdrawn key, e.g. a compromised one, must not stay accepted from the cache
+        jwkSource.addListener(jwkSet -> {
+            if (verifierRegistry.update(jwkSet.getKeys())) {
+                verifiedTokenCache.invalidateAll();
+            }
+
+            rejectedTokenCache.invalidateAll();
+        });
+        jwkSource.start();
+        String allowedAlgorithms = env.get(JWT_ALLOWED_ALGORITHMS);
+        tokenFilter = new TokenFilter(verifierRegistry,
+                allowedAlgorithms == null
+                        ? TokenFilter.DEFAULT_ALGORITHMS
+                        : Arrays.stream(allowedAlgorithms.split(","))
+                                .map(String::trim)
+                                .map(JWSAlgorithm::parse)
+                                .collect(Collectors.toSet()),
+                Clock.systemUTC());
+        long roleCacheTimeToLiveMillis =
+                TimeUnit.SECONDS.toMillis(Long.parseLong(env.getOrDefault(ROLE_CACHE_TTL_SECONDS, "300")));
+        roleDefinitionCache = new RoleDefinitionCache(
+                roleCacheTimeToLiveMillis,
+                TimeUnit.SECONDS.toMillis(Long.parseLong(env.getOrDefault(ROLE_CACHE_NEGATIVE_TTL_SECONDS, "30"))),
+                Integer.parseInt(env.getOrDefault(ROLE_CACHE_MAXIMUM_SIZE, "1000")));
+        // New actions are matched one by one until the matcher is recompiled on its own thread
+        permissionIndex = new PermissionIndex(createDaemonScheduler("permission-index"),
+                Integer.parseInt(env.getOrDefault(ROLE_CACHE_MAXIMUM_SIZE, "1000")));
+        // Decisions skip role lookups, so they expire with role definitions to let changes be seen
+        decisionCache = new DecisionCache<>(
+                Integer.parseInt(env.getOrDefault(DECISION_CACHE_MAXIMUM_SIZE, "10000")),
+                roleCacheTimeToLiveMillis);
+        roleDefinitionCache.addListener(roleId -> {
+            decisionCache.invalidateAll();
+            permissionIndex.invalidateAll();
+        });
+        // The scope index follows the cached definitions, including replaced and evicted ones
+        roleDefinitionCache.addEntryListener(scopeIndex::replace);
+        roleLookupExecutor = createDaemonExecutor("role-lookup",
+                Integer.parseInt(env.getOrDefault(ROLE_LOOKUP_THREADS, "8")),
+                Integer.parseInt(env.getOrDefault(ROLE_LOOKUP_QUEUE_SIZE, "256")));
+        roleLookupTimeoutMillis = Long.parseLong(env.getOrDefault(ROLE_LOOKUP_TIMEOUT_MILLIS, "2000"));
+        roleDefinitionSnapshotPath = env.get(ROLE_DEFINITION_SNAPSHOT_PATH);
+        // Each entry takes about 50 bytes, so the default bounds the list at some 50 MB
+        revocationStore = new RevocationStore(
+                Integer.parseInt(env.getOrDefault(REVOCATION_LIST_MAXIMUM_SIZE, "1000000")));
+        String revocationListPath = env.get(REVOCATION_LIST_PATH);
+        if (revocationListPath != null) {
+            Path path = Paths.get(revocationListPath);
+            revocationStore.replace(RevocationList.load(path, System.currentTimeMillis()));
+            new FileWatcher(path, createDaemonScheduler("revocation-list-watch"),
+                    () -> revocationStore.replace(RevocationList.load(path, System.currentTimeMillis())))
+                    .start();
+        }
+
+        rolePrefetchEnabled = Boolean.parseBoolean(env.getOrDefault(ROLE_PREFETCH_ENABLED, "false"));
+        batchMaximumSize = Integer.parseInt(env.getOrDefault(BATCH_MAXIMUM_SIZE, "100"));
+        // Signature checks are CPU bound, so one thread per core is enough
+        int batchVerificationThreads = Integer.parseInt(env.getOrDefault(BATCH_VERIFICATION_THREADS,
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        batchVerificationExecutor = createDaemonExecutor("batch-verification",
+                batchVerificationThreads, batchMaximumSize);
+
+        long latencySummaryIntervalSeconds = Long.parseLong(env.getOrDefault(LATENCY_SUMMARY_INTERVAL_SECONDS, "60"));
+        if (latencySummaryIntervalSeconds > 0) {
+            new LatencyReporter(stageLatencies, createDaemonScheduler("latency-summary"),
+                    TimeUnit.SECONDS.toMillis(latencySummaryIntervalSeconds)).start();
+        }
 
         // Initialize TokenCredential
         TokenCredential credential = new DefaultAzureCredentialBuilder().build();
@@ -51,12 +217,59 @@ public class Factory {
                 .withDefaultSubscription();
     }
 
-    public Jwt createJsonWebToken() {
-        return new Jwt(jwkSource);
+    private Jwt createJsonWebToken() {
+        return Jwt.builder(verifierRegistry)
+                .withVerifiedTokenCache(verifiedTokenCache)
+                .withRevocationStore(revocationStore)
+                .withTokenFilter(tokenFilter)
+                .withRejectedTokenCache(rejectedTokenCache)
+                .withStageLatencies(stageLatencies)
+                .build();
+    }
+
+    @SneakyThrows
+    private PolicyRepository createRolePolicyRepository() {
+        // A local snapshot needs neither caching nor concurrent lookups, it's a memory read
+        if (roleDefinitionSnapshotPath != null) {
+            SnapshotPolicyRepository snapshotPolicyRepository = new SnapshotPolicyRepository(
+                    Paths.get(roleDefinitionSnapshotPath), createDaemonScheduler("role-snapshot-watch"));
+            scopeIndex.replaceAll(snapshotPolicyRepository.getSnapshot().roleDefinitions());
+            snapshotPolicyRepository.addListener(snapshot -> {
+                scopeIndex.replaceAll(snapshot.roleDefinitions());
+                decisionCache.invalidateAll();
+                permissionIndex.invalidateAll();
+            });
+            snapshotPolicyRepository.start();
+            return snapshotPolicyRepository;
+        }
+
+        return new ConcurrentPolicyRepository(
+                new CachingPolicyRepository(
+                        new RolePolicyRepository(new AzureResourceManagerWrapper(azureResourceManager)),
+                        roleDefinitionCache),
+                roleLookupExecutor,
+                roleLookupTimeoutMillis);
+    }
+
+    // Lookups beyond the queue capacity run on the calling thread, which throttles the caller
+    private static ExecutorService createDaemonExecutor(String name, int threads, int queueSize) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
     }
 
-    public PolicyRepository createRolePolicyRepository() {
-        return new RolePolicyRepository(new AzureResourceManagerWrapper(azureResourceManager));
+    private static ScheduledExecutorService createDaemonScheduler(String name) {
+        return Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
 }
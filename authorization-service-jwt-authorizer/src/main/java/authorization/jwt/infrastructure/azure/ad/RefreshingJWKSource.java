@@ -0,0 +1,168 @@
+package authorization.jwt.infrastructure.azure.ad;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jose.util.ResourceRetriever;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+public class RefreshingJWKSource implements JWKSource<SecurityContext> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RefreshingJWKSource.class);
+
+    private static final double JITTER_RATIO = 0.1;
+    private static final long MISS_FETCH_TIMEOUT_MILLIS = 5_000L;
+
+    private final URL jwkSetUrl;
+    private final ResourceRetriever resourceRetriever;
+    private final ScheduledExecutorService scheduler;
+    private final long refreshIntervalMillis;
+    private final long minFetchIntervalNanos;
+
+    private final List<Consumer<JWKSet>> listeners = new CopyOnWriteArrayList<>();
+    private final AtomicReference<CompletableFuture<JWKSet>> inflight = new AtomicReference<>();
+    private volatile JWKSet jwkSet = new JWKSet();
+    private volatile long lastFetchNanos = System.nanoTime() - Long.MAX_VALUE / 2;
+
+    public RefreshingJWKSource(URL jwkSetUrl, ResourceRetriever resourceRetriever, ScheduledExecutorService scheduler,
+                               long refreshIntervalMillis, long minFetchIntervalMillis) {
+        this.jwkSetUrl = jwkSetUrl;
+        this.resourceRetriever = resourceRetriever;
+        this.scheduler = scheduler;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.minFetchIntervalNanos = TimeUnit.MILLISECONDS.toNanos(minFetchIntervalMillis);
+    }
+
+    public void addListener(Consumer<JWKSet> listener) {
+        listeners.add(listener);
+    }
+
+    public void start() {
+        scheduler.execute(this::scheduledRefresh);
+    }
+
+    public JWKSet getJWKSet() {
+        return jwkSet;
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) {
+        List<JWK> matches = jwkSelector.select(jwkSet);
+        if (!matches.isEmpty()) {
+            return matches;
+        }
+
+        Set<String> keyIds = jwkSelector.getMatcher().getKeyIDs();
+        if (keyIds == null || keyIds.isEmpty()) {
+            return matches;
+        }
+
+        JWKSet refreshed = fetchOnMiss();
+        return refreshed == null
+            ? Collections.emptyList()
+            : jwkSelector.select(refreshed);
+    }
+
+    // A failing listener is logged, so it neither stops the others nor fails the refresh
+    public JWKSet refresh() throws Exception {
+        lastFetchNanos = System.nanoTime();
+        JWKSet refreshed = JWKSet.parse(
+            resourceRetriever.retrieveResource(jwkSetUrl).getContent());
+
+        jwkSet = refreshed;
+        for (Consumer<JWKSet> listener : listeners) {
+            try {
+                listener.accept(refreshed);
+            } catch (RuntimeException e) {
+                logger.warn("Listener of JWK set from {} failed", jwkSetUrl, e);
+            }
+        }
+
+        return refreshed;
+    }
+
+    // Unknown key IDs show up in bursts during a key rotation, so all concurrent misses
+    // wait on the same fetch, and no new fetch starts sooner than the minimum interval.
+    // The fetch runs on the scheduler, so no request thread makes the HTTP call itself.
+    private JWKSet fetchOnMiss() {
+        CompletableFuture<JWKSet> fetch = inflight.get();
+        if (fetch == null) {
+            if (System.nanoTime() - lastFetchNanos < minFetchIntervalNanos) {
+                return jwkSet;
+            }
+
+            CompletableFuture<JWKSet> created = new CompletableFuture<>();
+            if (inflight.compareAndSet(null, created)) {
+                try {
+                    scheduler.execute(() -> fetch(created));
+                } catch (RejectedExecutionException e) {
+                    inflight.compareAndSet(created, null);
+                    created.completeExceptionally(e);
+                }
+
+                fetch = created;
+            } else {
+                fetch = inflight.get();
+                if (fetch == null) {
+                    return jwkSet;
+                }
+            }
+        }
+
+        try {
+            return fetch.get(MISS_FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private void fetch(CompletableFuture<JWKSet> fetch) {
+        try {
+            fetch.complete(System.nanoTime() - lastFetchNanos < minFetchIntervalNanos
+                ? jwkSet : refresh());
+        } catch (Exception e) {
+            logger.warn("JWK set couldn't be fetched from {}", jwkSetUrl, e);
+            fetch.completeExceptionally(e);
+        } finally {
+            inflight.compareAndSet(fetch, null);
+        }
+    }
+
+    private void scheduledRefresh() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("Background refresh of JWK set from {} failed", jwkSetUrl, e);
+        } finally {
+            if (!scheduler.isShutdown()) {
+                scheduler.schedule(this::scheduledRefresh, nextDelayMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private long nextDelayMillis() {
+        long jitter = (long) (refreshIntervalMillis * JITTER_RATIO);
+        return refreshIntervalMillis - jitter
+            + ThreadLocalRandom.current().nextLong(2 * jitter + 1);
+    }
+
+}
@@ -3,74 +3,100 @@ package authorization.jwt.infrastructure.azure.functions;
 import authorization.jwt.core.Claims;
 import authorization.jwt.core.Jwt;
 import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.LatencyHistogram;
 import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.core.RolePrefetcher;
+import authorization.jwt.core.StageLatencies;
 import authorization.jwt.infrastructure.azure.Factory;
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
 import com.microsoft.azure.functions.annotation.AuthorizationLevel;
 import com.microsoft.azure.functions.annotation.HttpTrigger;
 import shared.infrastructure.azure.gateway.AuthorizerRequest;
 import shared.infrastructure.azure.gateway.AuthorizerResponse;
+import shared.infrastructure.azure.gateway.JsonUtil;
+import shared.infrastructure.azure.gateway.proxy.HttpHeaders;
 import com.microsoft.azure.functions.*;
 import com.microsoft.azure.functions.annotation.FunctionName;
-import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 
-@RequiredArgsConstructor
 public class AuthorizerRequestHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(AuthorizerRequestHandler.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
 
     private final Factory factory;
+    private final PolicyEvaluator policyEvaluator;
 
     public AuthorizerRequestHandler() {
         this(Factory.getInstance());
     }
 
+    public AuthorizerRequestHandler(Factory factory) {
+        this.factory = factory;
+        this.policyEvaluator = new PolicyEvaluator(factory);
+    }
+
     @FunctionName("AuthorizerRequestHandler")
     public HttpResponseMessage handleRequest(
             @HttpTrigger(name = "req", methods = {HttpMethod.POST}, authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<AuthorizerRequest>> request,
             final ExecutionContext context) {
 
-        Jwt jwt = factory.createJsonWebToken();
-        PolicyRepository rolePolicyRepository = factory.createRolePolicyRepository();
+        long start = LatencyHistogram.start();
+        Jwt jwt = factory.getJsonWebToken();
+        PolicyRepository rolePolicyRepository = factory.getRolePolicyRepository();
 
         try {
             AuthorizerRequest authorizerRequest = request.getBody().orElseThrow(() ->
                     new JwtVerificationException("Authorization request is missing."));
 
-            logger.warn("Jwt: {}", jwt);
-            logger.warn("Auth token: {}", authorizerRequest.getAuthorizationToken());
-
-            Claims claims = jwt.verify(authorizerRequest.getAuthorizationToken());
-
-            List<RoleDefinition> roleDefinitions = rolePolicyRepository.getRoleDefinitions(claims);
-            logger.warn("Claims: {}", claims);
-            logger.warn("Role Definitions: {}", roleDefinitions);
-
-            AuthorizerResponse authorizerResponse = new AuthorizerResponse.Builder()
-                    .withPrincipalId(claims.getUsername())
-                    .withRoleDefinition(roleDefinitions.get(0))
-                    .build();
-
+            auditLog.info(logger, "Authorizing token {}", AuditLog.redact(authorizerRequest.getAuthorizationToken()));
+
+            Claims claims;
+            Function<Claims, CompletableFuture<List<RoleDefinition>>> roleDefinitionLookup;
+            if (factory.isRolePrefetchEnabled()) {
+                // Role lookups run while the signature is checked and are dropped if it fails.
+                // A cached decision needs no lookup, so none is started for it.
+                RolePrefetcher.Prefetch prefetch = new RolePrefetcher(jwt, rolePolicyRepository)
+                        .start(authorizerRequest.getAuthorizationToken(), unverified -> !policyEvaluator.isCached(
+                                unverified, rolePolicyRepository.getRoleIds(unverified), authorizerRequest.getMethodArn()));
+                claims = prefetch.verify();
+                roleDefinitionLookup = prefetch::getRoleDefinitionsAsync;
+            } else {
+                claims = jwt.verify(authorizerRequest.getAuthorizationToken());
+                roleDefinitionLookup = rolePolicyRepository::getRoleDefinitionsAsync;
+            }
+
+            AuthorizerResponse authorizerResponse = policyEvaluator.evaluate(claims,
+                    rolePolicyRepository.getRoleIds(claims), authorizerRequest.getMethodArn(),
+                    roleDefinitionLookup);
+
+            // Encoded here rather than by the runtime, whose serializer would walk the Role Definitions
             return request.createResponseBuilder(HttpStatus.OK)
-                    .body(authorizerResponse)
+                    .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                    .body(JsonUtil.toJsonString(authorizerResponse))
                     .build();
 
         } catch (JwtVerificationException e) {
-            logger.warn("Unauthorized: {}", e.getMessage());
+            auditLog.warn(logger, "Unauthorized: {}", e.getMessage());
             return request.createResponseBuilder(HttpStatus.UNAUTHORIZED)
                     .body("Unauthorized")
                     .build();
 
         } catch (Exception e) {
-            logger.error("Internal Server Error", e);
+            auditLog.error(logger, "Internal Server Error", e);
             return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Internal Server Error")
                     .build();
+
+        } finally {
+            factory.getStageLatencies().recordSince(StageLatencies.Stage.TOTAL, start);
         }
     }
 }
@@ -0,0 +1,17 @@
+package authorization.jwt.infrastructure.azure.functions;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import shared.infrastructure.azure.gateway.AuthorizerResponse;
+
+// Outcome of one item of a batch, carrying the status the single request handler would have returned
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AuthorizerResult {
+
+    private int status;
+    private AuthorizerResponse response;
+    private String error;
+}
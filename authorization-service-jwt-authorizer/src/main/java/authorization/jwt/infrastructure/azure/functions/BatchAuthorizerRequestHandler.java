@@ -0,0 +1,146 @@
+package authorization.jwt.infrastructure.azure.functions;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.Jwt;
+import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.infrastructure.azure.Factory;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
+import shared.infrastructure.azure.gateway.AuthorizerRequest;
+import shared.infrastructure.azure.gateway.AuthorizerResponse;
+import shared.infrastructure.azure.gateway.JsonUtil;
+import shared.infrastructure.azure.gateway.proxy.HttpHeaders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Authorizes many requests in one invocation. Tokens are verified in parallel, and items
+// with the same roles share a single role definition lookup.
+public class BatchAuthorizerRequestHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchAuthorizerRequestHandler.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
+
+    private final Factory factory;
+    private final PolicyEvaluator policyEvaluator;
+
+    public BatchAuthorizerRequestHandler() {
+        this(Factory.getInstance());
+    }
+
+    public BatchAuthorizerRequestHandler(Factory factory) {
+        this.factory = factory;
+        this.policyEvaluator = new PolicyEvaluator(factory);
+    }
+
+    @FunctionName("BatchAuthorizerRequestHandler")
+    public HttpResponseMessage handleRequest(
+            @HttpTrigger(name = "req", methods = {HttpMethod.POST}, authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<List<AuthorizerRequest>>> request,
+            final ExecutionContext context) {
+
+        List<AuthorizerRequest> authorizerRequests = request.getBody().orElse(null);
+        if (authorizerRequests == null || authorizerRequests.size() > factory.getBatchMaximumSize()) {
+            auditLog.warn(logger, "Bad Request: batch is missing or has more than {} items", factory.getBatchMaximumSize());
+            return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .body("Bad Request")
+                    .build();
+        }
+
+        Jwt jwt = factory.getJsonWebToken();
+        PolicyRepository rolePolicyRepository = factory.getRolePolicyRepository();
+        ConcurrentMap<List<String>, CompletableFuture<List<RoleDefinition>>> roleDefinitionLookups =
+                new ConcurrentHashMap<>();
+
+        List<CompletableFuture<AuthorizerResult>> pending = new ArrayList<>(authorizerRequests.size());
+        for (AuthorizerRequest authorizerRequest : authorizerRequests) {
+            pending.add(authorize(jwt, rolePolicyRepository, roleDefinitionLookups, authorizerRequest));
+        }
+
+        // Every item turns its failure into a result, so this is the only place anything waits
+        List<AuthorizerResult> results = new ArrayList<>(pending.size());
+        for (CompletableFuture<AuthorizerResult> result : pending) {
+            results.add(result.join());
+        }
+
+        return request.createResponseBuilder(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .body(JsonUtil.toJsonString(results))
+                .build();
+    }
+
+    // Verification runs on the batch pool and the decision is composed on the shared role lookup,
+    // so pool threads never wait for each other
+    private CompletableFuture<AuthorizerResult> authorize(
+            Jwt jwt, PolicyRepository rolePolicyRepository,
+            ConcurrentMap<List<String>, CompletableFuture<List<RoleDefinition>>> roleDefinitionLookups,
+            AuthorizerRequest authorizerRequest) {
+        return CompletableFuture.supplyAsync(() -> {
+                    if (authorizerRequest == null) {
+                        throw new JwtVerificationException("Authorization request is missing.");
+                    }
+
+                    return jwt.verify(authorizerRequest.getAuthorizationToken());
+                }, factory.getBatchVerificationExecutor())
+                .thenCompose(claims -> {
+                    List<String> roleIds = rolePolicyRepository.getRoleIds(claims);
+                    return policyEvaluator.evaluateAsync(claims, roleIds, authorizerRequest.getMethodArn(),
+                            verified -> lookup(rolePolicyRepository, roleDefinitionLookups, roleIds, verified));
+                })
+                .handle((authorizerResponse, error) -> {
+                    if (error == null) {
+                        return new AuthorizerResult(HttpStatus.OK.value(), authorizerResponse, null);
+                    }
+
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause()
+                            : error;
+                    if (cause instanceof JwtVerificationException) {
+                        auditLog.warn(logger, "Unauthorized: {}", cause.getMessage());
+                        return new AuthorizerResult(HttpStatus.UNAUTHORIZED.value(), null, "Unauthorized");
+                    }
+
+                    auditLog.error(logger, "Internal Server Error", cause);
+                    return new AuthorizerResult(HttpStatus.INTERNAL_SERVER_ERROR.value(), null, "Internal Server Error");
+                });
+    }
+
+    // The first item with a role set claims its slot and starts the lookup outside the map, so a
+    // lookup that runs inline never holds the map's lock
+    private static CompletableFuture<List<RoleDefinition>> lookup(
+            PolicyRepository rolePolicyRepository,
+            ConcurrentMap<List<String>, CompletableFuture<List<RoleDefinition>>> roleDefinitionLookups,
+            List<String> roleIds, Claims claims) {
+        CompletableFuture<List<RoleDefinition>> pending = new CompletableFuture<>();
+        CompletableFuture<List<RoleDefinition>> existing = roleDefinitionLookups.putIfAbsent(roleIds, pending);
+        if (existing != null) {
+            return existing;
+        }
+
+        try {
+            rolePolicyRepository.getRoleDefinitionsAsync(claims).whenComplete((roleDefinitions, error) -> {
+                if (error != null) {
+                    pending.completeExceptionally(error);
+                } else {
+                    pending.complete(roleDefinitions);
+                }
+            });
+        } catch (RuntimeException e) {
+            pending.completeExceptionally(e);
+        }
+
+        return pending;
+    }
+
+}
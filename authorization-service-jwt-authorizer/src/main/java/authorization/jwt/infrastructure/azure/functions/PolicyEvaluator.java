@@ -0,0 +1,110 @@
+package authorization.jwt.infrastructure.azure.functions;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.DecisionCache;
+import authorization.jwt.core.EffectivePermissions;
+import authorization.jwt.core.LatencyHistogram;
+import authorization.jwt.core.StageLatencies;
+import authorization.jwt.infrastructure.azure.Factory;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import lombok.RequiredArgsConstructor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
+import shared.infrastructure.azure.gateway.AuthorizerResponse;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+// Turns verified claims into an authorization decision for a method ARN, reusing cached decisions
+@RequiredArgsConstructor
+class PolicyEvaluator {
+
+    private static final Logger logger = LoggerFactory.getLogger(PolicyEvaluator.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
+    private static final String PROVIDERS = "/providers/";
+
+    private final Factory factory;
+
+    AuthorizerResponse evaluate(Claims claims, List<String> roleIds, String methodArn,
+                                Function<Claims, CompletableFuture<List<RoleDefinition>>> roleDefinitionLookup) {
+        return evaluateAsync(claims, roleIds, methodArn, roleDefinitionLookup).join();
+    }
+
+    // The decision is composed on the role lookup, so the calling thread doesn't wait for it
+    CompletableFuture<AuthorizerResponse> evaluateAsync(
+            Claims claims, List<String> roleIds, String methodArn,
+            Function<Claims, CompletableFuture<List<RoleDefinition>>> roleDefinitionLookup) {
+        DecisionCache<AuthorizerResponse> decisionCache = factory.getDecisionCache();
+        DecisionCache.Key decisionKey = decisionCache.key(claims.getUsername(), roleIds, methodArn);
+        AuthorizerResponse authorizerResponse = decisionCache.get(decisionKey);
+        if (authorizerResponse != null) {
+            return CompletableFuture.completedFuture(authorizerResponse);
+        }
+
+        long start = LatencyHistogram.start();
+        return roleDefinitionLookup.apply(claims).thenApply(roleDefinitions -> {
+            factory.getStageLatencies().recordSince(StageLatencies.Stage.ROLE_LOOKUP, start);
+            return decide(claims, methodArn, roleDefinitions, decisionKey);
+        });
+    }
+
+    boolean isCached(Claims claims, List<String> roleIds, String methodArn) {
+        DecisionCache<AuthorizerResponse> decisionCache = factory.getDecisionCache();
+        return decisionCache.contains(decisionCache.key(claims.getUsername(), roleIds, methodArn));
+    }
+
+    private AuthorizerResponse decide(Claims claims, String methodArn, List<RoleDefinition> roleDefinitions,
+                                      DecisionCache.Key decisionKey) {
+        StageLatencies stageLatencies = factory.getStageLatencies();
+        // Claims and definitions stay out of the log, the subject is identified by its hash only
+        auditLog.info(logger, "Evaluating roles {} of subject {}",
+                roleIdsOf(roleDefinitions), AuditLog.redact(claims.getUsername()));
+
+        // Roles not assignable at the requested resource take no part in the decision
+        long start = LatencyHistogram.start();
+        EffectivePermissions permissions = factory.getPermissionIndex().merge(
+                applicableAt(roleDefinitions, methodArn));
+        boolean allowed = isAllowed(permissions, methodArn);
+        stageLatencies.recordSince(StageLatencies.Stage.POLICY_EVALUATION, start);
+
+        start = LatencyHistogram.start();
+        AuthorizerResponse authorizerResponse = new AuthorizerResponse.Builder()
+                .withPrincipalId(claims.getUsername())
+                .withRoleDefinitions(roleDefinitions)
+                .withContextAsString("effect", allowed ? "Allow" : "Deny")
+                .build();
+        stageLatencies.recordSince(StageLatencies.Stage.RESPONSE, start);
+        factory.getDecisionCache().put(decisionKey, authorizerResponse);
+        return authorizerResponse;
+    }
+
+    private List<RoleDefinition> applicableAt(List<RoleDefinition> roleDefinitions, String methodArn) {
+        int providers = methodArn == null ? -1 : methodArn.lastIndexOf(PROVIDERS);
+        if (providers <= 0) {
+            return roleDefinitions;
+        }
+
+        return factory.getScopeIndex().applicableAt(roleDefinitions, methodArn.substring(0, providers));
+    }
+
+    // The method ARN is an Azure action, optionally prefixed by the resource it applies to,
+    // e.g. /subscriptions/{id}/resourceGroups/{group}/providers/Microsoft.Web/sites/read
+    private static boolean isAllowed(EffectivePermissions permissions, String methodArn) {
+        if (methodArn == null) {
+            return false;
+        }
+
+        int providers = methodArn.lastIndexOf(PROVIDERS);
+        return permissions.isAllowed(providers < 0
+                ? methodArn
+                : methodArn.substring(providers + PROVIDERS.length()));
+    }
+
+    private static List<String> roleIdsOf(List<RoleDefinition> roleDefinitions) {
+        return roleDefinitions.stream().map(RoleDefinition::id).collect(Collectors.toList());
+    }
+
+}
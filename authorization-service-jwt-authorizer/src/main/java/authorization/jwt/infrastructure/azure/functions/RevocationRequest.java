@@ -0,0 +1,14 @@
+package authorization.jwt.infrastructure.azure.functions;
+
+import lombok.Data;
+
+import java.util.List;
+
+// Token IDs and usernames to revoke, until the optional expiry in epoch seconds
+@Data
+public class RevocationRequest {
+
+    private List<String> tokenIds;
+    private List<String> usernames;
+    private Long expiresAt;
+}
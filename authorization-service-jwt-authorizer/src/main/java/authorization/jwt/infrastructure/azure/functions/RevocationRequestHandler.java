@@ -0,0 +1,82 @@
+package authorization.jwt.infrastructure.azure.functions;
+
+import authorization.jwt.core.RevocationList;
+import authorization.jwt.core.RevocationStore;
+import authorization.jwt.infrastructure.azure.Factory;
+import com.microsoft.azure.functions.*;
+import com.microsoft.azure.functions.annotation.AuthorizationLevel;
+import com.microsoft.azure.functions.annotation.FunctionName;
+import com.microsoft.azure.functions.annotation.HttpTrigger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import shared.infrastructure.azure.gateway.JsonUtil;
+import shared.infrastructure.azure.gateway.proxy.HttpHeaders;
+import shared.infrastructure.logging.AuditLog;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+// Lets administrators revoke tokens and users on this worker without waiting for the revocation file
+public class RevocationRequestHandler {
+
+    private static final Logger logger = LoggerFactory.getLogger(RevocationRequestHandler.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
+
+    private final Factory factory;
+
+    public RevocationRequestHandler() {
+        this(Factory.getInstance());
+    }
+
+    public RevocationRequestHandler(Factory factory) {
+        this.factory = factory;
+    }
+
+    @FunctionName("RevocationRequestHandler")
+    public HttpResponseMessage handleRequest(
+            @HttpTrigger(name = "req", methods = {HttpMethod.POST}, authLevel = AuthorizationLevel.ADMIN) HttpRequestMessage<Optional<RevocationRequest>> request,
+            final ExecutionContext context) {
+
+        RevocationRequest revocationRequest = request.getBody().orElse(null);
+        if (revocationRequest == null) {
+            return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .body("Bad Request")
+                    .build();
+        }
+
+        long expiresAt = revocationRequest.getExpiresAt() == null
+                ? Long.MAX_VALUE
+                : TimeUnit.SECONDS.toMillis(revocationRequest.getExpiresAt());
+        RevocationList.Builder additions = RevocationList.builder();
+        for (String tokenId : valuesOf(revocationRequest.getTokenIds())) {
+            additions.addTokenId(tokenId, expiresAt);
+        }
+
+        for (String username : valuesOf(revocationRequest.getUsernames())) {
+            additions.addUsername(username, expiresAt);
+        }
+
+        RevocationStore revocationStore = factory.getRevocationStore();
+        try {
+            revocationStore.push(additions.build(System.currentTimeMillis()));
+        } catch (IllegalArgumentException e) {
+            auditLog.warn(logger, "Bad Request: {}", e.getMessage());
+            return request.createResponseBuilder(HttpStatus.BAD_REQUEST)
+                    .body(e.getMessage())
+                    .build();
+        }
+
+        auditLog.info(logger, "Revocation list has {} entries", revocationStore.size());
+        return request.createResponseBuilder(HttpStatus.OK)
+                .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                .body(JsonUtil.toJsonString(Collections.singletonMap("size", revocationStore.size())))
+                .build();
+    }
+
+    private static List<String> valuesOf(List<String> values) {
+        return values == null ? Collections.emptyList() : values;
+    }
+
+}
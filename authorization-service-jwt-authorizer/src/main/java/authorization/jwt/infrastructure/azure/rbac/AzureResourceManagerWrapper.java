@@ -4,6 +4,9 @@ package authorization.jwt.infrastructure.azure.rbac;
 import com.azure.resourcemanager.AzureResourceManager;
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class AzureResourceManagerWrapper {
 
     private final AzureResourceManager azureResourceManager;
@@ -15,4 +18,10 @@ public class AzureResourceManagerWrapper {
     public RoleDefinition getRoleDefinitionById(String roleId) {
         return azureResourceManager.accessManagement().roleDefinitions().getById(roleId);
     }
+
+    public List<RoleDefinition> listRoleDefinitions(String scope) {
+        List<RoleDefinition> roleDefinitions = new ArrayList<>();
+        azureResourceManager.accessManagement().roleDefinitions().listByScope(scope).forEach(roleDefinitions::add);
+        return roleDefinitions;
+    }
 }
@@ -0,0 +1,294 @@
+package authorization.jwt.infrastructure.azure.rbac;
+
+import com.azure.resourcemanager.authorization.fluent.models.PermissionInner;
+import com.azure.resourcemanager.authorization.fluent.models.RoleDefinitionInner;
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Read-only store of Role Definitions in a memory-mapped file. The file starts with
+// a header (magic, version, count) followed by record offsets sorted by role ID, so a
+// lookup is a binary search that decodes only the records it visits.
+public final class RoleDefinitionSnapshot {
+
+    static final int MAGIC = 0x52444653;
+    static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 12;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final ConcurrentMap<String, RoleDefinition> decoded = new ConcurrentHashMap<>();
+
+    private RoleDefinitionSnapshot(ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+    }
+
+    public static RoleDefinitionSnapshot open(Path path) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a role definition snapshot: " + path);
+        }
+
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported role definition snapshot version " + buffer.getInt(4));
+        }
+
+        int count = buffer.getInt(8);
+        if (count < 0 || HEADER_SIZE + (long) count * Integer.BYTES > buffer.limit()) {
+            throw new IOException("Corrupted role definition snapshot: " + path);
+        }
+
+        // find() reads role IDs during its binary search, so every record must start with a
+        // readable role ID and the IDs must be sorted before the snapshot is served
+        RoleDefinitionSnapshot snapshot = new RoleDefinitionSnapshot(buffer, count);
+        String previous = null;
+        for (int i = 0; i < count; i++) {
+            int offset = snapshot.recordOffset(i);
+            if (offset < HEADER_SIZE || offset >= buffer.limit()) {
+                throw new IOException("Corrupted role definition snapshot: " + path);
+            }
+
+            String roleId;
+            try {
+                roleId = readString(snapshot.record(i));
+            } catch (BufferUnderflowException | IllegalArgumentException e) {
+                throw new IOException("Corrupted role definition snapshot: " + path, e);
+            }
+
+            if (roleId == null || (previous != null && previous.compareTo(roleId) >= 0)) {
+                throw new IOException("Corrupted role definition snapshot: " + path);
+            }
+
+            previous = roleId;
+        }
+
+        return snapshot;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Returns the Role Definition with the given ID or null when the snapshot doesn't have it
+    public RoleDefinition find(String roleId) {
+        RoleDefinition roleDefinition = decoded.get(roleId);
+        if (roleDefinition != null) {
+            return roleDefinition;
+        }
+
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            ByteBuffer record = record(middle);
+            int comparison = readString(record).compareTo(roleId);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                roleDefinition = readRoleDefinition(roleId, record);
+                RoleDefinition existing = decoded.putIfAbsent(roleId, roleDefinition);
+                return existing == null ? roleDefinition : existing;
+            }
+        }
+
+        return null;
+    }
+
+    // Decodes every record, e.g. to index a snapshot once it's swapped in. The definitions are
+    // the instances find returns from then on.
+    public List<RoleDefinition> roleDefinitions() {
+        List<RoleDefinition> roleDefinitions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            ByteBuffer record = record(i);
+            String roleId = readString(record);
+            RoleDefinition roleDefinition = decoded.get(roleId);
+            if (roleDefinition == null) {
+                roleDefinition = readRoleDefinition(roleId, record);
+                RoleDefinition existing = decoded.putIfAbsent(roleId, roleDefinition);
+                roleDefinition = existing == null ? roleDefinition : existing;
+            }
+
+            roleDefinitions.add(roleDefinition);
+        }
+
+        return roleDefinitions;
+    }
+
+    // Writes to a temporary file first and moves it into place, so that watchers of
+    // the target never see a partially written snapshot.
+    public static int write(Collection<RoleDefinition> roleDefinitions, Path path) throws IOException {
+        Map<String, RoleDefinition> sorted = new TreeMap<>();
+        for (RoleDefinition roleDefinition : roleDefinitions) {
+            String roleId = roleIdOf(roleDefinition);
+            if (roleId != null) {
+                sorted.put(roleId, roleDefinition);
+            }
+        }
+
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        DataOutputStream recordOutput = new DataOutputStream(records);
+        List<Integer> offsets = new ArrayList<>(sorted.size());
+        int recordsStart = HEADER_SIZE + sorted.size() * Integer.BYTES;
+        for (Map.Entry<String, RoleDefinition> entry : sorted.entrySet()) {
+            offsets.add(recordsStart + recordOutput.size());
+            writeRoleDefinition(recordOutput, entry.getKey(), entry.getValue());
+        }
+
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(Files.newOutputStream(temporary))) {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            output.writeInt(sorted.size());
+            for (int offset : offsets) {
+                output.writeInt(offset);
+            }
+
+            records.writeTo(output);
+        }
+
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return sorted.size();
+    }
+
+    private int recordOffset(int index) {
+        return buffer.getInt(HEADER_SIZE + index * Integer.BYTES);
+    }
+
+    private ByteBuffer record(int index) {
+        ByteBuffer record = buffer.duplicate();
+        record.position(recordOffset(index));
+        return record;
+    }
+
+    private static RoleDefinition readRoleDefinition(String roleId, ByteBuffer record) {
+        try {
+            String id = readString(record);
+            String type = readString(record);
+            RoleDefinitionInner innerModel = new RoleDefinitionInner()
+                .withRoleName(readString(record))
+                .withDescription(readString(record))
+                .withRoleType(readString(record))
+                .withAssignableScopes(readStrings(record));
+
+            int permissionCount = record.getInt();
+            List<PermissionInner> permissions = new ArrayList<>(permissionCount);
+            for (int i = 0; i < permissionCount; i++) {
+                permissions.add(new PermissionInner()
+                    .withActions(readStrings(record))
+                    .withNotActions(readStrings(record))
+                    .withDataActions(readStrings(record))
+                    .withNotDataActions(readStrings(record)));
+            }
+
+            return new SnapshotRoleDefinition(id, roleId, type, innerModel.withPermissions(permissions));
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupted role definition snapshot record " + roleId, e);
+        }
+    }
+
+    private static void writeRoleDefinition(DataOutputStream output, String roleId, RoleDefinition roleDefinition)
+        throws IOException {
+        writeString(output, roleId);
+        writeString(output, roleDefinition.id());
+        writeString(output, roleDefinition.type());
+        writeString(output, roleDefinition.roleName());
+        writeString(output, roleDefinition.description());
+        writeString(output, roleDefinition.innerModel() == null ? null : roleDefinition.innerModel().roleType());
+        writeStrings(output, roleDefinition.assignableScopes());
+
+        Collection<Permission> permissions = roleDefinition.permissions() == null
+            ? new ArrayList<>()
+            : roleDefinition.permissions();
+        output.writeInt(permissions.size());
+        for (Permission permission : permissions) {
+            writeStrings(output, permission.actions());
+            writeStrings(output, permission.notActions());
+            writeStrings(output, permission.dataActions());
+            writeStrings(output, permission.notDataActions());
+        }
+    }
+
+    private static String roleIdOf(RoleDefinition roleDefinition) {
+        return roleDefinition.name() != null ? roleDefinition.name() : roleDefinition.id();
+    }
+
+    private static String readString(ByteBuffer record) {
+        int length = record.getInt();
+        if (length < 0) {
+            return null;
+        }
+
+        // Checked before allocating, so a corrupted length can't request a huge array
+        if (length > record.remaining()) {
+            throw new BufferUnderflowException();
+        }
+
+        byte[] bytes = new byte[length];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> readStrings(ByteBuffer record) {
+        int count = record.getInt();
+        if (count < 0) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            values.add(readString(record));
+        }
+
+        return values;
+    }
+
+    private static void writeString(DataOutputStream output, String value) throws IOException {
+        if (value == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static void writeStrings(DataOutputStream output, Collection<String> values) throws IOException {
+        if (values == null) {
+            output.writeInt(-1);
+            return;
+        }
+
+        output.writeInt(values.size());
+        for (String value : values) {
+            writeString(output, value);
+        }
+    }
+
+}
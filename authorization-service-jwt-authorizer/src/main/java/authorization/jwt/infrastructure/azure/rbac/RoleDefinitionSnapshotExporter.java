@@ -0,0 +1,48 @@
+package authorization.jwt.infrastructure.azure.rbac;
+
+import com.azure.core.management.AzureEnvironment;
+import com.azure.core.management.profile.AzureProfile;
+import com.azure.identity.DefaultAzureCredentialBuilder;
+import com.azure.resourcemanager.AzureResourceManager;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import lombok.RequiredArgsConstructor;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Exports Role Definitions visible at a scope into a snapshot for SnapshotPolicyRepository.
+// Usage: RoleDefinitionSnapshotExporter <snapshot-path> [scope], where the scope defaults to
+// the subscription in AZURE_AD_SUBSCRIPTION_ID.
+@RequiredArgsConstructor
+public class RoleDefinitionSnapshotExporter {
+
+    private final AzureResourceManagerWrapper azureResourceManagerWrapper;
+
+    public int export(String scope, Path snapshotPath) throws IOException {
+        List<RoleDefinition> roleDefinitions = azureResourceManagerWrapper.listRoleDefinitions(scope);
+        return RoleDefinitionSnapshot.write(roleDefinitions, snapshotPath);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: RoleDefinitionSnapshotExporter <snapshot-path> [scope]");
+            System.exit(1);
+        }
+
+        String tenantId = System.getenv("AZURE_AD_TENANT_ID");
+        String subscriptionId = System.getenv("AZURE_AD_SUBSCRIPTION_ID");
+        String scope = args.length > 1 ? args[1] : "/subscriptions/" + subscriptionId;
+
+        AzureResourceManager azureResourceManager = AzureResourceManager
+                .authenticate(new DefaultAzureCredentialBuilder().build(),
+                        new AzureProfile(tenantId, subscriptionId, AzureEnvironment.AZURE))
+                .withDefaultSubscription();
+
+        int exported = new RoleDefinitionSnapshotExporter(new AzureResourceManagerWrapper(azureResourceManager))
+                .export(scope, Paths.get(args[0]));
+        System.out.printf("Exported %d role definitions from %s to %s%n", exported, scope, args[0]);
+    }
+
+}
@@ -1,10 +1,12 @@
 package authorization.jwt.infrastructure.azure.rbac;
 
+import com.azure.core.management.exception.ManagementException;
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
 import authorization.jwt.core.Claims;
 import authorization.jwt.core.PolicyRepository;
 
 import java.util.List;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -15,6 +17,7 @@ public class RolePolicyRepository implements PolicyRepository {
 
     private static final Pattern ROLE_ID_PATTERN = Pattern.compile(
             "/subscriptions/.*/resourceGroups/.*/providers/Microsoft.Authorization/roleDefinitions/(?<roleId>[-A-Za-z0-9+=,.@_]+)");
+    private static final int NOT_FOUND = 404;
 
     private final AzureResourceManagerWrapper azureResourceManagerWrapper;
 
@@ -22,17 +25,39 @@ public class RolePolicyRepository implements PolicyRepository {
         this.azureResourceManagerWrapper = azureResourceManagerWrapper;
     }
 
+    // Roles that no longer exist grant nothing, so they're left out rather than returned as nulls
     @Override
     public List<RoleDefinition> getRoleDefinitions(Claims claims) {
-        return claims.getRoles()
+        return getRoleIds(claims)
                 .stream()
-                .flatMap(RolePolicyRepository::retrieveRoleId)
                 .map(this::getRoleDefinition)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
-    private RoleDefinition getRoleDefinition(String roleId) {
-        return azureResourceManagerWrapper.getRoleDefinitionById(roleId);
+    @Override
+    public List<String> getRoleIds(Claims claims) {
+        return retrieveRoleIds(claims);
+    }
+
+    @Override
+    public RoleDefinition getRoleDefinition(String roleId) {
+        try {
+            return azureResourceManagerWrapper.getRoleDefinitionById(roleId);
+        } catch (ManagementException e) {
+            if (e.getResponse() != null && e.getResponse().getStatusCode() == NOT_FOUND) {
+                return null;
+            }
+
+            throw e;
+        }
+    }
+
+    static List<String> retrieveRoleIds(Claims claims) {
+        return claims.getRoles()
+                .stream()
+                .flatMap(RolePolicyRepository::retrieveRoleId)
+                .collect(Collectors.toList());
     }
 
     private static Stream<String> retrieveRoleId(String roleIdPath) {
@@ -0,0 +1,39 @@
+package authorization.jwt.infrastructure.azure.rbac;
+
+import com.azure.resourcemanager.authorization.fluent.models.PermissionInner;
+import com.azure.resourcemanager.authorization.models.Permission;
+import lombok.RequiredArgsConstructor;
+
+import java.util.List;
+
+@RequiredArgsConstructor
+class SnapshotPermission implements Permission {
+
+    private final PermissionInner innerModel;
+
+    @Override
+    public List<String> actions() {
+        return innerModel.actions();
+    }
+
+    @Override
+    public List<String> notActions() {
+        return innerModel.notActions();
+    }
+
+    @Override
+    public List<String> dataActions() {
+        return innerModel.dataActions();
+    }
+
+    @Override
+    public List<String> notDataActions() {
+        return innerModel.notDataActions();
+    }
+
+    @Override
+    public PermissionInner innerModel() {
+        return innerModel;
+    }
+
+}
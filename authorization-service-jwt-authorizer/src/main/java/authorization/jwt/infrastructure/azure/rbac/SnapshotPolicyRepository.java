@@ -0,0 +1,83 @@
+package authorization.jwt.infrastructure.azure.rbac;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.infrastructure.FileWatcher;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
+
+// Serves Role Definitions from a local snapshot without calling Azure Resource Manager.
+// A replaced snapshot file is picked up by a watcher and swapped in atomically. The file is
+// memory-mapped, so it must be replaced by a move (as RoleDefinitionSnapshot.write does) and
+// never rewritten in place.
+public class SnapshotPolicyRepository implements PolicyRepository {
+
+    private static final Logger logger = LoggerFactory.getLogger(SnapshotPolicyRepository.class);
+
+    private final Path snapshotPath;
+    private final ExecutorService watcher;
+    private final List<Consumer<RoleDefinitionSnapshot>> listeners = new CopyOnWriteArrayList<>();
+    private volatile RoleDefinitionSnapshot snapshot;
+
+    public SnapshotPolicyRepository(Path snapshotPath, ExecutorService watcher) throws IOException {
+        this.snapshotPath = snapshotPath.toAbsolutePath();
+        this.watcher = watcher;
+        this.snapshot = RoleDefinitionSnapshot.open(this.snapshotPath);
+    }
+
+    public void addListener(Consumer<RoleDefinitionSnapshot> listener) {
+        listeners.add(listener);
+    }
+
+    public void start() throws IOException {
+        new FileWatcher(snapshotPath, watcher, this::reload).start();
+    }
+
+    public RoleDefinitionSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    // A broken file leaves the previous snapshot in place
+    public void reload() throws IOException {
+        RoleDefinitionSnapshot reloaded = RoleDefinitionSnapshot.open(snapshotPath);
+        snapshot = reloaded;
+        logger.info("Loaded {} role definitions from {}", reloaded.size(), snapshotPath);
+        for (Consumer<RoleDefinitionSnapshot> listener : listeners) {
+            listener.accept(reloaded);
+        }
+    }
+
+    @Override
+    public List<RoleDefinition> getRoleDefinitions(Claims claims) {
+        RoleDefinitionSnapshot current = snapshot;
+        List<RoleDefinition> roleDefinitions = new ArrayList<>();
+        for (String roleId : getRoleIds(claims)) {
+            RoleDefinition roleDefinition = current.find(roleId);
+            if (roleDefinition != null) {
+                roleDefinitions.add(roleDefinition);
+            }
+        }
+
+        return roleDefinitions;
+    }
+
+    @Override
+    public List<String> getRoleIds(Claims claims) {
+        return RolePolicyRepository.retrieveRoleIds(claims);
+    }
+
+    @Override
+    public RoleDefinition getRoleDefinition(String roleId) {
+        return snapshot.find(roleId);
+    }
+
+}
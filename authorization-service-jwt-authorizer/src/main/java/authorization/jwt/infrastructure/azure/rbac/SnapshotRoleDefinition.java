@@ -0,0 +1,89 @@
+package authorization.jwt.infrastructure.azure.rbac;
+
+import com.azure.resourcemanager.authorization.AuthorizationManager;
+import com.azure.resourcemanager.authorization.fluent.models.PermissionInner;
+import com.azure.resourcemanager.authorization.fluent.models.RoleDefinitionInner;
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import lombok.ToString;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Role Definition read from a snapshot, detached from Azure Resource Manager
+@ToString(of = {"id", "roleName"})
+class SnapshotRoleDefinition implements RoleDefinition {
+
+    private final String id;
+    private final String name;
+    private final String type;
+    private final RoleDefinitionInner innerModel;
+    private final Set<Permission> permissions;
+    private final Set<String> assignableScopes;
+
+    SnapshotRoleDefinition(String id, String name, String type, RoleDefinitionInner innerModel) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.innerModel = innerModel;
+        Set<Permission> permissions = new LinkedHashSet<>();
+        for (PermissionInner permission : innerModel.permissions() == null
+                ? Collections.<PermissionInner>emptyList()
+                : innerModel.permissions()) {
+            permissions.add(new SnapshotPermission(permission));
+        }
+
+        this.permissions = Collections.unmodifiableSet(permissions);
+        this.assignableScopes = innerModel.assignableScopes() == null
+            ? Collections.emptySet()
+            : Collections.unmodifiableSet(new LinkedHashSet<>(innerModel.assignableScopes()));
+    }
+
+    @Override
+    public String id() {
+        return id;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Override
+    public String type() {
+        return type;
+    }
+
+    @Override
+    public String roleName() {
+        return innerModel.roleName();
+    }
+
+    @Override
+    public String description() {
+        return innerModel.description();
+    }
+
+    @Override
+    public Set<Permission> permissions() {
+        return permissions;
+    }
+
+    @Override
+    public Set<String> assignableScopes() {
+        return assignableScopes;
+    }
+
+    @Override
+    public RoleDefinitionInner innerModel() {
+        return innerModel;
+    }
+
+    // Snapshots are used offline, so there is no manager to go back to Azure with
+    @Override
+    public AuthorizationManager manager() {
+        return null;
+    }
+
+}
@@ -0,0 +1,83 @@
+package jwt.core;
+
+import authorization.jwt.core.ActionMatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+// Compares ActionMatcher with matching every action pattern as a separate regex.
+// Run manually: it is not picked up by surefire.
+public class ActionMatcherBenchmark {
+
+    private static final int PATTERNS = 10_000;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 10_000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < PATTERNS; i++) {
+            String provider = "Microsoft.Provider" + random.nextInt(200);
+            switch (i % 4) {
+                case 0:
+                    patterns.add(provider + "/resource" + i + "/*");
+                    break;
+                case 1:
+                    patterns.add(provider + "/resource" + i + "/*/read");
+                    break;
+                case 2:
+                    patterns.add(provider + "/resource" + i + "/write");
+                    break;
+                default:
+                    patterns.add(provider + "/*/resource" + i + "/action");
+            }
+        }
+
+        List<String> actions = new ArrayList<>();
+        for (int i = 0; i < 1_000; i++) {
+            String pattern = patterns.get(random.nextInt(PATTERNS));
+            actions.add(pattern.replace("*", "child" + random.nextInt(10)));
+            actions.add("Microsoft.Provider" + random.nextInt(200) + "/missing" + i + "/read");
+        }
+
+        List<Pattern> regexes = new ArrayList<>();
+        for (String pattern : patterns) {
+            regexes.add(Pattern.compile(
+                ("\\Q" + pattern + "\\E").replace("*", "\\E.*\\Q"), Pattern.CASE_INSENSITIVE));
+        }
+
+        ActionMatcher matcher = ActionMatcher.compile(patterns);
+
+        run("regex per pattern", actions, action -> {
+            List<Integer> matches = new ArrayList<>();
+            for (int i = 0; i < regexes.size(); i++) {
+                if (regexes.get(i).matcher(action).matches()) {
+                    matches.add(i);
+                }
+            }
+
+            return matches;
+        }, WARMUP / 10, ITERATIONS / 10);
+        run("ActionMatcher", actions, matcher::match, WARMUP * 100, ITERATIONS * 100);
+    }
+
+    private static void run(String name, List<String> actions, Function<String, Object> operation,
+                            int warmup, int iterations) {
+        for (int i = 0; i < warmup; i++) {
+            sink = operation.apply(actions.get(i % actions.size()));
+        }
+
+        long started = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            sink = operation.apply(actions.get(i % actions.size()));
+        }
+
+        System.out.printf("%-20s %12.1f ns/op%n", name, (double) (System.nanoTime() - started) / iterations);
+    }
+
+}
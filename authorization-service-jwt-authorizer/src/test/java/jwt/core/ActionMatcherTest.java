@@ -0,0 +1,86 @@
+package jwt.core;
+
+import authorization.jwt.core.ActionMatcher;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+public class ActionMatcherTest {
+
+    private static final List<String> PATTERNS = Arrays.asList(
+        "Microsoft.Web/sites/read",
+        "Microsoft.Web/sites/*/read",
+        "Microsoft.Web/*",
+        "*/read",
+        "Microsoft.Compute/virtualMachines/**/action",
+        "*");
+
+    @DataProvider
+    public Object[][] samples() {
+        return new Object[][]{
+            {"Microsoft.Web/sites/read", new int[]{0, 2, 3, 5}},
+            {"microsoft.web/SITES/Read", new int[]{0, 2, 3, 5}},
+            {"Microsoft.Web/sites/config/read", new int[]{1, 2, 3, 5}},
+            {"Microsoft.Web/sites//read", new int[]{1, 2, 3, 5}},
+            {"Microsoft.Web/", new int[]{2, 5}},
+            {"Microsoft.Web", new int[]{5}},
+            {"Microsoft.Compute/virtualMachines/start/action", new int[]{4, 5}},
+            {"Microsoft.Compute/virtualMachines/action", new int[]{5}},
+            {"", new int[]{5}},
+            {"M\u00edcrosoft.Web/sites/read", new int[]{3, 5}}
+        };
+    }
+
+    @Test(dataProvider = "samples")
+    public void testMatch(String action, int[] expected) {
+        ActionMatcher matcher = ActionMatcher.compile(PATTERNS);
+
+        // Matching twice exercises both building and reusing the DFA states
+        Assert.assertEquals(bits(matcher.match(action)), expected);
+        Assert.assertEquals(bits(matcher.match(action)), expected);
+    }
+
+    @Test(dataProvider = "samples")
+    public void testMatchesSinglePattern(String action, int[] expected) {
+        List<Integer> matching = new ArrayList<>();
+        for (int i = 0; i < PATTERNS.size(); i++) {
+            if (ActionMatcher.matches(PATTERNS.get(i), action)) {
+                matching.add(i);
+            }
+        }
+
+        Assert.assertEquals(matching.stream().mapToInt(Integer::intValue).toArray(), expected);
+    }
+
+    @Test
+    public void testNoPatterns() {
+        ActionMatcher matcher = ActionMatcher.compile(Collections.emptyList());
+
+        Assert.assertEquals(matcher.size(), 0);
+        Assert.assertEquals(bits(matcher.match("Microsoft.Web/sites/read")), new int[0]);
+    }
+
+    @Test
+    public void testManyPatterns() {
+        List<String> patterns = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            patterns.add("Microsoft.Provider" + i % 100 + "/resource" + i + "/*");
+        }
+
+        ActionMatcher matcher = ActionMatcher.compile(patterns);
+
+        Assert.assertEquals(bits(matcher.match("Microsoft.Provider42/resource9942/read")), new int[]{9942});
+        Assert.assertEquals(bits(matcher.match("Microsoft.Provider42/resource9943/read")), new int[0]);
+    }
+
+    private static int[] bits(long[] words) {
+        return BitSet.valueOf(words).stream().toArray();
+    }
+
+}
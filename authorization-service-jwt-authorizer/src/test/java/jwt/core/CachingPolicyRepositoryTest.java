@@ -0,0 +1,49 @@
+package jwt.core;
+
+import authorization.jwt.core.CachingPolicyRepository;
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.core.RoleDefinitionCache;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class CachingPolicyRepositoryTest {
+
+    @Mock
+    private PolicyRepository mockPolicyRepository;
+    @Mock
+    private RoleDefinition mockRoleDefinition;
+
+    private PolicyRepository repository;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        repository = new CachingPolicyRepository(mockPolicyRepository, new RoleDefinitionCache(60_000, 5_000, 100));
+    }
+
+    @Test
+    public void testGetRoleDefinitions() {
+        Claims claims = new Claims();
+        Mockito.when(mockPolicyRepository.getRoleIds(claims)).thenReturn(Arrays.asList("foo-role-id", "bar-role-id"));
+        Mockito.when(mockPolicyRepository.getRoleDefinition("foo-role-id")).thenReturn(mockRoleDefinition);
+
+        repository.getRoleDefinitions(claims);
+        List<RoleDefinition> actual = repository.getRoleDefinitions(claims);
+
+        Assert.assertEquals(actual, Collections.singletonList(mockRoleDefinition));
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinition("foo-role-id");
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinition("bar-role-id");
+        Mockito.verify(mockPolicyRepository, Mockito.never()).getRoleDefinitions(Mockito.any());
+    }
+
+}
@@ -6,6 +6,7 @@ import com.nimbusds.jwt.JWTClaimsSet;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.nio.charset.StandardCharsets;
 import java.text.ParseException;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
@@ -20,14 +21,18 @@ public class ClaimsTranslatorTest {
             .claim("cognito:username", "admin")
             .claim("cognito:roles", Arrays.asList("foo", "bar"))
             .claim("exp", new Date(1234567890000L))
+            .notBeforeTime(new Date(1234567800000L))
+            .jwtID("token-id")
             .build();
 
         Claims actual = ClaimsTranslator.from(claimsSet);
 
         Assert.assertNotNull(actual);
+        Assert.assertEquals(actual.getTokenId(), "token-id");
         Assert.assertEquals(actual.getUsername(), "admin");
         Assert.assertEquals(actual.getRoles(), Arrays.asList("foo", "bar"));
         Assert.assertEquals(actual.getExpiredAt(), ZonedDateTime.of(2009, 2, 13, 23, 31, 30, 0, ZoneId.of("UTC")));
+        Assert.assertEquals(actual.getNotBefore(), ZonedDateTime.of(2009, 2, 13, 23, 30, 0, 0, ZoneId.of("UTC")));
     }
 
     @Test
@@ -42,4 +47,43 @@ public class ClaimsTranslatorTest {
         Assert.assertNull(actual.getRoles());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testFromPayload() throws ParseException {
+        byte[] payload = ("{\"cognito:username\":\"admin\",\"cognito:roles\":[\"foo\",\"bar\"],"
+            + "\"exp\":1234567890,\"nbf\":1234567800,\"aud\":[\"x\"],\"jti\":\"token-id\"}").getBytes(StandardCharsets.UTF_8);
+
+        Claims actual = ClaimsTranslator.from(payload);
+
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(actual.getTokenId(), "token-id");
+        Assert.assertEquals(actual.getUsername(), "admin");
+        Assert.assertEquals(actual.getRoles(), Arrays.asList("foo", "bar"));
+        Assert.assertEquals(actual.getExpiredAt(), ZonedDateTime.of(2009, 2, 13, 23, 31, 30, 0, ZoneId.of("UTC")));
+        Assert.assertEquals(actual.getNotBefore(), ZonedDateTime.of(2009, 2, 13, 23, 30, 0, 0, ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void testFromEmptyPayload() throws ParseException {
+        Claims actual = ClaimsTranslator.from("{\"exp\":1234567890}".getBytes(StandardCharsets.UTF_8));
+
+        Assert.assertNotNull(actual);
+        Assert.assertNull(actual.getUsername());
+        Assert.assertNull(actual.getRoles());
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testFromPayloadWithOversizedExpirationTime() throws ParseException {
+        ClaimsTranslator.from("{\"exp\":9223372036854775807}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testFromPayloadWithOversizedNotBefore() throws ParseException {
+        ClaimsTranslator.from("{\"exp\":1234567890,\"nbf\":-9223372036854775808}".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testFromPayloadWithIncorrectClaimType() throws ParseException {
+        ClaimsTranslator.from("{\"cognito:roles\":\"foo\"}".getBytes(StandardCharsets.UTF_8));
+    }
+
+}
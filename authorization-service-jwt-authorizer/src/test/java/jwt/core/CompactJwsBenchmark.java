@@ -0,0 +1,81 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.ClaimsTranslator;
+import authorization.jwt.core.CompactJws;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+
+import java.lang.management.ManagementFactory;
+import java.security.KeyPairGenerator;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Compares the former regex + SignedJWT parsing path with CompactJws on the same token.
+// Run manually: it is not picked up by surefire.
+public class CompactJwsBenchmark {
+
+    private static final Pattern BEARER_PATTERN = Pattern.compile("^Bearer (?<token>[\\w-]+\\.[\\w-]+\\.[\\w-]+)$");
+    private static final int WARMUP = 200_000;
+    private static final int ITERATIONS = 1_000_000;
+
+    private static volatile Object sink;
+
+    public static void main(String[] args) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        SignedJWT jws = new SignedJWT(
+            new JWSHeader.Builder(JWSAlgorithm.RS256).keyID("keyId").build(),
+            new JWTClaimsSet.Builder()
+                .issuer("https://login.microsoftonline.com/tenant/v2.0")
+                .audience("api://authorizer")
+                .claim("cognito:username", "admin")
+                .claim("cognito:roles", Arrays.asList("role1", "role2"))
+                .expirationTime(new Date(System.currentTimeMillis() + 3_600_000))
+                .build());
+        jws.sign(new RSASSASigner(generator.generateKeyPair().getPrivate()));
+        String header = "Bearer " + jws.serialize();
+
+        run("regex + SignedJWT", () -> {
+            Matcher matcher = BEARER_PATTERN.matcher(header);
+            matcher.matches();
+            SignedJWT parsed = SignedJWT.parse(matcher.group("token"));
+            Claims claims = ClaimsTranslator.from(parsed.getJWTClaimsSet());
+            return new Object[]{parsed.getHeader(), parsed.getSigningInput(), parsed.getSignature().decode(), claims};
+        });
+        run("CompactJws", () -> {
+            CompactJws parsed = CompactJws.parse(header);
+            return new Object[]{parsed.decodeHeader(), parsed.signingInput(), parsed.signature(), parsed.decodeClaims()};
+        });
+    }
+
+    private static void run(String name, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP; i++) {
+            sink = operation.run();
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            sink = operation.run();
+        }
+
+        long elapsed = System.nanoTime() - started;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-20s %8.1f ns/op %8d B/op%n", name, (double) elapsed / ITERATIONS, allocated / ITERATIONS);
+    }
+
+    private interface Operation {
+
+        Object run() throws Exception;
+
+    }
+
+}
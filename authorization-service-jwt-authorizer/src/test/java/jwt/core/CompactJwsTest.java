@@ -0,0 +1,107 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.CompactJws;
+import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.TokenDigest;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.util.Base64URL;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.Arrays;
+
+public class CompactJwsTest {
+
+    private static final String HEADER = "{\"alg\":\"RS256\",\"typ\":\"JWT\",\"kid\":\"foo\",\"x5t\":[\"a\",{\"b\":1}]}";
+    private static final String PAYLOAD = "{\"iss\":\"https://sts\",\"cognito:username\":\"admin\","
+        + "\"nested\":{\"cognito:username\":\"bar\"},\"cognito:roles\":[\"foo\",\"bar\"],\"exp\":1234567890}";
+
+    @DataProvider
+    public Object[][] samplesIncorrectHeaderFormat() {
+        return new Object[][]{
+            {null}, {""}, {"Basic a.b.c"}, {"bearer a.b.c"}, {"Bearer a.b+.c"}, {"Bearer a.b.c="},
+            {"Bearer " + new String(new char[CompactJws.MAX_TOKEN_LENGTH]).replace('\0', 'a') + "a"}
+        };
+    }
+
+    @Test(dataProvider = "samplesIncorrectHeaderFormat",
+        expectedExceptions = JwtVerificationException.class,
+        expectedExceptionsMessageRegExp = "Incorrect header format")
+    public void testIncorrectHeaderFormat(String header) {
+        CompactJws.parse(header);
+    }
+
+    @DataProvider
+    public Object[][] samplesIncorrectStructure() {
+        return new Object[][]{
+            {"Bearer "}, {"Bearer abc"}, {"Bearer a.b"}, {"Bearer a.b.c.d"}, {"Bearer .b.c"}, {"Bearer a..c"}, {"Bearer a.b."}
+        };
+    }
+
+    @Test(dataProvider = "samplesIncorrectStructure",
+        expectedExceptions = JwtVerificationException.class,
+        expectedExceptionsMessageRegExp = "JWT couldn't be parsed")
+    public void testIncorrectStructure(String header) {
+        CompactJws.parse(header);
+    }
+
+    @Test
+    public void testDecodeHeader() throws ParseException {
+        CompactJws jws = CompactJws.parse("Bearer " + token(HEADER, PAYLOAD, "c2ln"));
+
+        CompactJws.Header actual = jws.decodeHeader();
+
+        Assert.assertEquals(actual.getAlgorithm(), JWSAlgorithm.RS256);
+        Assert.assertEquals(actual.getKeyId(), "foo");
+        Assert.assertFalse(actual.isCritical());
+    }
+
+    @Test
+    public void testDecodeClaims() throws ParseException {
+        CompactJws jws = CompactJws.parse("Bearer " + token(HEADER, PAYLOAD, "c2ln"));
+
+        Claims actual = jws.decodeClaims();
+
+        Assert.assertEquals(actual.getUsername(), "admin");
+        Assert.assertEquals(actual.getRoles(), Arrays.asList("foo", "bar"));
+        Assert.assertEquals(actual.getExpiredAt(), ZonedDateTime.of(2009, 2, 13, 23, 31, 30, 0, ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void testSigningInputAndSignature() throws ParseException {
+        String token = token(HEADER, PAYLOAD, "c2lnbmF0dXJl");
+        CompactJws jws = CompactJws.parse("Bearer " + token);
+
+        Assert.assertEquals(new String(jws.signingInput(), StandardCharsets.US_ASCII),
+            token.substring(0, token.lastIndexOf('.')));
+        Assert.assertEquals(new String(jws.signature(), StandardCharsets.US_ASCII), "signature");
+        Assert.assertEquals(jws.length(), token.length());
+        Assert.assertEquals(jws.digest(), TokenDigest.of(token));
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testDecodeHeaderWithoutAlgorithm() throws ParseException {
+        CompactJws.parse("Bearer " + token("{\"kid\":\"foo\"}", PAYLOAD, "c2ln")).decodeHeader();
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testDecodeMalformedJson() throws ParseException {
+        CompactJws.parse("Bearer " + token(HEADER, "{\"exp\":", "c2ln")).decodeClaims();
+    }
+
+    @Test(expectedExceptions = ParseException.class)
+    public void testDecodeInvalidBase64Length() throws ParseException {
+        CompactJws.parse("Bearer abcde.abcd.abcd").decodeHeader();
+    }
+
+    private static String token(String header, String payload, String signature) {
+        return Base64URL.encode(header) + "." + Base64URL.encode(payload) + "." + signature;
+    }
+
+}
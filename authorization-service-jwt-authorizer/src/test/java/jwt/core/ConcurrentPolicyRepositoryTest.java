@@ -0,0 +1,87 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.ConcurrentPolicyRepository;
+import authorization.jwt.core.PolicyLookupException;
+import authorization.jwt.core.PolicyRepository;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class ConcurrentPolicyRepositoryTest {
+
+    @Mock
+    private PolicyRepository mockPolicyRepository;
+    @Mock
+    private RoleDefinition mockFooRoleDefinition;
+    @Mock
+    private RoleDefinition mockBarRoleDefinition;
+
+    private ExecutorService executor;
+    private Claims claims;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        executor = Executors.newFixedThreadPool(4);
+        claims = new Claims();
+        Mockito.when(mockPolicyRepository.getRoleIds(claims))
+            .thenReturn(Arrays.asList("foo-role-id", "missing-role-id", "bar-role-id"));
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLookupsRunConcurrently() {
+        // Every lookup waits for the others, so the call only completes when they overlap
+        CountDownLatch started = new CountDownLatch(3);
+        Mockito.when(mockPolicyRepository.getRoleDefinition(Mockito.anyString())).thenAnswer(invocation -> {
+            started.countDown();
+            Assert.assertTrue(started.await(5, TimeUnit.SECONDS));
+            String roleId = invocation.getArgument(0);
+            return "foo-role-id".equals(roleId) ? mockFooRoleDefinition
+                : "bar-role-id".equals(roleId) ? mockBarRoleDefinition : null;
+        });
+
+        List<RoleDefinition> actual = new ConcurrentPolicyRepository(mockPolicyRepository, executor, 5_000)
+            .getRoleDefinitionsAsync(claims)
+            .join();
+
+        Assert.assertEquals(actual, Arrays.asList(mockFooRoleDefinition, mockBarRoleDefinition));
+    }
+
+    @Test(expectedExceptions = PolicyLookupException.class,
+        expectedExceptionsMessageRegExp = "Role definitions couldn't be retrieved in time")
+    public void testTimeout() {
+        Mockito.when(mockPolicyRepository.getRoleDefinition(Mockito.anyString())).thenAnswer(invocation -> {
+            Thread.sleep(5_000);
+            return mockFooRoleDefinition;
+        });
+
+        new ConcurrentPolicyRepository(mockPolicyRepository, executor, 50).getRoleDefinitions(claims);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testFailedLookup() {
+        Mockito.when(mockPolicyRepository.getRoleDefinition(Mockito.anyString()))
+            .thenThrow(new IllegalStateException("ARM is unavailable"));
+
+        new ConcurrentPolicyRepository(mockPolicyRepository, executor, 5_000).getRoleDefinitions(claims);
+    }
+
+}
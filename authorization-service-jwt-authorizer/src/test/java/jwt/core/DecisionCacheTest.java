@@ -0,0 +1,83 @@
+package jwt.core;
+
+import authorization.jwt.core.DecisionCache;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class DecisionCacheTest {
+
+    private static final Instant NOW = Instant.parse("2009-02-13T23:31:30Z");
+
+    private DecisionCache<String> cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new DecisionCache<>(4, 60_000, Clock.fixed(NOW, ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void testGet() {
+        cache.put(cache.key("foo", Arrays.asList("role1", "role2"), "Microsoft.Web/sites/read"), "Allow");
+
+        Assert.assertEquals(cache.get(cache.key("foo", Arrays.asList("role2", "role1"), "Microsoft.Web/sites/read")), "Allow");
+        Assert.assertNull(cache.get(cache.key("bar", Arrays.asList("role1", "role2"), "Microsoft.Web/sites/read")));
+        Assert.assertNull(cache.get(cache.key("foo", Collections.singletonList("role1"), "Microsoft.Web/sites/read")));
+        Assert.assertNull(cache.get(cache.key("foo", Arrays.asList("role1", "role2"), "Microsoft.Web/sites/write")));
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 3);
+    }
+
+    @Test
+    public void testRoleSetIsComparedInFull() {
+        cache.put(cache.key("foo", Arrays.asList("role1", "role2"), "Microsoft.Web/sites/read"), "Allow");
+
+        Assert.assertNull(cache.get(cache.key("foo", Collections.singletonList("role1,role2"), "Microsoft.Web/sites/read")));
+        Assert.assertNull(cache.get(cache.key("foo", Arrays.asList("role1", "role2", "role2"), "Microsoft.Web/sites/read")));
+    }
+
+    @Test
+    public void testExpiredDecision() {
+        DecisionCache<String> cache = new DecisionCache<>(4, 0, Clock.fixed(NOW, ZoneId.of("UTC")));
+        cache.put(cache.key("foo", Collections.singletonList("role1"), null), "Allow");
+
+        Assert.assertNull(cache.get(cache.key("foo", Collections.singletonList("role1"), null)));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        DecisionCache.Key key = cache.key("foo", Collections.singletonList("role1"), "Microsoft.Web/sites/read");
+        cache.put(key, "Allow");
+
+        cache.invalidateAll();
+
+        Assert.assertNull(cache.get(cache.key("foo", Collections.singletonList("role1"), "Microsoft.Web/sites/read")));
+    }
+
+    @Test
+    public void testDecisionBuiltBeforeInvalidationIsNotStored() {
+        DecisionCache.Key key = cache.key("foo", Collections.singletonList("role1"), "Microsoft.Web/sites/read");
+
+        cache.invalidateAll();
+        cache.put(key, "Allow");
+
+        Assert.assertNull(cache.get(cache.key("foo", Collections.singletonList("role1"), "Microsoft.Web/sites/read")));
+    }
+
+    @Test
+    public void testMaximumSize() {
+        for (int i = 0; i < 100; i++) {
+            cache.put(cache.key("user" + i, Collections.singletonList("role1"), "Microsoft.Web/sites/read"), "Allow" + i);
+        }
+
+        Assert.assertEquals(cache.get(cache.key("user99", Collections.singletonList("role1"), "Microsoft.Web/sites/read")), "Allow99");
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+    }
+
+}
@@ -3,13 +3,23 @@ package jwt.core;
 import authorization.jwt.core.Claims;
 import authorization.jwt.core.Jwt;
 import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.RejectedTokenCache;
+import authorization.jwt.core.RevocationList;
+import authorization.jwt.core.RevocationStore;
+import authorization.jwt.core.StageLatencies;
+import authorization.jwt.core.TokenFilter;
+import authorization.jwt.core.VerifiedTokenCache;
+import authorization.jwt.core.VerifierRegistry;
 import com.nimbusds.jose.*;
 import com.nimbusds.jose.crypto.RSASSASigner;
 import com.nimbusds.jose.jwk.JWKSet;
 import com.nimbusds.jose.jwk.KeyUse;
 import com.nimbusds.jose.jwk.RSAKey;
 import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jwt.JWTClaimsSet;
+import org.mockito.Mockito;
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.BeforeMethod;
@@ -20,8 +30,18 @@ import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.PublicKey;
 import java.security.interfaces.RSAPublicKey;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 public class JwtTest {
 
@@ -87,6 +107,115 @@ public class JwtTest {
         Assert.assertEquals(claims.getRoles(), Arrays.asList("role1", "role2"));
     }
 
+    @Test
+    public void testVerifyCachedJWT() throws Exception {
+        JWKSource<SecurityContext> jwkSource = Mockito.spy(new ImmutableJWKSet<>(new JWKSet(publicKey)));
+        VerifiedTokenCache cache = new VerifiedTokenCache(10);
+        Jwt jwt = Jwt.builder(new VerifierRegistry(jwkSource)).withVerifiedTokenCache(cache).build();
+
+        Claims first = jwt.verify("Bearer " + accessToken);
+        Claims second = jwt.verify("Bearer " + accessToken);
+
+        Assert.assertEquals(second, first);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Mockito.verify(jwkSource, Mockito.times(1)).get(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testConcurrentVerification() throws Exception {
+        // One shared instance serves all invocations, so results must never mix between tokens
+        Jwt jwt = Jwt.builder(new VerifierRegistry(new ImmutableJWKSet<>(new JWKSet(publicKey))))
+            .withVerifiedTokenCache(new VerifiedTokenCache(100))
+            .build();
+        int threads = 16;
+        String[] tokens = new String[threads];
+        for (int i = 0; i < threads; i++) {
+            tokens[i] = jws(claims(expirationTime(60), "role" + i), publicKey).serialize();
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            results.add(executor.submit(() -> {
+                start.await();
+                int verified = 0;
+                for (int j = 0; j < 200; j++) {
+                    int index = (thread + j) % threads;
+                    if (j % 10 == 0) {
+                        try {
+                            jwt.verify("Bearer " + tokens[index] + "a");
+                            Assert.fail("Tampered token was accepted");
+                        } catch (JwtVerificationException e) {
+                            continue;
+                        }
+                    }
+
+                    Claims claims = jwt.verify("Bearer " + tokens[index]);
+                    Assert.assertEquals(claims.getRoles(), Collections.singletonList("role" + index));
+                    verified++;
+                }
+
+                return verified;
+            }));
+        }
+
+        start.countDown();
+        for (Future<Integer> result : results) {
+            Assert.assertEquals((int) result.get(30, TimeUnit.SECONDS), 180);
+        }
+
+        executor.shutdown();
+    }
+
+    @Test
+    public void testConcurrentFirstRequestsShareOneVerification() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        JWKSource<SecurityContext> jwkSource = Mockito.spy(new ImmutableJWKSet<>(new JWKSet(publicKey)));
+        Mockito.doAnswer(invocation -> {
+            entered.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return invocation.callRealMethod();
+        }).when(jwkSource).get(Mockito.any(), Mockito.any());
+        VerifierRegistry verifierRegistry = new VerifierRegistry(jwkSource);
+        StageLatencies stageLatencies = new StageLatencies();
+        Jwt jwt = Jwt.builder(verifierRegistry)
+            .withVerifiedTokenCache(new VerifiedTokenCache(100))
+            .withStageLatencies(stageLatencies)
+            .build();
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<Claims> leader = executor.submit(() -> jwt.verify("Bearer " + accessToken));
+        Assert.assertTrue(entered.await(10, TimeUnit.SECONDS));
+        Claims[] follower = new Claims[1];
+        Thread thread = new Thread(() -> follower[0] = jwt.verify("Bearer " + accessToken));
+        thread.start();
+        while (thread.getState() != Thread.State.WAITING && thread.isAlive()) {
+            Thread.sleep(1);
+        }
+
+        release.countDown();
+        thread.join(10_000L);
+
+        Assert.assertEquals(follower[0], leader.get(10, TimeUnit.SECONDS));
+        Assert.assertNotSame(follower[0], leader.get());
+        Assert.assertEquals(stageLatencies.get(StageLatencies.Stage.SIGNATURE).snapshot().getCount(), 1);
+        executor.shutdown();
+    }
+
+    @Test
+    public void testCachedClaimsCantBeChangedByCaller() {
+        Claims first = jwt.verify("Bearer " + accessToken);
+        first.setUsername("bar");
+
+        Claims second = jwt.verify("Bearer " + accessToken);
+
+        Assert.assertEquals(second.getUsername(), "foo");
+        Assert.expectThrows(UnsupportedOperationException.class, () -> second.getRoles().add("role3"));
+    }
+
     @Test(expectedExceptions = JwtVerificationException.class,
         expectedExceptionsMessageRegExp = "JWS object didn't pass the verification")
     public void testUnknownJWT() throws JOSEException {
@@ -112,6 +241,114 @@ public class JwtTest {
         jwt.verify(header);
     }
 
+    @Test
+    public void testNotYetValidJWTIsRejectedBeforeSignature() throws JOSEException {
+        VerifierRegistry verifierRegistry = new VerifierRegistry(new ImmutableJWKSet<>(new JWKSet(publicKey)));
+        TokenFilter tokenFilter = new TokenFilter(verifierRegistry);
+        jwt = Jwt.builder(verifierRegistry)
+            .withVerifiedTokenCache(new VerifiedTokenCache(100))
+            .withTokenFilter(tokenFilter)
+            .build();
+        String header = "Bearer " + jws(new JWTClaimsSet.Builder(claims(expirationTime(120), "role1"))
+            .notBeforeTime(expirationTime(60))
+            .build(), publicKey).serialize();
+
+        JwtVerificationException actual = Assert.expectThrows(JwtVerificationException.class, () -> jwt.verify(header));
+        Assert.assertEquals(actual.getMessage(), "JWT isn't valid yet");
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.NOT_BEFORE), 1);
+    }
+
+    @Test
+    public void testNotYetValidTokenIsVerifiedAgainOnceValid() throws JOSEException {
+        long now = System.currentTimeMillis();
+        Clock clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(now);
+        Mockito.when(clock.instant()).thenReturn(Instant.ofEpochMilli(now));
+        VerifierRegistry verifierRegistry = new VerifierRegistry(new ImmutableJWKSet<>(new JWKSet(publicKey)));
+        RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(100, 30_000L, clock);
+        jwt = Jwt.builder(verifierRegistry)
+            .withVerifiedTokenCache(new VerifiedTokenCache(100))
+            .withTokenFilter(new TokenFilter(verifierRegistry, TokenFilter.DEFAULT_ALGORITHMS, clock))
+            .withRejectedTokenCache(rejectedTokenCache)
+            .build();
+        String header = "Bearer " + jws(new JWTClaimsSet.Builder(claims(expirationTime(120), "role1"))
+            .notBeforeTime(new Date(now + 10_000L))
+            .build(), publicKey).serialize();
+        Assert.expectThrows(JwtVerificationException.class, () -> jwt.verify(header));
+
+        Mockito.when(clock.millis()).thenReturn(now + 11_000L);
+        Mockito.when(clock.instant()).thenReturn(Instant.ofEpochMilli(now + 11_000L));
+
+        Assert.assertEquals(jwt.verify(header).getUsername(), "foo");
+        Assert.assertEquals(rejectedTokenCache.getHitCount(), 0);
+    }
+
+    @Test
+    public void testRepeatedBadTokenIsRejectedFromCache() throws Exception {
+        JWKSource<SecurityContext> jwkSource = Mockito.spy(new ImmutableJWKSet<>(new JWKSet(publicKey)));
+        VerifierRegistry verifierRegistry = new VerifierRegistry(jwkSource);
+        RejectedTokenCache rejectedTokenCache = new RejectedTokenCache(100, 30_000L);
+        jwt = Jwt.builder(verifierRegistry)
+            .withVerifiedTokenCache(new VerifiedTokenCache(100))
+            .withRejectedTokenCache(rejectedTokenCache)
+            .build();
+        String header = "Bearer " + jws(claims(expirationTime(60), "role1"), RSAKey(keysHolder.getPublic(), "foo")).serialize();
+        Assert.expectThrows(JwtVerificationException.class, () -> jwt.verify(header));
+        Mockito.clearInvocations(jwkSource);
+
+        JwtVerificationException actual = Assert.expectThrows(JwtVerificationException.class, () -> jwt.verify(header));
+
+        Assert.assertEquals(actual.getMessage(), "JWS object didn't pass the verification");
+        Assert.assertEquals(rejectedTokenCache.getHitCount(), 1);
+        Assert.assertEquals(rejectedTokenCache.getRejectionCount("JWS object didn't pass the verification"), 2);
+        Mockito.verify(jwkSource, Mockito.never()).get(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testRevokedJWT() throws JOSEException {
+        RevocationStore revocationStore = new RevocationStore();
+        jwt = Jwt.builder(new VerifierRegistry(new ImmutableJWKSet<>(new JWKSet(publicKey))))
+            .withVerifiedTokenCache(new VerifiedTokenCache(100))
+            .withRevocationStore(revocationStore)
+            .build();
+        String header = "Bearer " + jws(new JWTClaimsSet.Builder(claims(expirationTime(60), "role1"))
+            .jwtID("token-1")
+            .build(), publicKey).serialize();
+        jwt.verify(header);
+
+        revocationStore.push(RevocationList.builder().addTokenId("token-1").build(System.currentTimeMillis()));
+
+        JwtVerificationException actual = Assert.expectThrows(JwtVerificationException.class, () -> jwt.verify(header));
+        Assert.assertEquals(actual.getMessage(), "JWT has been revoked");
+        Assert.assertNull(jwt.peek(header));
+    }
+
+    @Test
+    public void testPeekUnverifiedClaims() throws JOSEException {
+        jwt.verify("Bearer " + accessToken);
+        String header = "Bearer " + jws(claims(expirationTime(120), "role3"), publicKey).serialize();
+
+        Claims actual = jwt.peek(header);
+
+        Assert.assertEquals(actual.getUsername(), "foo");
+        Assert.assertEquals(actual.getRoles(), Collections.singletonList("role3"));
+    }
+
+    @Test
+    public void testPeekSkipsTokensNotWorthOverlapping() throws JOSEException {
+        // The signing key isn't known before the first verification
+        Assert.assertNull(jwt.peek("Bearer " + accessToken));
+
+        jwt.verify("Bearer " + accessToken);
+
+        Assert.assertNull(jwt.peek("Bearer " + accessToken));
+        Assert.assertNull(jwt.peek("Bearer " + jws(claims(expirationTime(-60), "role1"), publicKey).serialize()));
+        Assert.assertNull(jwt.peek("Bearer " + jws(claims(expirationTime(60), "role1"),
+            RSAKey(keysHolder.getPublic(), "foo")).serialize()));
+        Assert.assertNull(jwt.peek("Bearer foo.bar"));
+        Assert.assertNull(jwt.peek(null));
+    }
+
     private JWSObject jws(JWTClaimsSet claims, RSAKey publicKey)
         throws JOSEException {
         JWSObject jws = new JWSObject(
@@ -0,0 +1,95 @@
+package jwt.core;
+
+import authorization.jwt.core.LatencyHistogram;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(i));
+        }
+
+        LatencyHistogram.Snapshot actual = histogram.snapshot();
+
+        Assert.assertEquals(actual.getCount(), 1000);
+        Assert.assertEquals(actual.getMax(TimeUnit.MICROSECONDS), 1000);
+        assertWithinBucket(actual.getPercentile(0.5, TimeUnit.MICROSECONDS), 500);
+        assertWithinBucket(actual.getPercentile(0.99, TimeUnit.MICROSECONDS), 990);
+        Assert.assertEquals(actual.getPercentile(1.0, TimeUnit.MICROSECONDS), 1000);
+    }
+
+    @Test
+    public void testSmallAndHugeValues() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+        histogram.record(3);
+        histogram.record(Long.MAX_VALUE);
+
+        LatencyHistogram.Snapshot actual = histogram.snapshot();
+
+        Assert.assertEquals(actual.getCount(), 3);
+        Assert.assertEquals(actual.getPercentile(0.3, TimeUnit.NANOSECONDS), 0);
+        Assert.assertEquals(actual.getPercentile(0.6, TimeUnit.NANOSECONDS), 3);
+        Assert.assertEquals(actual.getPercentile(1.0, TimeUnit.NANOSECONDS), (1L << 44) - 1);
+    }
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram.Snapshot actual = new LatencyHistogram().snapshot();
+
+        Assert.assertEquals(actual.getCount(), 0);
+        Assert.assertEquals(actual.getPercentile(0.99, TimeUnit.MICROSECONDS), 0);
+    }
+
+    @Test
+    public void testSince() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+        LatencyHistogram.Snapshot previous = histogram.snapshot();
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(10));
+
+        LatencyHistogram.Snapshot actual = histogram.snapshot().since(previous);
+
+        Assert.assertEquals(actual.getCount(), 2);
+        assertWithinBucket(actual.getPercentile(0.99, TimeUnit.MICROSECONDS), 10);
+    }
+
+    @Test
+    public void testConcurrentRecording() throws Exception {
+        LatencyHistogram histogram = new LatencyHistogram();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(4);
+        for (int thread = 0; thread < 4; thread++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    histogram.record(i);
+                }
+
+                done.countDown();
+            });
+        }
+
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        executor.shutdown();
+
+        Assert.assertEquals(histogram.snapshot().getCount(), 40_000);
+        Assert.assertEquals(histogram.snapshot().getMax(TimeUnit.NANOSECONDS), 9_999);
+    }
+
+    // A bucket spans 1/16 of its power of two
+    private static void assertWithinBucket(long actual, long expected) {
+        Assert.assertTrue(actual >= expected && actual <= expected + expected / 16 + 1,
+            actual + " isn't within the bucket of " + expected);
+    }
+
+}
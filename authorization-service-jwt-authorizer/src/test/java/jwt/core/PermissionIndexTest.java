@@ -0,0 +1,215 @@
+package jwt.core;
+
+import authorization.jwt.core.EffectivePermissions;
+import authorization.jwt.core.PermissionIndex;
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class PermissionIndexTest {
+
+    private PermissionIndex index;
+
+    @BeforeMethod
+    public void setUp() {
+        index = new PermissionIndex();
+    }
+
+    @Test
+    public void testMerge() {
+        RoleDefinition reader = makeRoleDefinition("reader",
+            Arrays.asList("Microsoft.Web/sites/read", "Microsoft.Web/sites/write"),
+            Collections.singletonList("Microsoft.Web/sites/write"));
+        RoleDefinition operator = makeRoleDefinition("operator",
+            Collections.singletonList("Microsoft.Web/sites/restart/action"), Collections.emptyList());
+
+        EffectivePermissions actual = index.merge(Arrays.asList(reader, operator));
+
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/read"));
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/restart/action"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/write"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/delete"));
+        Assert.assertEquals(actual.getActions(), Arrays.asList(
+            "Microsoft.Web/sites/read", "Microsoft.Web/sites/write", "Microsoft.Web/sites/restart/action"));
+        Assert.assertEquals(actual.getNotActions(), Collections.singletonList("Microsoft.Web/sites/write"));
+        Assert.assertEquals(index.size(), 3);
+    }
+
+    @Test
+    public void testNotActionsOnlyLimitTheirOwnRole() {
+        RoleDefinition reader = makeRoleDefinition("reader",
+            Collections.singletonList("*/read"), Collections.singletonList("Microsoft.Storage/*/read"));
+        RoleDefinition storageReader = makeRoleDefinition("storage-reader",
+            Collections.singletonList("Microsoft.Storage/*/read"), Collections.emptyList());
+
+        Assert.assertFalse(index.merge(Collections.singletonList(reader))
+            .isAllowed("Microsoft.Storage/storageAccounts/read"));
+
+        EffectivePermissions actual = index.merge(Arrays.asList(reader, storageReader));
+
+        Assert.assertTrue(actual.isAllowed("Microsoft.Storage/storageAccounts/read"));
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/read"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Storage/storageAccounts/write"));
+    }
+
+    @Test
+    public void testNotActionsOnlyLimitTheirOwnPermissionBlock() {
+        Permission web = Mockito.mock(Permission.class);
+        Mockito.when(web.actions()).thenReturn(Collections.singletonList("Microsoft.Web/*"));
+        Mockito.when(web.notActions()).thenReturn(Collections.singletonList("Microsoft.Web/sites/delete"));
+        Permission deleter = Mockito.mock(Permission.class);
+        Mockito.when(deleter.actions()).thenReturn(Collections.singletonList("Microsoft.Web/sites/delete"));
+        Mockito.when(deleter.notActions()).thenReturn(Collections.singletonList("Microsoft.Web/sites/write"));
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.id()).thenReturn("web-admin");
+        Mockito.when(roleDefinition.permissions()).thenReturn(new HashSet<>(Arrays.asList(web, deleter)));
+
+        EffectivePermissions actual = index.merge(Collections.singletonList(roleDefinition));
+
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/delete"));
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/write"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Compute/virtualMachines/delete"));
+    }
+
+    @Test
+    public void testWildcardNotActionsAcrossRoles() {
+        RoleDefinition contributor = makeRoleDefinition("contributor",
+            Collections.singletonList("Microsoft.Web/*"), Collections.singletonList("Microsoft.Web/sites/*/delete"));
+        RoleDefinition slotOperator = makeRoleDefinition("slot-operator",
+            Collections.singletonList("Microsoft.Web/sites/slots/*"), Collections.singletonList("*/write"));
+
+        EffectivePermissions actual = index.merge(Arrays.asList(contributor, slotOperator));
+
+        // Each role's notActions leave the other role's grants alone
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/slots/delete"));
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/slots/write"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/config/delete"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Compute/virtualMachines/read"));
+        Assert.assertFalse(actual.isAllowed(""));
+    }
+
+    @Test
+    public void testMergeWildcards() {
+        RoleDefinition contributor = makeRoleDefinition("contributor",
+            Collections.singletonList("Microsoft.Web/*"),
+            Arrays.asList("Microsoft.Web/sites/*/delete", "Microsoft.Web/sites/config/*"));
+
+        EffectivePermissions actual = index.merge(Collections.singletonList(contributor));
+
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/read"));
+        Assert.assertTrue(actual.isAllowed("microsoft.web/serverfarms/write"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/slots/delete"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/config/list/action"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Compute/virtualMachines/read"));
+    }
+
+    @Test
+    public void testMergeNoRoles() {
+        EffectivePermissions actual = index.merge(Collections.emptyList());
+
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/read"));
+        Assert.assertTrue(actual.getActions().isEmpty());
+    }
+
+    @Test
+    public void testMergeManyActions() {
+        List<String> actions = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            actions.add("Microsoft.Web/sites/action" + i);
+        }
+
+        EffectivePermissions actual = index.merge(Arrays.asList(
+            makeRoleDefinition("first", actions.subList(0, 100), Collections.emptyList()),
+            makeRoleDefinition("second", actions.subList(100, 200), Collections.singletonList("Microsoft.Web/sites/action150"))));
+
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/action0"));
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/action199"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/action150"));
+        Assert.assertEquals(actual.getActions(), actions);
+    }
+
+    @Test
+    public void testCompiledRoleIsReused() {
+        RoleDefinition reader = makeRoleDefinition("reader",
+            Collections.singletonList("Microsoft.Web/sites/read"), Collections.emptyList());
+
+        index.merge(Collections.singletonList(reader));
+        index.merge(Collections.singletonList(reader));
+
+        Mockito.verify(reader, Mockito.times(1)).permissions();
+    }
+
+    @Test
+    public void testNewActionsAreMatchedBeforeRecompile() {
+        List<Runnable> recompiles = new ArrayList<>();
+        PermissionIndex index = new PermissionIndex(recompiles::add, 10);
+        RoleDefinition reader = makeRoleDefinition("reader",
+            Collections.singletonList("Microsoft.Web/*/read"), Collections.singletonList("Microsoft.Web/sites/config/*"));
+
+        EffectivePermissions actual = index.merge(Collections.singletonList(reader));
+
+        // The new patterns are matched one by one while a single recompile is queued
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/read"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/config/read"));
+        Assert.assertEquals(recompiles.size(), 1);
+
+        recompiles.get(0).run();
+
+        Assert.assertTrue(actual.isAllowed("microsoft.web/sites/read"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/config/read"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/write"));
+        Assert.assertEquals(recompiles.size(), 1);
+    }
+
+    @Test
+    public void testInvalidateAllStartsOver() {
+        RoleDefinition before = makeRoleDefinition("reader",
+            Collections.singletonList("Microsoft.Web/sites/read"), Collections.emptyList());
+        EffectivePermissions merged = index.merge(Collections.singletonList(before));
+
+        index.invalidateAll();
+        RoleDefinition after = makeRoleDefinition("reader",
+            Collections.singletonList("Microsoft.Web/sites/write"), Collections.emptyList());
+        EffectivePermissions actual = index.merge(Collections.singletonList(after));
+
+        Assert.assertEquals(index.size(), 1);
+        Assert.assertTrue(actual.isAllowed("Microsoft.Web/sites/write"));
+        Assert.assertFalse(actual.isAllowed("Microsoft.Web/sites/read"));
+        // Permissions merged before keep the meaning of their bits
+        Assert.assertTrue(merged.isAllowed("Microsoft.Web/sites/read"));
+        Assert.assertEquals(merged.getActions(), Collections.singletonList("Microsoft.Web/sites/read"));
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        PermissionIndex index = new PermissionIndex(Runnable::run, 2);
+
+        for (int i = 0; i < 10; i++) {
+            index.merge(Collections.singletonList(makeRoleDefinition("role-" + i,
+                Collections.singletonList("Microsoft.Web/sites/action" + i), Collections.emptyList())));
+        }
+
+        Assert.assertTrue(index.size() <= 3);
+    }
+
+    private static RoleDefinition makeRoleDefinition(String roleId, List<String> actions, List<String> notActions) {
+        Permission permission = Mockito.mock(Permission.class);
+        Mockito.when(permission.actions()).thenReturn(actions);
+        Mockito.when(permission.notActions()).thenReturn(notActions);
+
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.id()).thenReturn(roleId);
+        Mockito.when(roleDefinition.permissions()).thenReturn(Collections.singleton(permission));
+        return roleDefinition;
+    }
+
+}
@@ -0,0 +1,130 @@
+package jwt.core;
+
+import authorization.jwt.core.JwtKeyException;
+import authorization.jwt.core.JwtNotYetValidException;
+import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.RejectedTokenCache;
+import authorization.jwt.core.TokenDigest;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.KeySourceException;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.util.Map;
+
+public class RejectedTokenCacheTest {
+
+    private static final long NOW = 1234567890000L;
+
+    private Clock clock;
+    private RejectedTokenCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(NOW);
+        cache = new RejectedTokenCache(4, 30_000L, clock);
+    }
+
+    @Test
+    public void testGet() {
+        cache.put(TokenDigest.of("foo"), new JwtVerificationException("JWT has expired"));
+
+        Assert.assertEquals(cache.get(TokenDigest.of("foo")), "JWT has expired");
+        Assert.assertNull(cache.get(TokenDigest.of("bar")));
+        Assert.assertEquals(cache.getHitCount(), 1);
+    }
+
+    @Test
+    public void testEntriesExpire() {
+        cache.put(TokenDigest.of("foo"), new JwtVerificationException("JWT has expired"));
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 30_000L);
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+    }
+
+    @Test
+    public void testNotYetValidTokensAreCachedUntilNotBefore() {
+        cache.put(TokenDigest.of("foo"),
+            new JwtNotYetValidException("JWT isn't valid yet", Instant.ofEpochMilli(NOW + 5_000L)));
+
+        Assert.assertEquals(cache.get(TokenDigest.of("foo")), "JWT isn't valid yet");
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 5_000L);
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+    }
+
+    @Test
+    public void testKeySourceFailuresAreNotCached() {
+        cache.put(TokenDigest.of("foo"),
+            new JwtVerificationException("JWT couldn't be parsed", new KeySourceException("unreachable")));
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+        Assert.assertEquals(cache.getRejectionCount("JWT couldn't be parsed"), 1);
+    }
+
+    @Test
+    public void testKeyFailuresAreNotCached() {
+        cache.put(TokenDigest.of("foo"), new JwtKeyException("JWK couldn't be converted to RSA public key",
+            new JOSEException("Invalid RSA public key")));
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+        Assert.assertEquals(cache.getRejectionCount("JWK couldn't be converted to RSA public key"), 1);
+    }
+
+    @Test
+    public void testRejectionsAreCountedPerReason() {
+        cache.put(TokenDigest.of("foo"), new JwtVerificationException("JWT has expired"));
+        cache.put(TokenDigest.of("bar"), new JwtVerificationException("JWS object didn't pass the verification"));
+        cache.get(TokenDigest.of("foo"));
+        cache.get(TokenDigest.of("foo"));
+
+        Map<String, Long> actual = cache.getRejectionCounts();
+
+        Assert.assertEquals(actual.get("JWT has expired"), Long.valueOf(3));
+        Assert.assertEquals(actual.get("JWS object didn't pass the verification"), Long.valueOf(1));
+        Assert.assertEquals(cache.getRejectionCount("JWT has been revoked"), 0);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        for (int i = 0; i < 100; i++) {
+            cache.put(TokenDigest.of("token" + i), new JwtVerificationException("JWT has expired"));
+        }
+
+        int cached = 0;
+        for (int i = 0; i < 100; i++) {
+            if (cache.get(TokenDigest.of("token" + i)) != null) {
+                cached++;
+            }
+        }
+
+        Assert.assertTrue(cached <= 4);
+        Assert.assertTrue(cache.getEvictionCount() > 0);
+        Assert.assertNotNull(cache.get(TokenDigest.of("token99")));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put(TokenDigest.of("foo"), new JwtVerificationException("JWS object didn't pass the verification"));
+
+        cache.invalidateAll();
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+    }
+
+    @Test
+    public void testDisabled() {
+        RejectedTokenCache disabled = RejectedTokenCache.disabled();
+        disabled.put(TokenDigest.of("foo"), new JwtVerificationException("JWT has expired"));
+
+        Assert.assertNull(disabled.get(TokenDigest.of("foo")));
+    }
+
+}
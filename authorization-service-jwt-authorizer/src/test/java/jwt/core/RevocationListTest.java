@@ -0,0 +1,147 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.RevocationList;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+public class RevocationListTest {
+
+    private static final Clock CLOCK = Clock.fixed(Instant.ofEpochSecond(1_000_000), ZoneId.of("UTC"));
+
+    @Test
+    public void testRevokedTokenIdsAndUsernames() {
+        RevocationList list = RevocationList.builder()
+            .addTokenId("token-1")
+            .addUsername("mallory")
+            .build(CLOCK.millis());
+
+        Assert.assertEquals(list.size(), 2);
+        Assert.assertTrue(list.isTokenIdRevoked("token-1", CLOCK));
+        Assert.assertFalse(list.isTokenIdRevoked("token-2", CLOCK));
+        Assert.assertTrue(list.isUsernameRevoked("mallory", CLOCK));
+        Assert.assertFalse(list.isUsernameRevoked("alice", CLOCK));
+        // Token IDs and usernames are kept apart
+        Assert.assertFalse(list.isUsernameRevoked("token-1", CLOCK));
+        Assert.assertTrue(list.isRevoked(claims("alice", "token-1"), CLOCK));
+        Assert.assertTrue(list.isRevoked(claims("mallory", null), CLOCK));
+        Assert.assertFalse(list.isRevoked(claims("alice", "token-2"), CLOCK));
+    }
+
+    @Test
+    public void testExpiredEntries() {
+        RevocationList list = RevocationList.builder()
+            .addTokenId("expired", CLOCK.millis() - 1)
+            .addTokenId("expiring", CLOCK.millis() + 1000)
+            .build(CLOCK.millis());
+
+        Assert.assertEquals(list.size(), 1);
+        Assert.assertFalse(list.isTokenIdRevoked("expired", CLOCK));
+        Assert.assertTrue(list.isTokenIdRevoked("expiring", CLOCK));
+        Assert.assertFalse(list.isTokenIdRevoked("expiring",
+            Clock.offset(CLOCK, Duration.ofSeconds(2))));
+    }
+
+    @Test
+    public void testDuplicatesKeepLatestExpiry() {
+        RevocationList list = RevocationList.builder()
+            .addTokenId("token-1", CLOCK.millis() + 1000)
+            .addTokenId("token-1")
+            .build(CLOCK.millis());
+
+        Assert.assertEquals(list.size(), 1);
+        Assert.assertTrue(list.isTokenIdRevoked("token-1",
+            Clock.offset(CLOCK, Duration.ofDays(365))));
+    }
+
+    @Test
+    public void testMerge() {
+        RevocationList first = RevocationList.builder().addTokenId("token-1").build(CLOCK.millis());
+        RevocationList second = RevocationList.builder().addUsername("mallory").build(CLOCK.millis());
+
+        RevocationList merged = first.merge(second, CLOCK.millis());
+
+        Assert.assertEquals(merged.size(), 2);
+        Assert.assertTrue(merged.isTokenIdRevoked("token-1", CLOCK));
+        Assert.assertTrue(merged.isUsernameRevoked("mallory", CLOCK));
+        Assert.assertEquals(first.size(), 1);
+    }
+
+    @Test
+    public void testEmpty() {
+        Assert.assertEquals(RevocationList.empty().size(), 0);
+        Assert.assertFalse(RevocationList.empty().isRevoked(claims("alice", "token-1"), CLOCK));
+    }
+
+    @Test
+    public void testManyEntries() {
+        RevocationList.Builder builder = RevocationList.builder();
+        for (int i = 0; i < 200_000; i++) {
+            builder.addTokenId("token-" + i);
+        }
+
+        RevocationList list = builder.build(CLOCK.millis());
+
+        Assert.assertEquals(list.size(), 200_000);
+        for (int i = 0; i < 200_000; i += 997) {
+            Assert.assertTrue(list.isTokenIdRevoked("token-" + i, CLOCK));
+        }
+
+        for (int i = 200_000; i < 210_000; i++) {
+            Assert.assertFalse(list.isTokenIdRevoked("token-" + i, CLOCK));
+        }
+    }
+
+    @Test
+    public void testLoad() throws IOException {
+        Path path = Files.createTempFile("revocations", ".txt");
+        try {
+            Files.write(path, Arrays.asList(
+                "# revoked after the incident",
+                "jti token-1",
+                "",
+                "user mallory 2000000",
+                "jti token-2 1"), StandardCharsets.UTF_8);
+
+            RevocationList list = RevocationList.load(path, CLOCK.millis());
+
+            Assert.assertEquals(list.size(), 2);
+            Assert.assertTrue(list.isTokenIdRevoked("token-1", CLOCK));
+            Assert.assertTrue(list.isUsernameRevoked("mallory", CLOCK));
+            Assert.assertFalse(list.isTokenIdRevoked("token-2", CLOCK));
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class,
+        expectedExceptionsMessageRegExp = "Malformed revocation entry at line 2")
+    public void testLoadMalformedFile() throws IOException {
+        Path path = Files.createTempFile("revocations", ".txt");
+        try {
+            Files.write(path, Arrays.asList("jti token-1", "group admins"), StandardCharsets.UTF_8);
+
+            RevocationList.load(path, CLOCK.millis());
+        } finally {
+            Files.delete(path);
+        }
+    }
+
+    private static Claims claims(String username, String tokenId) {
+        Claims claims = new Claims();
+        claims.setUsername(username);
+        claims.setTokenId(tokenId);
+        return claims;
+    }
+
+}
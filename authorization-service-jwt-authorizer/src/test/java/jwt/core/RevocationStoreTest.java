@@ -0,0 +1,44 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.RevocationList;
+import authorization.jwt.core.RevocationStore;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class RevocationStoreTest {
+
+    @Test
+    public void testReplaceKeepsPushedEntries() {
+        RevocationStore store = new RevocationStore(10);
+        store.push(RevocationList.builder().addUsername("mallory").build(0));
+
+        store.replace(RevocationList.builder().addTokenId("token-1").build(0));
+        store.replace(RevocationList.builder().addTokenId("token-2").build(0));
+
+        Assert.assertEquals(store.size(), 2);
+        Assert.assertTrue(store.isRevoked(claims("mallory", null)));
+        Assert.assertTrue(store.isRevoked(claims("alice", "token-2")));
+        Assert.assertFalse(store.isRevoked(claims("alice", "token-1")));
+        Assert.assertEquals(store.getRejectionCount(), 2);
+    }
+
+    @Test
+    public void testOversizedListIsRejected() {
+        RevocationStore store = new RevocationStore(1);
+        store.push(RevocationList.builder().addTokenId("token-1").build(0));
+
+        Assert.expectThrows(IllegalArgumentException.class,
+            () -> store.push(RevocationList.builder().addTokenId("token-2").build(0)));
+        Assert.assertEquals(store.size(), 1);
+        Assert.assertFalse(store.isRevoked(claims("alice", "token-2")));
+    }
+
+    private static Claims claims(String username, String tokenId) {
+        Claims claims = new Claims();
+        claims.setUsername(username);
+        claims.setTokenId(tokenId);
+        return claims;
+    }
+
+}
@@ -0,0 +1,229 @@
+package jwt.core;
+
+import authorization.jwt.core.PolicyLookupException;
+import authorization.jwt.core.RoleDefinitionCache;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+public class RoleDefinitionCacheTest {
+
+    private MutableClock clock;
+    private RoleDefinitionCache cache;
+    private RoleDefinition roleDefinition;
+    private AtomicInteger loads;
+
+    @BeforeMethod
+    public void setUp() {
+        clock = new MutableClock(Instant.parse("2009-02-13T23:31:30Z"));
+        cache = new RoleDefinitionCache(60_000, 5_000, 2, clock);
+        roleDefinition = Mockito.mock(RoleDefinition.class);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    public void testGet() {
+        Function<String, RoleDefinition> loader = counting(roleId -> roleDefinition);
+
+        Assert.assertSame(cache.get("foo", loader), roleDefinition);
+        Assert.assertSame(cache.get("foo", loader), roleDefinition);
+        Assert.assertEquals(loads.get(), 1);
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 1);
+    }
+
+    @Test
+    public void testExpiredEntryIsReloaded() {
+        Function<String, RoleDefinition> loader = counting(roleId -> roleDefinition);
+        cache.get("foo", loader);
+
+        clock.advance(60_000);
+        cache.get("foo", loader);
+
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testNotFoundIsCachedBriefly() {
+        Function<String, RoleDefinition> loader = counting(roleId -> null);
+
+        Assert.assertNull(cache.get("foo", loader));
+        Assert.assertNull(cache.get("foo", loader));
+        Assert.assertEquals(loads.get(), 1);
+
+        clock.advance(5_000);
+        cache.get("foo", loader);
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testErrorIsCachedBriefly() {
+        Function<String, RoleDefinition> loader = counting(roleId -> {
+            throw new IllegalStateException("ARM is unavailable");
+        });
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                cache.get("foo", loader);
+                Assert.fail();
+            } catch (PolicyLookupException e) {
+                Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+        }
+
+        Assert.assertEquals(loads.get(), 1);
+    }
+
+    @Test
+    public void testMaximumSize() {
+        Function<String, RoleDefinition> loader = counting(roleId -> roleDefinition);
+        cache.get("foo", loader);
+        cache.get("bar", loader);
+        cache.get("baz", loader);
+
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getEvictionCount(), 1);
+    }
+
+    @Test
+    public void testInvalidate() {
+        Function<String, RoleDefinition> loader = counting(roleId -> roleDefinition);
+        cache.get("foo", loader);
+
+        cache.invalidate("foo");
+        cache.get("foo", loader);
+
+        Assert.assertEquals(loads.get(), 2);
+    }
+
+    @Test
+    public void testListenersLearnAboutChangedDefinitions() {
+        List<String> changed = new ArrayList<>();
+        cache.addListener(changed::add);
+        RoleDefinition renamed = Mockito.mock(RoleDefinition.class);
+        Mockito.when(renamed.roleName()).thenReturn("renamed");
+        RoleDefinition[] current = {roleDefinition};
+        Function<String, RoleDefinition> loader = roleId -> current[0];
+
+        cache.get("foo", loader);
+        clock.advance(60_000);
+        cache.get("foo", loader);
+        Assert.assertTrue(changed.isEmpty());
+
+        current[0] = renamed;
+        clock.advance(60_000);
+        cache.get("foo", loader);
+        cache.invalidate("bar");
+        Assert.assertEquals(changed, Arrays.asList("foo", "bar"));
+    }
+
+    @Test
+    public void testEntryListenersLearnAboutStoredAndEvictedDefinitions() {
+        List<String> changes = new ArrayList<>();
+        cache.addEntryListener((removed, added) -> changes.add(name(removed) + "->" + name(added)));
+        RoleDefinition other = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.roleName()).thenReturn("foo");
+        Mockito.when(other.roleName()).thenReturn("bar");
+
+        cache.get("foo", roleId -> roleDefinition);
+        cache.get("bar", roleId -> other);
+        cache.invalidate("foo");
+        cache.invalidateAll();
+
+        Assert.assertEquals(changes, Arrays.asList("null->foo", "null->bar", "foo->null", "bar->null"));
+    }
+
+    private static String name(RoleDefinition roleDefinition) {
+        return roleDefinition == null ? "null" : roleDefinition.roleName();
+    }
+
+    @Test
+    public void testConcurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Function<String, RoleDefinition> loader = counting(roleId -> {
+            loading.countDown();
+            await(release);
+            return roleDefinition;
+        });
+
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<RoleDefinition>> results = new ArrayList<>();
+        results.add(executor.submit(() -> cache.get("foo", loader)));
+        Assert.assertTrue(loading.await(5, TimeUnit.SECONDS));
+        for (int i = 1; i < threads; i++) {
+            results.add(executor.submit(() -> cache.get("foo", loader)));
+        }
+
+        Thread.sleep(100);
+        release.countDown();
+        for (Future<RoleDefinition> result : results) {
+            Assert.assertSame(result.get(5, TimeUnit.SECONDS), roleDefinition);
+        }
+
+        executor.shutdown();
+        Assert.assertEquals(loads.get(), 1);
+    }
+
+    private Function<String, RoleDefinition> counting(Function<String, RoleDefinition> loader) {
+        return roleId -> {
+            loads.incrementAndGet();
+            return loader.apply(roleId);
+        };
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private volatile Instant instant;
+
+        private MutableClock(Instant instant) {
+            this.instant = instant;
+        }
+
+        private void advance(long millis) {
+            instant = instant.plusMillis(millis);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneId.of("UTC");
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instant;
+        }
+
+    }
+
+}
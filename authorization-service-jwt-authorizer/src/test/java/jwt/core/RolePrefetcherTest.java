@@ -0,0 +1,124 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.Jwt;
+import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.core.RolePrefetcher;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+public class RolePrefetcherTest {
+
+    private static final String HEADER = "Bearer header.payload.signature";
+
+    @Mock
+    private Jwt mockJwt;
+    @Mock
+    private PolicyRepository mockPolicyRepository;
+
+    private RolePrefetcher prefetcher;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        prefetcher = new RolePrefetcher(mockJwt, mockPolicyRepository);
+    }
+
+    @Test
+    public void testLookupStartsBeforeVerification() {
+        Claims claims = claims("role1");
+        CompletableFuture<List<RoleDefinition>> lookup = new CompletableFuture<>();
+        Mockito.when(mockJwt.peek(HEADER)).thenReturn(claims);
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims)).thenReturn(lookup);
+        Mockito.when(mockJwt.verify(HEADER)).thenAnswer(invocation -> {
+            Mockito.verify(mockPolicyRepository).getRoleDefinitionsAsync(claims);
+            return claims("role1");
+        });
+
+        RolePrefetcher.Prefetch prefetch = prefetcher.start(HEADER);
+        Claims verified = prefetch.verify();
+
+        Assert.assertTrue(prefetch.isStarted());
+        Assert.assertSame(prefetch.getRoleDefinitionsAsync(verified), lookup);
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinitionsAsync(Mockito.any());
+    }
+
+    @Test
+    public void testLookupIsNotStartedWhenNotNeeded() {
+        Claims claims = claims("role1");
+        Mockito.when(mockJwt.peek(HEADER)).thenReturn(claims);
+        Mockito.when(mockJwt.verify(HEADER)).thenReturn(claims("role1"));
+
+        RolePrefetcher.Prefetch prefetch = prefetcher.start(HEADER, unverified -> false);
+        prefetch.verify();
+
+        Assert.assertFalse(prefetch.isStarted());
+        Mockito.verify(mockPolicyRepository, Mockito.never()).getRoleDefinitionsAsync(Mockito.any());
+    }
+
+    @Test
+    public void testLookupIsDiscardedWhenVerificationFails() {
+        Claims claims = claims("role1");
+        CompletableFuture<List<RoleDefinition>> lookup = new CompletableFuture<>();
+        Mockito.when(mockJwt.peek(HEADER)).thenReturn(claims);
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims)).thenReturn(lookup);
+        Mockito.when(mockJwt.verify(HEADER)).thenThrow(new JwtVerificationException("Invalid signature"));
+
+        RolePrefetcher.Prefetch prefetch = prefetcher.start(HEADER);
+
+        Assert.expectThrows(JwtVerificationException.class, prefetch::verify);
+        Assert.assertTrue(lookup.isCancelled());
+    }
+
+    @Test
+    public void testLookupFallsBackWhenNothingWasPrefetched() {
+        Claims claims = claims("role1");
+        CompletableFuture<List<RoleDefinition>> lookup =
+            CompletableFuture.completedFuture(Collections.emptyList());
+        Mockito.when(mockJwt.verify(HEADER)).thenReturn(claims);
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims)).thenReturn(lookup);
+
+        RolePrefetcher.Prefetch prefetch = prefetcher.start(HEADER);
+        Claims verified = prefetch.verify();
+
+        Assert.assertFalse(prefetch.isStarted());
+        Assert.assertSame(prefetch.getRoleDefinitionsAsync(verified), lookup);
+    }
+
+    @Test
+    public void testLookupForOtherRolesIsNotReused() {
+        Claims unverified = claims("role1");
+        Claims verified = claims("role2");
+        CompletableFuture<List<RoleDefinition>> prefetched = new CompletableFuture<>();
+        CompletableFuture<List<RoleDefinition>> lookup =
+            CompletableFuture.completedFuture(Collections.emptyList());
+        Mockito.when(mockJwt.peek(HEADER)).thenReturn(unverified);
+        Mockito.when(mockJwt.verify(HEADER)).thenReturn(verified);
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(unverified)).thenReturn(prefetched);
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(verified)).thenReturn(lookup);
+
+        RolePrefetcher.Prefetch prefetch = prefetcher.start(HEADER);
+
+        Assert.assertSame(prefetch.getRoleDefinitionsAsync(prefetch.verify()), lookup);
+        Assert.assertTrue(prefetched.isCancelled());
+    }
+
+    private static Claims claims(String... roles) {
+        Claims claims = new Claims();
+        claims.setUsername("foo");
+        claims.setRoles(Arrays.asList(roles));
+        return claims;
+    }
+
+}
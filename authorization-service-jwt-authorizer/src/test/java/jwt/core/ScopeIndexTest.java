@@ -0,0 +1,167 @@
+package jwt.core;
+
+import authorization.jwt.core.ScopeIndex;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+public class ScopeIndexTest {
+
+    @Test
+    public void testRolesApplyBelowTheirScopes() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition subscription = makeRoleDefinition("subscription", "/subscriptions/123456");
+        RoleDefinition group = makeRoleDefinition("group", "/subscriptions/123456/resourceGroups/foo");
+        RoleDefinition other = makeRoleDefinition("other", "/subscriptions/654321");
+        List<RoleDefinition> roles = Arrays.asList(subscription, group, other);
+        index.replaceAll(roles);
+
+        Assert.assertEquals(index.applicableAt(roles,
+                "/subscriptions/123456/resourceGroups/foo/providers/Microsoft.Web/sites/bar"),
+                Arrays.asList(subscription, group));
+        Assert.assertEquals(index.applicableAt(roles, "/subscriptions/123456/resourceGroups/baz"),
+                Collections.singletonList(subscription));
+        Assert.assertEquals(index.applicableAt(roles, "/subscriptions/654321"),
+                Collections.singletonList(other));
+        Assert.assertEquals(index.roleIdsAt("/subscriptions/123456/resourceGroups/foo"),
+                new HashSet<>(Arrays.asList("subscription", "group")));
+    }
+
+    @Test
+    public void testScopesIgnoreCase() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition role = makeRoleDefinition("role", "/subscriptions/ABC/resourceGroups/Foo");
+
+        Assert.assertEquals(index.applicableAt(Collections.singletonList(role),
+                "/subscriptions/abc/resourcegroups/foo/providers/Microsoft.Web/sites/bar").size(), 1);
+    }
+
+    @Test
+    public void testRootScopeAppliesEverywhere() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition role = makeRoleDefinition("role", "/");
+
+        Assert.assertEquals(index.applicableAt(Collections.singletonList(role), "/subscriptions/123456").size(), 1);
+    }
+
+    @Test
+    public void testRolesWithoutScopesAlwaysApply() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition withoutId = makeRoleDefinition(null, "/subscriptions/123456");
+        RoleDefinition withoutScopes = makeRoleDefinition("role");
+
+        List<RoleDefinition> actual = index.applicableAt(Arrays.asList(withoutId, withoutScopes),
+                "/subscriptions/654321");
+
+        Assert.assertEquals(actual.size(), 2);
+    }
+
+    @Test
+    public void testRefreshedRoleIsReindexed() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition before = makeRoleDefinition("role", "/subscriptions/123456");
+        RoleDefinition after = makeRoleDefinition("role", "/subscriptions/654321");
+
+        index.add(before);
+        index.add(after);
+
+        Assert.assertTrue(index.roleIdsAt("/subscriptions/123456").isEmpty());
+        Assert.assertEquals(index.roleIdsAt("/subscriptions/654321"), Collections.singleton("role"));
+        Assert.assertEquals(index.size(), 1);
+    }
+
+    @Test
+    public void testSameRoleIsIndexedOnce() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition role = makeRoleDefinition("role", "/subscriptions/123456");
+
+        index.add(role);
+        index.add(role);
+
+        Mockito.verify(role, Mockito.times(1)).assignableScopes();
+    }
+
+    @Test
+    public void testManyScopes() {
+        ScopeIndex index = new ScopeIndex();
+        List<RoleDefinition> roles = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            RoleDefinition role = Mockito.mock(RoleDefinition.class);
+            Mockito.when(role.id()).thenReturn("role-" + i);
+            Mockito.when(role.assignableScopes()).thenReturn(Collections.singleton(
+                "/subscriptions/" + (i % 10) + "/resourceGroups/group-" + i));
+            index.add(role);
+            roles.add(role);
+        }
+
+        Assert.assertEquals(index.roleIdsAt("/subscriptions/7/resourceGroups/group-12347/providers/Microsoft.Web/sites/foo"),
+                Collections.singleton("role-12347"));
+        Assert.assertEquals(index.applicableAt(roles, "/subscriptions/3/resourceGroups/group-13").size(), 1);
+    }
+
+    @Test
+    public void testRolesOutsideTheIndexAreCheckedAgainstTheirScopes() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition role = makeRoleDefinition("role", "/subscriptions/123456");
+
+        Assert.assertEquals(index.applicableAt(Collections.singletonList(role),
+                "/subscriptions/123456/resourceGroups/foo").size(), 1);
+        Assert.assertTrue(index.applicableAt(Collections.singletonList(role), "/subscriptions/654321").isEmpty());
+        // Requests don't feed the index
+        Assert.assertEquals(index.size(), 0);
+    }
+
+    @Test
+    public void testRemovedRoleLeavesNoScopes() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition role = makeRoleDefinition("role", "/subscriptions/123456/resourceGroups/foo");
+        index.add(role);
+
+        index.remove(role);
+
+        Assert.assertEquals(index.size(), 0);
+        Assert.assertTrue(index.roleIdsAt("/subscriptions/123456/resourceGroups/foo").isEmpty());
+    }
+
+    @Test
+    public void testReplacedRoleIsNotRemovedByItsPredecessor() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition before = makeRoleDefinition("role", "/subscriptions/123456");
+        RoleDefinition after = makeRoleDefinition("role", "/subscriptions/654321");
+
+        index.replace(null, before);
+        index.replace(before, after);
+        index.remove(before);
+
+        Assert.assertEquals(index.roleIdsAt("/subscriptions/654321"), Collections.singleton("role"));
+        Assert.assertTrue(index.roleIdsAt("/subscriptions/123456").isEmpty());
+    }
+
+    @Test
+    public void testReplaceAllDropsMissingRoles() {
+        ScopeIndex index = new ScopeIndex();
+        RoleDefinition kept = makeRoleDefinition("kept", "/subscriptions/123456");
+        RoleDefinition dropped = makeRoleDefinition("dropped", "/subscriptions/123456");
+        index.replaceAll(Arrays.asList(kept, dropped));
+
+        index.replaceAll(Collections.singletonList(kept));
+
+        Assert.assertEquals(index.size(), 1);
+        Assert.assertEquals(index.roleIdsAt("/subscriptions/123456"), Collections.singleton("kept"));
+    }
+
+    private static RoleDefinition makeRoleDefinition(String id, String... scopes) {
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.id()).thenReturn(id);
+        Mockito.when(roleDefinition.assignableScopes()).thenReturn(new HashSet<>(Arrays.asList(scopes)));
+        return roleDefinition;
+    }
+
+}
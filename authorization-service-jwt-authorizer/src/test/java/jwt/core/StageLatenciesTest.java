@@ -0,0 +1,38 @@
+package jwt.core;
+
+import authorization.jwt.core.LatencyHistogram;
+import authorization.jwt.core.StageLatencies;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+public class StageLatenciesTest {
+
+    @Test
+    public void testSnapshot() {
+        StageLatencies stageLatencies = new StageLatencies();
+        stageLatencies.get(StageLatencies.Stage.SIGNATURE).record(TimeUnit.MICROSECONDS.toNanos(200));
+        stageLatencies.recordSince(StageLatencies.Stage.TOTAL, LatencyHistogram.start());
+
+        Map<StageLatencies.Stage, LatencyHistogram.Snapshot> actual = stageLatencies.snapshot();
+
+        Assert.assertEquals(actual.size(), StageLatencies.Stage.values().length);
+        Assert.assertEquals(actual.get(StageLatencies.Stage.SIGNATURE).getCount(), 1);
+        Assert.assertEquals(actual.get(StageLatencies.Stage.TOTAL).getCount(), 1);
+        Assert.assertEquals(actual.get(StageLatencies.Stage.PARSE).getCount(), 0);
+    }
+
+    @Test
+    public void testSummary() {
+        StageLatencies stageLatencies = new StageLatencies();
+        stageLatencies.get(StageLatencies.Stage.PARSE).record(TimeUnit.MICROSECONDS.toNanos(8));
+        stageLatencies.get(StageLatencies.Stage.SIGNATURE).record(TimeUnit.MICROSECONDS.toNanos(200));
+
+        String actual = StageLatencies.summary(stageLatencies.snapshot());
+
+        Assert.assertEquals(actual, "PARSE n=1 p50=8 p90=8 p99=8 max=8, SIGNATURE n=1 p50=200 p90=200 p99=200 max=200");
+    }
+
+}
@@ -0,0 +1,117 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.CompactJws;
+import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.PooledRSAVerifier;
+import authorization.jwt.core.TokenFilter;
+import authorization.jwt.core.VerifierRegistry;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+public class TokenFilterTest {
+
+    private static final Instant NOW = Instant.parse("2024-01-01T00:00:00Z");
+
+    private VerifierRegistry verifierRegistry;
+    private PooledRSAVerifier verifier;
+    private TokenFilter tokenFilter;
+
+    @BeforeMethod
+    public void setUp() throws KeySourceException {
+        verifierRegistry = Mockito.mock(VerifierRegistry.class);
+        verifier = Mockito.mock(PooledRSAVerifier.class);
+        Mockito.when(verifierRegistry.get("keyId")).thenReturn(verifier);
+        tokenFilter = new TokenFilter(verifierRegistry, TokenFilter.DEFAULT_ALGORITHMS,
+            Clock.fixed(NOW, ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void testAcceptedTokenGetsVerifier() throws KeySourceException {
+        PooledRSAVerifier actual = tokenFilter.check(header(JWSAlgorithm.RS256, "keyId"), claims(60, -60));
+
+        Assert.assertSame(actual, verifier);
+        for (TokenFilter.Stage stage : TokenFilter.Stage.values()) {
+            Assert.assertEquals(tokenFilter.getRejectionCount(stage), 0);
+        }
+    }
+
+    @Test
+    public void testMalformedHeaderIsRejected() {
+        Assert.expectThrows(JwtVerificationException.class, () -> tokenFilter.parse("Bearer a.b"));
+        Assert.expectThrows(JwtVerificationException.class, () -> tokenFilter.parse(null));
+
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.FORMAT), 2);
+    }
+
+    @Test
+    public void testAlgorithmNotAllowedIsRejected() throws KeySourceException {
+        JwtVerificationException actual = Assert.expectThrows(JwtVerificationException.class,
+            () -> tokenFilter.check(header(JWSAlgorithm.HS256, "keyId"), claims(60, null)));
+
+        Assert.assertEquals(actual.getMessage(), "JWS algorithm isn't allowed");
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.ALGORITHM), 1);
+        Mockito.verify(verifierRegistry, Mockito.never()).get(Mockito.any());
+    }
+
+    @Test
+    public void testExpiredTokenIsRejectedBeforeKeyLookup() throws KeySourceException {
+        JwtVerificationException actual = Assert.expectThrows(JwtVerificationException.class,
+            () -> tokenFilter.check(header(JWSAlgorithm.RS256, "unknown"), claims(-1, null)));
+
+        Assert.assertEquals(actual.getMessage(), "JWT has expired");
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.EXPIRATION), 1);
+        Mockito.verify(verifierRegistry, Mockito.never()).get(Mockito.any());
+    }
+
+    @Test
+    public void testTokenWithoutExpirationIsRejected() {
+        Assert.expectThrows(JwtVerificationException.class,
+            () -> tokenFilter.check(header(JWSAlgorithm.RS256, "keyId"), new Claims()));
+
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.EXPIRATION), 1);
+    }
+
+    @Test
+    public void testTokenNotValidYetIsRejected() {
+        JwtVerificationException actual = Assert.expectThrows(JwtVerificationException.class,
+            () -> tokenFilter.check(header(JWSAlgorithm.RS256, "keyId"), claims(120, 60)));
+
+        Assert.assertEquals(actual.getMessage(), "JWT isn't valid yet");
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.NOT_BEFORE), 1);
+    }
+
+    @Test
+    public void testUnknownKeyIsRejected() {
+        Assert.expectThrows(JwtVerificationException.class,
+            () -> tokenFilter.check(header(JWSAlgorithm.RS256, "unknown"), claims(60, null)));
+        Assert.expectThrows(JwtVerificationException.class,
+            () -> tokenFilter.check(header(JWSAlgorithm.RS256, null), claims(60, null)));
+
+        Assert.assertEquals(tokenFilter.getRejectionCount(TokenFilter.Stage.KEY_ID), 2);
+    }
+
+    private static CompactJws.Header header(JWSAlgorithm algorithm, String keyId) {
+        return new CompactJws.Header(algorithm, keyId, false);
+    }
+
+    private static Claims claims(int expiresIn, Integer validIn) {
+        Claims claims = new Claims();
+        claims.setExpiredAt(ZonedDateTime.ofInstant(NOW.plusSeconds(expiresIn), ZoneId.of("UTC")));
+        if (validIn != null) {
+            claims.setNotBefore(ZonedDateTime.ofInstant(NOW.plusSeconds(validIn), ZoneId.of("UTC")));
+        }
+
+        return claims;
+    }
+
+}
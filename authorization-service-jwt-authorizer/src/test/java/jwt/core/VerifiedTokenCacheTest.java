@@ -0,0 +1,85 @@
+package jwt.core;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.TokenDigest;
+import authorization.jwt.core.VerifiedTokenCache;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+public class VerifiedTokenCacheTest {
+
+    private static final Instant NOW = Instant.parse("2009-02-13T23:31:30Z");
+
+    private VerifiedTokenCache cache;
+
+    @BeforeMethod
+    public void setUp() {
+        cache = new VerifiedTokenCache(2, Clock.fixed(NOW, ZoneId.of("UTC")));
+    }
+
+    @Test
+    public void testGet() {
+        Claims claims = makeClaims(60);
+        cache.put(TokenDigest.of("foo"), claims);
+
+        Claims actual = cache.get(TokenDigest.of("foo"));
+
+        Assert.assertEquals(actual, claims);
+        Assert.assertNotSame(actual, claims);
+        Assert.assertNull(cache.get(TokenDigest.of("bar")));
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Assert.assertEquals(cache.getHitRatio(), 0.5);
+    }
+
+    @Test
+    public void testExpiredEntry() {
+        VerifiedTokenCache cache = new VerifiedTokenCache(2, Clock.fixed(NOW.plusSeconds(61), ZoneId.of("UTC")));
+        cache.put(TokenDigest.of("foo"), makeClaims(60));
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testIgnoreAlreadyExpiredClaims() {
+        cache.put(TokenDigest.of("foo"), makeClaims(-1));
+
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    @Test
+    public void testMaximumSize() {
+        cache.put(TokenDigest.of("foo"), makeClaims(60));
+        cache.put(TokenDigest.of("bar"), makeClaims(60));
+        cache.put(TokenDigest.of("baz"), makeClaims(60));
+
+        Assert.assertEquals(cache.size(), 2);
+        Assert.assertEquals(cache.getEvictionCount(), 1);
+        Assert.assertNotNull(cache.get(TokenDigest.of("baz")));
+    }
+
+    @Test
+    public void testInvalidateAll() {
+        cache.put(TokenDigest.of("foo"), makeClaims(60));
+
+        cache.invalidateAll();
+
+        Assert.assertNull(cache.get(TokenDigest.of("foo")));
+        Assert.assertEquals(cache.size(), 0);
+    }
+
+    private static Claims makeClaims(int expiresIn) {
+        Claims claims = new Claims();
+        claims.setUsername("foo");
+        claims.setExpiredAt(ZonedDateTime.ofInstant(NOW.plusSeconds(expiresIn), ZoneId.of("UTC")));
+        return claims;
+    }
+
+}
@@ -0,0 +1,162 @@
+package jwt.core;
+
+import authorization.jwt.core.PooledRSAVerifier;
+import authorization.jwt.core.VerifierRegistry;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+
+public class VerifierRegistryTest {
+
+    private static final long NOW = 1234567890000L;
+
+    private KeyPair keyPair;
+    private RSAKey publicKey;
+    private JWKSource<SecurityContext> jwkSource;
+    private VerifierRegistry registry;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        keyPair = generateKeyPair();
+        publicKey = RSAKey(keyPair, "keyId");
+        jwkSource = Mockito.spy(new ImmutableJWKSet<>(new JWKSet(publicKey)));
+        registry = new VerifierRegistry(jwkSource);
+    }
+
+    @Test
+    public void testGet() throws Exception {
+        PooledRSAVerifier first = registry.get("keyId");
+        PooledRSAVerifier second = registry.get("keyId");
+
+        Assert.assertNotNull(first);
+        Assert.assertSame(second, first);
+        Assert.assertTrue(registry.contains("keyId"));
+        Mockito.verify(jwkSource, Mockito.times(1)).get(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testGetUnknownKey() throws Exception {
+        Assert.assertNull(registry.get("foo"));
+        Assert.assertFalse(registry.contains("foo"));
+    }
+
+    @Test
+    public void testVerify() throws Exception {
+        byte[] signingInput = "header.payload".getBytes(StandardCharsets.US_ASCII);
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(signingInput);
+        byte[] signature = signer.sign();
+
+        PooledRSAVerifier verifier = registry.get("keyId");
+
+        Assert.assertTrue(verifier.verify(JWSAlgorithm.RS256, signingInput, signature));
+        Assert.assertFalse(verifier.verify(JWSAlgorithm.RS256, "header.foo".getBytes(StandardCharsets.US_ASCII), signature));
+        Assert.assertFalse(verifier.verify(JWSAlgorithm.RS256, signingInput, Arrays.copyOf(signature, 8)));
+    }
+
+    @Test
+    public void testUpdateKeepsUnchangedVerifier() throws Exception {
+        PooledRSAVerifier expected = registry.get("keyId");
+
+        registry.update(Collections.singletonList(RSAKey(keyPair, "keyId")));
+
+        Assert.assertSame(registry.get("keyId"), expected);
+    }
+
+    @Test
+    public void testUpdateRebuildsRotatedKey() throws Exception {
+        PooledRSAVerifier previous = registry.get("keyId");
+        RSAKey rotated = RSAKey(generateKeyPair(), "keyId");
+
+        registry.update(Arrays.asList(rotated, RSAKey(generateKeyPair(), "bar")));
+
+        Assert.assertNotSame(registry.get("keyId"), previous);
+        Assert.assertTrue(registry.get("keyId").hasSameKey(rotated));
+        Assert.assertEquals(registry.size(), 2);
+    }
+
+    @Test
+    public void testUpdateDropsRemovedKey() throws Exception {
+        registry.get("keyId");
+
+        registry.update(Collections.singletonList(RSAKey(generateKeyPair(), "bar")));
+
+        Assert.assertFalse(registry.contains("keyId"));
+        Assert.assertTrue(registry.contains("bar"));
+    }
+
+    @Test
+    public void testUpdateReportsWithdrawnKeys() throws Exception {
+        RSAKey bar = RSAKey(generateKeyPair(), "bar");
+        registry.get("keyId");
+
+        Assert.assertFalse(registry.update(Arrays.asList(publicKey, bar)));
+        Assert.assertFalse(registry.update(Arrays.asList(publicKey, bar, RSAKey(generateKeyPair(), "baz"))));
+        // Withdrawn even though no token signed with it was verified yet
+        Assert.assertTrue(registry.update(Collections.singletonList(publicKey)));
+        Assert.assertTrue(registry.update(Collections.singletonList(RSAKey(generateKeyPair(), "keyId"))));
+    }
+
+    @Test
+    public void testVerifierExpiresWithoutUpdate() throws Exception {
+        Clock clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(NOW);
+        JWKSource<SecurityContext> jwkSource = Mockito.mock(JWKSource.class);
+        Mockito.when(jwkSource.get(Mockito.any(), Mockito.any()))
+            .thenReturn(Collections.singletonList(publicKey), Collections.emptyList());
+        VerifierRegistry registry = new VerifierRegistry(jwkSource, 60_000L, clock);
+        PooledRSAVerifier verifier = registry.get("keyId");
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 59_999L);
+        Assert.assertSame(registry.get("keyId"), verifier);
+
+        // The key has since been dropped from the key set
+        Mockito.when(clock.millis()).thenReturn(NOW + 60_000L);
+        Assert.assertFalse(registry.contains("keyId"));
+        Assert.assertNull(registry.get("keyId"));
+        Assert.assertEquals(registry.size(), 0);
+        Mockito.verify(jwkSource, Mockito.times(2)).get(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void testExpiredVerifierIsReusedForSameKey() throws Exception {
+        Clock clock = Mockito.mock(Clock.class);
+        Mockito.when(clock.millis()).thenReturn(NOW);
+        VerifierRegistry registry = new VerifierRegistry(jwkSource, 60_000L, clock);
+        PooledRSAVerifier verifier = registry.get("keyId");
+
+        Mockito.when(clock.millis()).thenReturn(NOW + 60_000L);
+
+        Assert.assertSame(registry.get("keyId"), verifier);
+        Mockito.verify(jwkSource, Mockito.times(2)).get(Mockito.any(), Mockito.any());
+    }
+
+    private static KeyPair generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        return generator.generateKeyPair();
+    }
+
+    private static RSAKey RSAKey(KeyPair keyPair, String kid) {
+        return new RSAKey((RSAPublicKey) keyPair.getPublic(), KeyUse.SIGNATURE, null, null, kid, null, null, null);
+    }
+
+}
@@ -22,17 +22,19 @@ public class FactoryTest {
     }
 
     @Test
-    public void testCreateJsonWebToken() {
-        Jwt actual = factory.createJsonWebToken();
+    public void testGetJsonWebToken() {
+        Jwt actual = factory.getJsonWebToken();
 
         Assert.assertNotNull(actual);
+        Assert.assertSame(factory.getJsonWebToken(), actual);
     }
 
     @Test
-    public void testCreateRolePolicyRepository() {
-        PolicyRepository actual = factory.createRolePolicyRepository();
+    public void testGetRolePolicyRepository() {
+        PolicyRepository actual = factory.getRolePolicyRepository();
 
         Assert.assertNotNull(actual);
+        Assert.assertSame(factory.getRolePolicyRepository(), actual);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,173 @@
+package jwt.infrastructure.azure.ad;
+
+import authorization.jwt.infrastructure.azure.ad.RefreshingJWKSource;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.KeyUse;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.util.DefaultResourceRetriever;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class RefreshingJWKSourceTest {
+
+    private HttpServer server;
+    private AtomicInteger requests;
+    private AtomicReference<JWKSet> published;
+    private ScheduledExecutorService scheduler;
+    private URL jwkSetUrl;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        requests = new AtomicInteger();
+        published = new AtomicReference<>(new JWKSet(RSAKey("foo")));
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/discovery/v2.0/keys", exchange -> {
+            requests.incrementAndGet();
+            byte[] body = published.get().toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        jwkSetUrl = new URL("http://localhost:" + server.getAddress().getPort() + "/discovery/v2.0/keys");
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        scheduler.shutdownNow();
+        server.stop(0);
+    }
+
+    @Test
+    public void testGetKnownKeyWithoutFetch() throws Exception {
+        RefreshingJWKSource source = makeSource(60_000, 60_000);
+        source.refresh();
+
+        List<JWK> actual = source.get(selector("foo"), null);
+
+        Assert.assertEquals(actual.size(), 1);
+        Assert.assertEquals(requests.get(), 1);
+    }
+
+    @Test
+    public void testConcurrentUnknownKeyMissesShareOneFetch() throws Exception {
+        RefreshingJWKSource source = makeSource(60_000, 60_000);
+        published.set(new JWKSet(RSAKey("bar")));
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<JWK>>> results = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                start.await();
+                return source.get(selector("bar"), null);
+            }));
+        }
+
+        start.countDown();
+        for (Future<List<JWK>> result : results) {
+            Assert.assertEquals(result.get(5, TimeUnit.SECONDS).size(), 1);
+        }
+
+        executor.shutdown();
+        Assert.assertEquals(requests.get(), 1);
+        Assert.assertEquals(source.getJWKSet().getKeyByKeyId("bar").getKeyID(), "bar");
+    }
+
+    @Test
+    public void testUnknownKeyFetchIsRateLimited() throws Exception {
+        RefreshingJWKSource source = makeSource(60_000, 60_000);
+        source.refresh();
+        published.set(new JWKSet(RSAKey("bar")));
+
+        List<JWK> actual = source.get(selector("bar"), null);
+
+        Assert.assertTrue(actual.isEmpty());
+        Assert.assertEquals(requests.get(), 1);
+    }
+
+    @Test
+    public void testBackgroundRefreshNotifiesListeners() throws Exception {
+        RefreshingJWKSource source = makeSource(50, 60_000);
+        CountDownLatch refreshed = new CountDownLatch(2);
+        source.addListener(jwkSet -> refreshed.countDown());
+
+        source.start();
+
+        Assert.assertTrue(refreshed.await(5, TimeUnit.SECONDS));
+        Assert.assertEquals(source.get(selector("foo"), null).size(), 1);
+    }
+
+    @Test
+    public void testUnknownKeyIsFetchedOnScheduler() throws Exception {
+        RefreshingJWKSource source = makeSource(60_000, 60_000);
+        published.set(new JWKSet(RSAKey("bar")));
+        AtomicReference<Thread> fetchingThread = new AtomicReference<>();
+        source.addListener(jwkSet -> fetchingThread.set(Thread.currentThread()));
+
+        List<JWK> actual = source.get(selector("bar"), null);
+
+        Assert.assertEquals(actual.size(), 1);
+        Assert.assertNotNull(fetchingThread.get());
+        Assert.assertNotSame(fetchingThread.get(), Thread.currentThread());
+    }
+
+    @Test
+    public void testFailingListenerDoesntStopOthers() throws Exception {
+        RefreshingJWKSource source = makeSource(60_000, 60_000);
+        AtomicInteger notified = new AtomicInteger();
+        source.addListener(jwkSet -> {
+            throw new IllegalStateException("listener failed");
+        });
+        source.addListener(jwkSet -> notified.incrementAndGet());
+
+        JWKSet actual = source.refresh();
+
+        Assert.assertEquals(notified.get(), 1);
+        Assert.assertSame(source.getJWKSet(), actual);
+    }
+
+    private RefreshingJWKSource makeSource(long refreshIntervalMillis, long minFetchIntervalMillis) {
+        return new RefreshingJWKSource(jwkSetUrl, new DefaultResourceRetriever(1000, 1000),
+            scheduler, refreshIntervalMillis, minFetchIntervalMillis);
+    }
+
+    private static JWKSelector selector(String kid) {
+        return new JWKSelector(new JWKMatcher.Builder().keyID(kid).publicOnly(true).build());
+    }
+
+    private static RSAKey RSAKey(String kid) throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(1024);
+        return new RSAKey((RSAPublicKey) generator.generateKeyPair().getPublic(),
+            KeyUse.SIGNATURE, null, null, kid, null, null, null);
+    }
+
+}
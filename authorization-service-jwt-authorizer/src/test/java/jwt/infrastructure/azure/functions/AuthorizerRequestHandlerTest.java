@@ -1,14 +1,20 @@
 package jwt.infrastructure.azure.functions;
 
 import authorization.jwt.core.Claims;
+import authorization.jwt.core.DecisionCache;
 import authorization.jwt.core.Jwt;
 import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.PermissionIndex;
 import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.core.ScopeIndex;
+import authorization.jwt.core.StageLatencies;
 import authorization.jwt.infrastructure.azure.Factory;
 import shared.infrastructure.azure.gateway.AuthorizerRequest;
 import authorization.jwt.infrastructure.azure.functions.AuthorizerRequestHandler;
 import com.azure.resourcemanager.authorization.models.Permission;
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.microsoft.azure.functions.*;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -18,7 +24,10 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 import shared.infrastructure.azure.gateway.MockHttpRequestMessage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 public class AuthorizerRequestHandlerTest {
 
@@ -32,13 +41,19 @@ public class AuthorizerRequestHandlerTest {
     @Mock
     private ExecutionContext mockContext;
 
+    private StageLatencies stageLatencies;
     private AuthorizerRequestHandler handler;
 
     @BeforeMethod
     public void setUp() {
         MockitoAnnotations.initMocks(this);
-        Mockito.when(mockFactory.createJsonWebToken()).thenReturn(mockJwt);
-        Mockito.when(mockFactory.createRolePolicyRepository()).thenReturn(mockPolicyRepository);
+        stageLatencies = new StageLatencies();
+        Mockito.when(mockFactory.getJsonWebToken()).thenReturn(mockJwt);
+        Mockito.when(mockFactory.getRolePolicyRepository()).thenReturn(mockPolicyRepository);
+        Mockito.when(mockFactory.getPermissionIndex()).thenReturn(new PermissionIndex());
+        Mockito.when(mockFactory.getScopeIndex()).thenReturn(new ScopeIndex());
+        Mockito.when(mockFactory.getStageLatencies()).thenReturn(stageLatencies);
+        Mockito.when(mockFactory.getDecisionCache()).thenReturn(new DecisionCache<>(100, 60_000));
         handler = new AuthorizerRequestHandler(mockFactory);
     }
 
@@ -54,7 +69,8 @@ public class AuthorizerRequestHandlerTest {
         Assert.assertNotNull(response);
         Assert.assertEquals(response.getStatus(), HttpStatus.UNAUTHORIZED);
         Mockito.verify(mockJwt).verify(request.getAuthorizationToken());
-        Mockito.verify(mockPolicyRepository, Mockito.never()).getRoleDefinitions(Mockito.any());
+        Mockito.verify(mockPolicyRepository, Mockito.never()).getRoleDefinitionsAsync(Mockito.any());
+        Assert.assertEquals(stageLatencies.get(StageLatencies.Stage.TOTAL).snapshot().getCount(), 1);
     }
 
     @Test
@@ -63,8 +79,8 @@ public class AuthorizerRequestHandlerTest {
         Claims claims = makeClaims();
         Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(claims);
         RoleDefinition roleDefinition = makeRoleDefinition();
-        Mockito.when(mockPolicyRepository.getRoleDefinitions(claims))
-                .thenReturn(Collections.singletonList(roleDefinition));
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList(roleDefinition)));
 
         HttpRequestMessage<Optional<AuthorizerRequest>> httpRequest = new MockHttpRequestMessage(request);
 
@@ -72,15 +88,162 @@ public class AuthorizerRequestHandlerTest {
 
         Assert.assertNotNull(response);
         Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        Assert.assertEquals(stageLatencies.get(StageLatencies.Stage.ROLE_LOOKUP).snapshot().getCount(), 1);
+        Assert.assertEquals(stageLatencies.get(StageLatencies.Stage.POLICY_EVALUATION).snapshot().getCount(), 1);
+        Assert.assertEquals(stageLatencies.get(StageLatencies.Stage.RESPONSE).snapshot().getCount(), 1);
+        Assert.assertEquals(stageLatencies.get(StageLatencies.Stage.TOTAL).snapshot().getCount(), 1);
+        Assert.assertEquals(response.getHeader("Content-Type"), "application/json");
+    }
+
+    @Test
+    public void testResponseBodyIsEncodedJson() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        request.setMethodArn("Microsoft.Web/sites/functions/invoke");
+        Claims claims = makeClaims();
+        Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(claims);
+        RoleDefinition roleDefinition = makeRoleDefinition();
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList(roleDefinition)));
+
+        HttpResponseMessage response = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+
+        // Only the documented fields are written, never the Role Definitions behind them
+        Assert.assertTrue(response.getBody() instanceof String);
+        JsonNode body = readBody(response);
+        List<String> fields = new ArrayList<>();
+        body.fieldNames().forEachRemaining(fields::add);
+        Assert.assertEquals(fields, Arrays.asList("principalId", "policyDocument", "context"));
+        Assert.assertEquals(body.get("principalId").asText(), "foo");
+        JsonNode policyDocument = body.get("policyDocument");
+        Assert.assertEquals(policyDocument.get("roleName").asText(), "customRole");
+        Assert.assertEquals(policyDocument.get("assignableScopes").get(0).asText(),
+                "/subscriptions/123456/resourceGroups/myResourceGroup");
+        Assert.assertEquals(policyDocument.get("permissions").get(0).get("actions").get(0).asText(),
+                "Microsoft.Web/sites/*/invoke");
+        Assert.assertEquals(body.get("context").get("effect").asText(), "Allow");
+    }
+
+    @Test
+    public void testHandleRequestWithSeveralRoles() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        request.setMethodArn("/subscriptions/654321/resourceGroups/foo/providers/Microsoft.Web/sites/write");
+        Claims claims = makeClaims();
+        Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(claims);
+        List<RoleDefinition> roleDefinitions = Arrays.asList(
+                makeRoleDefinition(), makeRoleDefinition("writer", "Microsoft.Web/sites/write"));
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage response = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        JsonNode body = readBody(response);
+        Assert.assertEquals(body.get("policyDocument").get("roleName").asText(), "customRole,writer");
+        Assert.assertEquals(body.get("context").get("effect").asText(), "Allow");
+    }
+
+    @Test
+    public void testHandleRequestDeniedByNotAction() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        request.setMethodArn("Microsoft.Web/sites/restrictedAction");
+        Claims claims = makeClaims();
+        Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(claims);
+        // The notAction only takes away from the actions next to it
+        List<RoleDefinition> roleDefinitions = Arrays.asList(makeRoleDefinition(),
+                makeRoleDefinition("writer", "Microsoft.Web/sites/*", "Microsoft.Web/sites/restrictedAction"));
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage response = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        Assert.assertEquals(readBody(response).get("context").get("effect").asText(), "Deny");
+    }
+
+    @Test
+    public void testRoleNotAssignableAtResourceIsIgnored() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        request.setMethodArn("/subscriptions/123456/resourceGroups/foo/providers/Microsoft.Web/sites/write");
+        Claims claims = makeClaims();
+        Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(claims);
+        RoleDefinition writer = makeRoleDefinition("writer", "Microsoft.Web/sites/write");
+        Mockito.when(writer.id()).thenReturn("/providers/Microsoft.Authorization/roleDefinitions/writer");
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(Collections.singletonList(writer)));
+
+        HttpResponseMessage response = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
 
-        // Verify response content if needed (deserialize JSON if complex)
+        Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        JsonNode body = readBody(response);
+        Assert.assertEquals(body.get("policyDocument").get("roleName").asText(), "writer");
+        Assert.assertEquals(body.get("context").get("effect").asText(), "Deny");
+    }
+
+    @Test
+    public void testRepeatedRequestUsesCachedDecision() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        Claims claims = makeClaims();
+        Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(claims);
+        Mockito.when(mockPolicyRepository.getRoleIds(claims)).thenReturn(Collections.singletonList("roleId"));
+        List<RoleDefinition> roleDefinitions = Collections.singletonList(makeRoleDefinition());
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage first = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+        HttpResponseMessage second = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+
+        Assert.assertEquals(second.getStatus(), HttpStatus.OK);
+        Assert.assertEquals(second.getBody(), first.getBody());
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinitionsAsync(claims);
+    }
+
+    @Test
+    public void testHandleRequestWithRolePrefetch() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        request.setMethodArn("Microsoft.Web/sites/functions/invoke");
+        Claims claims = makeClaims();
+        Mockito.when(mockFactory.isRolePrefetchEnabled()).thenReturn(true);
+        Mockito.when(mockJwt.peek("jwt")).thenReturn(makeClaims());
+        Mockito.when(mockJwt.verify("jwt")).thenReturn(claims);
+        List<RoleDefinition> roleDefinitions = Collections.singletonList(makeRoleDefinition());
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(claims))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage response = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        Assert.assertEquals(readBody(response).get("context").get("effect").asText(), "Allow");
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinitionsAsync(Mockito.any());
+    }
+
+    @Test
+    public void testCachedDecisionSkipsRolePrefetch() {
+        AuthorizerRequest request = makeAuthorizerRequest();
+        request.setMethodArn("Microsoft.Web/sites/functions/invoke");
+        Claims claims = makeClaims();
+        Mockito.when(mockFactory.isRolePrefetchEnabled()).thenReturn(true);
+        Mockito.when(mockJwt.peek("jwt")).thenReturn(makeClaims());
+        Mockito.when(mockJwt.verify("jwt")).thenReturn(claims);
+        Mockito.when(mockPolicyRepository.getRoleIds(Mockito.any())).thenReturn(Collections.singletonList("roleId"));
+        List<RoleDefinition> roleDefinitions = Collections.singletonList(makeRoleDefinition());
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage first = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+        HttpResponseMessage second = handler.handleRequest(new MockHttpRequestMessage(request), mockContext);
+
+        Assert.assertEquals(second.getStatus(), HttpStatus.OK);
+        Assert.assertEquals(second.getBody(), first.getBody());
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinitionsAsync(Mockito.any());
     }
 
     @Test
     public void testInternalServerError() {
         AuthorizerRequest request = makeAuthorizerRequest();
         Mockito.when(mockJwt.verify(Mockito.anyString())).thenReturn(makeClaims());
-        Mockito.when(mockPolicyRepository.getRoleDefinitions(Mockito.any())).thenThrow(RuntimeException.class);
+        CompletableFuture<List<RoleDefinition>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException());
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(Mockito.any())).thenReturn(failed);
 
         HttpRequestMessage<Optional<AuthorizerRequest>> httpRequest = new MockHttpRequestMessage(request);
 
@@ -89,6 +252,14 @@ public class AuthorizerRequestHandlerTest {
         Assert.assertEquals(responseMessage.getStatus(), HttpStatus.INTERNAL_SERVER_ERROR);
     }
 
+    private static JsonNode readBody(HttpResponseMessage response) {
+        try {
+            return new ObjectMapper().readTree((String) response.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
     private static AuthorizerRequest makeAuthorizerRequest() {
         AuthorizerRequest request = new AuthorizerRequest();
         request.setType("token");
@@ -120,4 +291,18 @@ public class AuthorizerRequestHandlerTest {
         return roleDefinition;
     }
 
+    private static RoleDefinition makeRoleDefinition(String roleName, String action, String... notActions) {
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Permission permission = Mockito.mock(Permission.class);
+
+        Mockito.when(permission.actions()).thenReturn(Collections.singletonList(action));
+        Mockito.when(permission.notActions()).thenReturn(Arrays.asList(notActions));
+
+        Mockito.when(roleDefinition.roleName()).thenReturn(roleName);
+        Mockito.when(roleDefinition.permissions()).thenReturn(Collections.singleton(permission));
+        Mockito.when(roleDefinition.assignableScopes()).thenReturn(Collections.singleton("/subscriptions/654321"));
+
+        return roleDefinition;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,217 @@
+package jwt.infrastructure.azure.functions;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.DecisionCache;
+import authorization.jwt.core.Jwt;
+import authorization.jwt.core.JwtVerificationException;
+import authorization.jwt.core.PermissionIndex;
+import authorization.jwt.core.PolicyRepository;
+import authorization.jwt.core.ScopeIndex;
+import authorization.jwt.core.StageLatencies;
+import authorization.jwt.infrastructure.azure.Factory;
+import authorization.jwt.infrastructure.azure.functions.BatchAuthorizerRequestHandler;
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.microsoft.azure.functions.*;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import shared.infrastructure.azure.gateway.AuthorizerRequest;
+import shared.infrastructure.azure.gateway.DefaultHttpResponseMessageBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class BatchAuthorizerRequestHandlerTest {
+
+    @Mock
+    private Factory mockFactory;
+    @Mock
+    private Jwt mockJwt;
+    @Mock
+    private PolicyRepository mockPolicyRepository;
+    @Mock
+    private ExecutionContext mockContext;
+
+    private ExecutorService executor;
+    private BatchAuthorizerRequestHandler handler;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        executor = Executors.newFixedThreadPool(4);
+        Mockito.when(mockFactory.getJsonWebToken()).thenReturn(mockJwt);
+        Mockito.when(mockFactory.getRolePolicyRepository()).thenReturn(mockPolicyRepository);
+        Mockito.when(mockFactory.getPermissionIndex()).thenReturn(new PermissionIndex());
+        Mockito.when(mockFactory.getScopeIndex()).thenReturn(new ScopeIndex());
+        Mockito.when(mockFactory.getStageLatencies()).thenReturn(new StageLatencies());
+        Mockito.when(mockFactory.getDecisionCache()).thenReturn(new DecisionCache<>(100, 60_000));
+        Mockito.when(mockFactory.getBatchMaximumSize()).thenReturn(10);
+        Mockito.when(mockFactory.getBatchVerificationExecutor()).thenReturn(executor);
+        handler = new BatchAuthorizerRequestHandler(mockFactory);
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testHandleBatch() {
+        Claims foo = makeClaims("foo");
+        Claims bar = makeClaims("bar");
+        Mockito.when(mockJwt.verify("foo-jwt")).thenReturn(foo);
+        Mockito.when(mockJwt.verify("bar-jwt")).thenReturn(bar);
+        Mockito.when(mockJwt.verify("bad-jwt")).thenThrow(new JwtVerificationException("Invalid signature"));
+        Mockito.when(mockPolicyRepository.getRoleIds(Mockito.any())).thenReturn(Collections.singletonList("roleId"));
+        List<RoleDefinition> roleDefinitions = Collections.singletonList(makeRoleDefinition());
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(Mockito.any()))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(Arrays.asList(
+                makeAuthorizerRequest("foo-jwt", "Microsoft.Web/sites/functions/invoke"),
+                makeAuthorizerRequest("bad-jwt", "Microsoft.Web/sites/functions/invoke"),
+                makeAuthorizerRequest("bar-jwt", "Microsoft.Web/sites/delete"))), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        JsonNode results = readBody(response);
+        Assert.assertEquals(results.size(), 3);
+        Assert.assertEquals(results.get(0).get("status").asInt(), 200);
+        Assert.assertEquals(results.get(0).get("response").get("principalId").asText(), "foo");
+        Assert.assertEquals(results.get(0).get("response").get("context").get("effect").asText(), "Allow");
+        Assert.assertEquals(results.get(1).get("status").asInt(), 401);
+        Assert.assertTrue(results.get(1).get("response").isNull());
+        Assert.assertEquals(results.get(2).get("response").get("principalId").asText(), "bar");
+        Assert.assertEquals(results.get(2).get("response").get("context").get("effect").asText(), "Deny");
+        // Both verified items hold the same roles, so they share one lookup
+        Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinitionsAsync(Mockito.any());
+    }
+
+    @Test
+    public void testRoleLookupFailureOnlyFailsAffectedItems() {
+        Claims foo = makeClaims("foo");
+        Claims bar = makeClaims("bar");
+        Mockito.when(mockJwt.verify("foo-jwt")).thenReturn(foo);
+        Mockito.when(mockJwt.verify("bar-jwt")).thenReturn(bar);
+        Mockito.when(mockPolicyRepository.getRoleIds(foo)).thenReturn(Collections.singletonList("foo-role"));
+        Mockito.when(mockPolicyRepository.getRoleIds(bar)).thenReturn(Collections.singletonList("bar-role"));
+        CompletableFuture<List<RoleDefinition>> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new RuntimeException());
+        List<RoleDefinition> roleDefinitions = Collections.singletonList(makeRoleDefinition());
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(foo)).thenReturn(failed);
+        Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(bar))
+                .thenReturn(CompletableFuture.completedFuture(roleDefinitions));
+
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(Arrays.asList(
+                makeAuthorizerRequest("foo-jwt", "Microsoft.Web/sites/functions/invoke"),
+                makeAuthorizerRequest("bar-jwt", "Microsoft.Web/sites/functions/invoke"))), mockContext);
+
+        JsonNode results = readBody(response);
+        Assert.assertEquals(results.get(0).get("status").asInt(), 500);
+        Assert.assertEquals(results.get(1).get("status").asInt(), 200);
+    }
+
+    @Test(timeOut = 10_000)
+    public void testItemsDontWaitOnPoolThreadsForSharedLookup() {
+        // A single pool thread, which the role lookup needs as well
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            Mockito.when(mockFactory.getBatchVerificationExecutor()).thenReturn(single);
+            Mockito.when(mockJwt.verify("foo-jwt")).thenReturn(makeClaims("foo"));
+            Mockito.when(mockJwt.verify("bar-jwt")).thenReturn(makeClaims("bar"));
+            Mockito.when(mockPolicyRepository.getRoleIds(Mockito.any())).thenReturn(Collections.singletonList("roleId"));
+            List<RoleDefinition> roleDefinitions = Collections.singletonList(makeRoleDefinition());
+            Mockito.when(mockPolicyRepository.getRoleDefinitionsAsync(Mockito.any()))
+                    .thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> roleDefinitions, single));
+
+            HttpResponseMessage response = handler.handleRequest(makeHttpRequest(Arrays.asList(
+                    makeAuthorizerRequest("foo-jwt", "Microsoft.Web/sites/functions/invoke"),
+                    makeAuthorizerRequest("bar-jwt", "Microsoft.Web/sites/functions/invoke"))), mockContext);
+
+            JsonNode results = readBody(response);
+            Assert.assertEquals(results.get(0).get("status").asInt(), 200);
+            Assert.assertEquals(results.get(1).get("status").asInt(), 200);
+            Mockito.verify(mockPolicyRepository, Mockito.times(1)).getRoleDefinitionsAsync(Mockito.any());
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOversizedBatch() {
+        List<AuthorizerRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 11; i++) {
+            requests.add(makeAuthorizerRequest("jwt", "api-gateway-arn"));
+        }
+
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(requests), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.BAD_REQUEST);
+        Mockito.verify(mockJwt, Mockito.never()).verify(Mockito.anyString());
+    }
+
+    @Test
+    public void testMissingBatch() {
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(null), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.BAD_REQUEST);
+    }
+
+    private static JsonNode readBody(HttpResponseMessage response) {
+        try {
+            return new ObjectMapper().readTree((String) response.getBody());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpRequestMessage<Optional<List<AuthorizerRequest>>> makeHttpRequest(
+            List<AuthorizerRequest> requests) {
+        HttpRequestMessage<Optional<List<AuthorizerRequest>>> httpRequest = Mockito.mock(HttpRequestMessage.class);
+        Mockito.when(httpRequest.getBody()).thenReturn(Optional.ofNullable(requests));
+        Mockito.when(httpRequest.createResponseBuilder(Mockito.any(HttpStatus.class)))
+                .thenAnswer(invocation -> new DefaultHttpResponseMessageBuilder(invocation.getArgument(0)));
+        return httpRequest;
+    }
+
+    private static AuthorizerRequest makeAuthorizerRequest(String token, String methodArn) {
+        AuthorizerRequest request = new AuthorizerRequest();
+        request.setType("token");
+        request.setMethodArn(methodArn);
+        request.setAuthorizationToken(token);
+        return request;
+    }
+
+    private static Claims makeClaims(String username) {
+        Claims claims = new Claims();
+        claims.setRoles(Collections.singletonList("roleId"));
+        claims.setUsername(username);
+        return claims;
+    }
+
+    private static RoleDefinition makeRoleDefinition() {
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Permission permission = Mockito.mock(Permission.class);
+
+        Mockito.when(permission.actions()).thenReturn(Collections.singletonList("Microsoft.Web/sites/*/invoke"));
+        Mockito.when(permission.notActions()).thenReturn(Collections.emptyList());
+
+        Mockito.when(roleDefinition.roleName()).thenReturn("customRole");
+        Mockito.when(roleDefinition.permissions()).thenReturn(Collections.singleton(permission));
+        Mockito.when(roleDefinition.assignableScopes()).thenReturn(Collections.singleton("/subscriptions/654321"));
+
+        return roleDefinition;
+    }
+
+}
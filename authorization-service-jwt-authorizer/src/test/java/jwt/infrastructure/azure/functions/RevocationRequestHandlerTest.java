@@ -0,0 +1,88 @@
+package jwt.infrastructure.azure.functions;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.core.RevocationStore;
+import authorization.jwt.infrastructure.azure.Factory;
+import authorization.jwt.infrastructure.azure.functions.RevocationRequest;
+import authorization.jwt.infrastructure.azure.functions.RevocationRequestHandler;
+import com.microsoft.azure.functions.*;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import shared.infrastructure.azure.gateway.DefaultHttpResponseMessageBuilder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+public class RevocationRequestHandlerTest {
+
+    @Mock
+    private Factory mockFactory;
+    @Mock
+    private ExecutionContext mockContext;
+
+    private RevocationStore revocationStore;
+    private RevocationRequestHandler handler;
+
+    @BeforeMethod
+    public void setUp() {
+        MockitoAnnotations.initMocks(this);
+        revocationStore = new RevocationStore(2);
+        Mockito.when(mockFactory.getRevocationStore()).thenReturn(revocationStore);
+        handler = new RevocationRequestHandler(mockFactory);
+    }
+
+    @Test
+    public void testRevoke() {
+        RevocationRequest request = new RevocationRequest();
+        request.setTokenIds(Collections.singletonList("token-1"));
+        request.setUsernames(Collections.singletonList("mallory"));
+
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(request), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.OK);
+        Assert.assertEquals(response.getHeader("Content-Type"), "application/json");
+        Assert.assertEquals(response.getBody(), "{\"size\":2}");
+        Assert.assertTrue(revocationStore.isRevoked(claims("alice", "token-1")));
+        Assert.assertTrue(revocationStore.isRevoked(claims("mallory", null)));
+    }
+
+    @Test
+    public void testRevokeBeyondMaximumSize() {
+        RevocationRequest request = new RevocationRequest();
+        request.setTokenIds(Arrays.asList("token-1", "token-2", "token-3"));
+
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(request), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.BAD_REQUEST);
+        Assert.assertEquals(revocationStore.size(), 0);
+    }
+
+    @Test
+    public void testMissingRequest() {
+        HttpResponseMessage response = handler.handleRequest(makeHttpRequest(null), mockContext);
+
+        Assert.assertEquals(response.getStatus(), HttpStatus.BAD_REQUEST);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static HttpRequestMessage<Optional<RevocationRequest>> makeHttpRequest(RevocationRequest request) {
+        HttpRequestMessage<Optional<RevocationRequest>> httpRequest = Mockito.mock(HttpRequestMessage.class);
+        Mockito.when(httpRequest.getBody()).thenReturn(Optional.ofNullable(request));
+        Mockito.when(httpRequest.createResponseBuilder(Mockito.any(HttpStatus.class)))
+                .thenAnswer(invocation -> new DefaultHttpResponseMessageBuilder(invocation.getArgument(0)));
+        return httpRequest;
+    }
+
+    private static Claims claims(String username, String tokenId) {
+        Claims claims = new Claims();
+        claims.setUsername(username);
+        claims.setTokenId(tokenId);
+        return claims;
+    }
+
+}
@@ -0,0 +1,145 @@
+package jwt.infrastructure.azure.rbac;
+
+import authorization.jwt.infrastructure.azure.rbac.AzureResourceManagerWrapper;
+import authorization.jwt.infrastructure.azure.rbac.RoleDefinitionSnapshot;
+import authorization.jwt.infrastructure.azure.rbac.RoleDefinitionSnapshotExporter;
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+public class RoleDefinitionSnapshotTest {
+
+    private Path directory;
+    private Path snapshotPath;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        snapshotPath = directory.resolve("roles.snapshot");
+    }
+
+    @AfterMethod
+    public void tearDown() throws IOException {
+        for (Path path : Files.newDirectoryStream(directory)) {
+            Files.delete(path);
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testWriteAndFind() throws IOException {
+        RoleDefinition foo = roleDefinition("foo-role-id", "foo-role", "Microsoft.Web/sites/*/read");
+        RoleDefinition bar = roleDefinition("bar-role-id", "bar-role", "Microsoft.Compute/*");
+
+        int written = RoleDefinitionSnapshot.write(Arrays.asList(foo, bar), snapshotPath);
+        RoleDefinitionSnapshot snapshot = RoleDefinitionSnapshot.open(snapshotPath);
+
+        Assert.assertEquals(written, 2);
+        Assert.assertEquals(snapshot.size(), 2);
+        RoleDefinition actual = snapshot.find("foo-role-id");
+        Assert.assertEquals(actual.name(), "foo-role-id");
+        Assert.assertEquals(actual.id(), "/providers/Microsoft.Authorization/roleDefinitions/foo-role-id");
+        Assert.assertEquals(actual.roleName(), "foo-role");
+        Assert.assertEquals(actual.assignableScopes(), Collections.singleton("/subscriptions/12345678"));
+        Permission permission = actual.permissions().iterator().next();
+        Assert.assertEquals(permission.actions(), Collections.singletonList("Microsoft.Web/sites/*/read"));
+        Assert.assertEquals(permission.notActions(), Collections.singletonList("Microsoft.Web/sites/delete"));
+        Assert.assertEquals(snapshot.find("bar-role-id").roleName(), "bar-role");
+        Assert.assertSame(snapshot.find("foo-role-id"), actual);
+    }
+
+    @Test
+    public void testFindMissingRole() throws IOException {
+        RoleDefinitionSnapshot.write(
+                Collections.singletonList(roleDefinition("foo-role-id", "foo-role", "*")), snapshotPath);
+
+        RoleDefinitionSnapshot snapshot = RoleDefinitionSnapshot.open(snapshotPath);
+
+        Assert.assertNull(snapshot.find("bar-role-id"));
+    }
+
+    @Test
+    public void testEmptySnapshot() throws IOException {
+        RoleDefinitionSnapshot.write(Collections.emptyList(), snapshotPath);
+
+        RoleDefinitionSnapshot snapshot = RoleDefinitionSnapshot.open(snapshotPath);
+
+        Assert.assertEquals(snapshot.size(), 0);
+        Assert.assertNull(snapshot.find("foo-role-id"));
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testOpenCorruptedSnapshot() throws IOException {
+        Files.write(snapshotPath, new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13});
+
+        RoleDefinitionSnapshot.open(snapshotPath);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testOpenSnapshotWithCorruptedRoleId() throws IOException {
+        RoleDefinitionSnapshot.write(
+                Collections.singletonList(roleDefinition("foo-role-id", "foo-role", "*")), snapshotPath);
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        // The first record starts right after the header and its single offset
+        ByteBuffer.wrap(bytes).putInt(16, Integer.MAX_VALUE);
+        Files.write(snapshotPath, bytes);
+
+        RoleDefinitionSnapshot.open(snapshotPath);
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void testOpenUnsortedSnapshot() throws IOException {
+        RoleDefinitionSnapshot.write(Arrays.asList(
+                roleDefinition("bar-role-id", "bar-role", "*"),
+                roleDefinition("foo-role-id", "foo-role", "*")), snapshotPath);
+        byte[] bytes = Files.readAllBytes(snapshotPath);
+        ByteBuffer offsets = ByteBuffer.wrap(bytes);
+        int first = offsets.getInt(12);
+        offsets.putInt(12, offsets.getInt(16));
+        offsets.putInt(16, first);
+        Files.write(snapshotPath, bytes);
+
+        RoleDefinitionSnapshot.open(snapshotPath);
+    }
+
+    @Test
+    public void testExport() throws IOException {
+        AzureResourceManagerWrapper wrapper = Mockito.mock(AzureResourceManagerWrapper.class);
+        RoleDefinition foo = roleDefinition("foo-role-id", "foo-role", "*");
+        Mockito.when(wrapper.listRoleDefinitions("/subscriptions/12345678"))
+                .thenReturn(Collections.singletonList(foo));
+
+        int exported = new RoleDefinitionSnapshotExporter(wrapper).export("/subscriptions/12345678", snapshotPath);
+
+        Assert.assertEquals(exported, 1);
+        Assert.assertEquals(RoleDefinitionSnapshot.open(snapshotPath).find("foo-role-id").roleName(), "foo-role");
+    }
+
+    static RoleDefinition roleDefinition(String roleId, String roleName, String action) {
+        Permission permission = Mockito.mock(Permission.class);
+        Mockito.when(permission.actions()).thenReturn(Collections.singletonList(action));
+        Mockito.when(permission.notActions()).thenReturn(Collections.singletonList("Microsoft.Web/sites/delete"));
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.name()).thenReturn(roleId);
+        Mockito.when(roleDefinition.id())
+                .thenReturn("/providers/Microsoft.Authorization/roleDefinitions/" + roleId);
+        Mockito.when(roleDefinition.roleName()).thenReturn(roleName);
+        Mockito.when(roleDefinition.assignableScopes()).thenReturn(Collections.singleton("/subscriptions/12345678"));
+        Mockito.when(roleDefinition.permissions()).thenReturn(new HashSet<>(Collections.singletonList(permission)));
+        return roleDefinition;
+    }
+
+}
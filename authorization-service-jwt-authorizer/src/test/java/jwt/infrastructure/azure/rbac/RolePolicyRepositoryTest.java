@@ -2,6 +2,8 @@ package jwt.infrastructure.azure.rbac;
 
 import authorization.jwt.infrastructure.azure.rbac.AzureResourceManagerWrapper;
 import authorization.jwt.infrastructure.azure.rbac.RolePolicyRepository;
+import com.azure.core.http.HttpResponse;
+import com.azure.core.management.exception.ManagementException;
 import com.azure.resourcemanager.authorization.models.Permission;
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
 import authorization.jwt.core.Claims;
@@ -86,4 +88,40 @@ public class RolePolicyRepositoryTest {
 
         Mockito.verify(mockAzureResourceManagerWrapper, Mockito.times(1)).getRoleDefinitionById(Mockito.anyString());
     }
+
+    @Test
+    public void testGetMissingRoleDefinition() {
+        HttpResponse mockResponse = Mockito.mock(HttpResponse.class);
+        Mockito.when(mockResponse.getStatusCode()).thenReturn(404);
+        Mockito.when(mockAzureResourceManagerWrapper.getRoleDefinitionById("foo-role-id"))
+                .thenThrow(new ManagementException("Not found", mockResponse));
+
+        Assert.assertNull(repository.getRoleDefinition("foo-role-id"));
+    }
+
+    @Test
+    public void testGetRoleDefinitionsSkipsMissingRoles() {
+        HttpResponse mockResponse = Mockito.mock(HttpResponse.class);
+        Mockito.when(mockResponse.getStatusCode()).thenReturn(404);
+        Mockito.when(mockAzureResourceManagerWrapper.getRoleDefinitionById("foo-role-id"))
+                .thenThrow(new ManagementException("Not found", mockResponse));
+        Mockito.when(mockAzureResourceManagerWrapper.getRoleDefinitionById("bar-role-id"))
+                .thenReturn(mockRoleDefinition);
+        Claims claims = new Claims();
+        claims.setRoles(Arrays.asList(
+                "/subscriptions/12345678/resourceGroups/foo-group/providers/Microsoft.Authorization/roleDefinitions/foo-role-id",
+                "/subscriptions/12345678/resourceGroups/foo-group/providers/Microsoft.Authorization/roleDefinitions/bar-role-id"));
+
+        Assert.assertEquals(repository.getRoleDefinitions(claims), Collections.singletonList(mockRoleDefinition));
+    }
+
+    @Test(expectedExceptions = ManagementException.class)
+    public void testGetRoleDefinitionFailure() {
+        HttpResponse mockResponse = Mockito.mock(HttpResponse.class);
+        Mockito.when(mockResponse.getStatusCode()).thenReturn(503);
+        Mockito.when(mockAzureResourceManagerWrapper.getRoleDefinitionById("foo-role-id"))
+                .thenThrow(new ManagementException("Service unavailable", mockResponse));
+
+        repository.getRoleDefinition("foo-role-id");
+    }
 }
@@ -0,0 +1,107 @@
+package jwt.infrastructure.azure.rbac;
+
+import authorization.jwt.core.Claims;
+import authorization.jwt.infrastructure.azure.rbac.RoleDefinitionSnapshot;
+import authorization.jwt.infrastructure.azure.rbac.SnapshotPolicyRepository;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static jwt.infrastructure.azure.rbac.RoleDefinitionSnapshotTest.roleDefinition;
+
+public class SnapshotPolicyRepositoryTest {
+
+    private Path directory;
+    private Path snapshotPath;
+    private ExecutorService watcher;
+
+    @BeforeMethod
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("snapshot");
+        snapshotPath = directory.resolve("roles.snapshot");
+        watcher = Executors.newSingleThreadExecutor();
+        RoleDefinitionSnapshot.write(Arrays.asList(
+                roleDefinition("foo-role-id", "foo-role", "Microsoft.Web/*"),
+                roleDefinition("bar-role-id", "bar-role", "Microsoft.Compute/*")), snapshotPath);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        watcher.shutdownNow();
+        watcher.awaitTermination(5, TimeUnit.SECONDS);
+        for (Path path : Files.newDirectoryStream(directory)) {
+            Files.delete(path);
+        }
+
+        Files.delete(directory);
+    }
+
+    @Test
+    public void testGetRoleDefinitions() throws IOException {
+        SnapshotPolicyRepository repository = new SnapshotPolicyRepository(snapshotPath, watcher);
+
+        List<RoleDefinition> actual = repository.getRoleDefinitions(claims("foo-role-id", "unknown-role-id", "bar-role-id"));
+
+        Assert.assertEquals(actual.stream().map(RoleDefinition::roleName).collect(Collectors.toList()),
+                Arrays.asList("foo-role", "bar-role"));
+        Assert.assertEquals(repository.getRoleIds(claims("foo-role-id")), Collections.singletonList("foo-role-id"));
+        Assert.assertNull(repository.getRoleDefinition("unknown-role-id"));
+    }
+
+    @Test
+    public void testReloadKeepsSnapshotWhenFileIsCorrupted() throws IOException {
+        SnapshotPolicyRepository repository = new SnapshotPolicyRepository(snapshotPath, watcher);
+        // Snapshots are always replaced by a move, a mapped file is never rewritten in place
+        Path corrupted = directory.resolve("corrupted");
+        Files.write(corrupted, new byte[]{0, 0, 0, 0});
+        Files.move(corrupted, snapshotPath, StandardCopyOption.REPLACE_EXISTING);
+
+        Assert.expectThrows(IOException.class, repository::reload);
+        Assert.assertEquals(repository.getRoleDefinition("foo-role-id").roleName(), "foo-role");
+    }
+
+    @Test
+    public void testReplacedSnapshotIsSwappedIn() throws Exception {
+        SnapshotPolicyRepository repository = new SnapshotPolicyRepository(snapshotPath, watcher);
+        CountDownLatch reloaded = new CountDownLatch(1);
+        repository.addListener(snapshot -> {
+            if (snapshot.find("baz-role-id") != null) {
+                reloaded.countDown();
+            }
+        });
+        repository.start();
+
+        RoleDefinitionSnapshot.write(Collections.singletonList(
+                roleDefinition("baz-role-id", "baz-role", "*")), snapshotPath);
+
+        // Polling watch services may take a few seconds to notice the change
+        Assert.assertTrue(reloaded.await(30, TimeUnit.SECONDS));
+        Assert.assertEquals(repository.getRoleDefinition("baz-role-id").roleName(), "baz-role");
+        Assert.assertNull(repository.getRoleDefinition("foo-role-id"));
+    }
+
+    private static Claims claims(String... roleIds) {
+        Claims claims = new Claims();
+        claims.setUsername("foo");
+        claims.setRoles(Arrays.stream(roleIds)
+                .map(roleId -> "/subscriptions/12345678/resourceGroups/foo-group/providers/Microsoft.Authorization/roleDefinitions/" + roleId)
+                .collect(Collectors.toList()));
+        return claims;
+    }
+
+}
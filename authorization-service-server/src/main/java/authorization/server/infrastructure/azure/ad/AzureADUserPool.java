@@ -6,6 +6,7 @@ import com.microsoft.aad.msal4j.*;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
 
 import java.util.Collections;
 import java.util.Set;
@@ -15,6 +16,7 @@ import java.util.concurrent.CompletableFuture;
 public class AzureADUserPool implements UserPool {
 
     private static final Logger logger = LoggerFactory.getLogger(AzureADUserPool.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
 
     private final String clientId;
     private final String clientSecret;
@@ -31,7 +33,7 @@ public class AzureADUserPool implements UserPool {
 
     @Override
     public String authenticate(String username, String password) throws UserPoolException {
-        logger.info("Authenticating user {}", username);
+        auditLog.info(logger, "Authenticating user {}", username);
 
         try {
             return acquireToken(username, password, Collections.singleton("User.Read"));
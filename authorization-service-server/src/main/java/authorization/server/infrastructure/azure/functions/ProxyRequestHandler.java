@@ -14,6 +14,7 @@ import shared.infrastructure.azure.gateway.proxy.HttpRequestTranslator;
 import lombok.RequiredArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import shared.infrastructure.logging.AuditLog;
 
 import java.util.Optional;
 
@@ -21,6 +22,7 @@ import java.util.Optional;
 public class ProxyRequestHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(ProxyRequestHandler.class);
+    private static final AuditLog auditLog = AuditLog.getInstance();
 
     private final Factory factory;
 
@@ -33,8 +35,9 @@ public class ProxyRequestHandler {
             @HttpTrigger(name = "req", methods = {HttpMethod.POST, HttpMethod.GET}, authLevel = AuthorizationLevel.FUNCTION) HttpRequestMessage<Optional<String>> request,
             ExecutionContext context) {
 
-        logger.debug("Invoked function with request: {}", request.getBody().orElse("No body"));
         final HttpRequestTranslator httpRequest = HttpRequestTranslator.ofNullable(request);
+        // The body carries passwords and client secrets, so only the request line is logged
+        auditLog.debug(logger, "Invoked function with request: {} {}", httpRequest.getHttpMethod(), httpRequest.getPath());
 
         final Route route = Router.match(httpRequest);
         final Facade facade;
@@ -63,7 +66,7 @@ public class ProxyRequestHandler {
                     .body(new HttpError("Validation error", context.getInvocationId(), e.getErrorState()))
                     .build();
         } catch (Exception e) {
-            logger.error("Internal Server Error", e);
+            auditLog.error(logger, "Internal Server Error", e);
             return request.createResponseBuilder(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new HttpError("Internal Server Error", context.getInvocationId()))
                     .build();
@@ -1,27 +1,47 @@
 package shared.infrastructure.azure.gateway;
 
 import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.ToString;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Data
 @RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@JsonSerialize(using = AuthorizerResponseSerializer.class)
 public class AuthorizerResponse {
 
     private final String principalId;
-    private final Map<?, ?> policyDocument;
     private final Map<String, ?> context;
+    // Pre-serialized policy documents of the roles, spliced into the JSON by the serializer. They
+    // hold the Role Definitions, so serializers that walk fields (e.g. Gson) must skip them.
+    @Getter(AccessLevel.PACKAGE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final transient List<PolicyDocumentCache.Fragment> fragments;
+    // The serializer writes from the fragments, so the merged map is only built when asked for
+    @Getter(lazy = true)
+    private final Map<?, ?> policyDocument = roleDefinitionsToPolicyDocument(fragments);
 
     public static class Builder {
 
         private String principalId;
-        private RoleDefinition roleDefinition;
+        private List<RoleDefinition> roleDefinitions = Collections.emptyList();
         private Map<String, Object> context = new LinkedHashMap<>();
+        private PolicyDocumentCache policyDocumentCache = PolicyDocumentCache.getInstance();
 
         public Builder withPrincipalId(String principalId) {
             this.principalId = principalId;
@@ -30,7 +50,17 @@ public class AuthorizerResponse {
 
         // Replaces withRoleDefinition to handle Azure RoleDefinition
         public Builder withRoleDefinition(RoleDefinition roleDefinition) {
-            this.roleDefinition = roleDefinition;
+            return withRoleDefinitions(Collections.singletonList(roleDefinition));
+        }
+
+        // Merges all roles a principal holds into one policy document
+        public Builder withRoleDefinitions(List<RoleDefinition> roleDefinitions) {
+            this.roleDefinitions = roleDefinitions;
+            return this;
+        }
+
+        public Builder withPolicyDocumentCache(PolicyDocumentCache policyDocumentCache) {
+            this.policyDocumentCache = policyDocumentCache;
             return this;
         }
 
@@ -60,34 +90,47 @@ public class AuthorizerResponse {
         }
 
         public AuthorizerResponse build() {
-            // Convert RoleDefinition to a policy-like document (as a map)
-            Map<String, Object> policyDocument = roleDefinitionToPolicyDocument(roleDefinition);
+            List<PolicyDocumentCache.Fragment> fragments = new ArrayList<>(roleDefinitions.size());
+            for (RoleDefinition roleDefinition : roleDefinitions) {
+                fragments.add(policyDocumentCache.get(roleDefinition));
+            }
 
             return new AuthorizerResponse(
                     principalId,
-                    Collections.unmodifiableMap(policyDocument),
-                    Collections.unmodifiableMap(context));
+                    Collections.unmodifiableMap(context),
+                    Collections.unmodifiableList(fragments));
         }
 
-        // Method to convert RoleDefinition to a JSON-like policy document
-        private Map<String, Object> roleDefinitionToPolicyDocument(RoleDefinition roleDefinition) {
-            Map<String, Object> policyDocument = new LinkedHashMap<>();
+    }
+
+    // A single role reuses its cached document, several are merged from their cached parts
+    private static Map<?, ?> roleDefinitionsToPolicyDocument(List<PolicyDocumentCache.Fragment> fragments) {
+        if (fragments.isEmpty()) {
+            return Collections.emptyMap();
+        }
 
-            // Example mapping of RoleDefinition's actions to a policy-like structure
-            policyDocument.put("roleName", roleDefinition.roleName());
-            policyDocument.put("assignableScopes", roleDefinition.assignableScopes());
+        if (fragments.size() == 1) {
+            return fragments.get(0).getPolicyDocument();
+        }
 
-            // Map permissions (actions and notActions)
-            policyDocument.put("permissions", roleDefinition.permissions().stream().map(permission -> {
-                Map<String, Object> permissionMap = new LinkedHashMap<>();
-                permissionMap.put("actions", permission.actions());
-                permissionMap.put("notActions", permission.notActions());
-                return permissionMap;
-            }).toArray());
+        // Several roles are reported under a joint name with the union of their scopes
+        Set<String> assignableScopes = new LinkedHashSet<>();
+        List<Object> permissions = new ArrayList<>();
+        for (PolicyDocumentCache.Fragment fragment : fragments) {
+            if (fragment.getAssignableScopes() != null) {
+                assignableScopes.addAll(fragment.getAssignableScopes());
+            }
 
-            return policyDocument;
+            permissions.addAll(Arrays.asList(fragment.getPermissions()));
         }
 
+        Map<String, Object> policyDocument = new LinkedHashMap<>();
+        policyDocument.put("roleName", fragments.stream()
+                .map(PolicyDocumentCache.Fragment::getRoleName)
+                .collect(Collectors.joining(",")));
+        policyDocument.put("assignableScopes", assignableScopes);
+        policyDocument.put("permissions", permissions.toArray());
+        return Collections.unmodifiableMap(policyDocument);
     }
 
 }
@@ -0,0 +1,70 @@
+package shared.infrastructure.azure.gateway;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// Writes the policy document from the pre-serialized fragments of its roles instead of walking the map
+class AuthorizerResponseSerializer extends StdSerializer<AuthorizerResponse> {
+
+    public AuthorizerResponseSerializer() {
+        super(AuthorizerResponse.class);
+    }
+
+    @Override
+    public void serialize(AuthorizerResponse value, JsonGenerator gen, SerializerProvider provider)
+            throws IOException {
+        gen.writeStartObject();
+        gen.writeStringField("principalId", value.getPrincipalId());
+        gen.writeFieldName("policyDocument");
+        writePolicyDocument(value.getFragments(), gen);
+        provider.defaultSerializeField("context", value.getContext(), gen);
+        gen.writeEndObject();
+    }
+
+    private static void writePolicyDocument(List<PolicyDocumentCache.Fragment> fragments, JsonGenerator gen)
+            throws IOException {
+        if (fragments.size() == 1) {
+            gen.writeRawValue(fragments.get(0).getPolicyDocumentJson());
+            return;
+        }
+
+        gen.writeStartObject();
+        if (!fragments.isEmpty()) {
+            gen.writeStringField("roleName", fragments.stream()
+                    .map(PolicyDocumentCache.Fragment::getRoleName)
+                    .collect(Collectors.joining(",")));
+
+            Set<String> assignableScopes = new LinkedHashSet<>();
+            for (PolicyDocumentCache.Fragment fragment : fragments) {
+                if (fragment.getAssignableScopes() != null) {
+                    assignableScopes.addAll(fragment.getAssignableScopes());
+                }
+            }
+
+            gen.writeArrayFieldStart("assignableScopes");
+            for (String assignableScope : assignableScopes) {
+                gen.writeString(assignableScope);
+            }
+
+            gen.writeEndArray();
+            gen.writeArrayFieldStart("permissions");
+            for (PolicyDocumentCache.Fragment fragment : fragments) {
+                if (fragment.getPermissionsJson() != null) {
+                    gen.writeRawValue(fragment.getPermissionsJson());
+                }
+            }
+
+            gen.writeEndArray();
+        }
+
+        gen.writeEndObject();
+    }
+
+}
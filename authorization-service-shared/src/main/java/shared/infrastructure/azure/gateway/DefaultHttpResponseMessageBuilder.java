@@ -4,9 +4,13 @@ package shared.infrastructure.azure.gateway;
 import com.microsoft.azure.functions.HttpResponseMessage;
 import com.microsoft.azure.functions.HttpStatusType;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class DefaultHttpResponseMessageBuilder implements HttpResponseMessage.Builder {
 
     private Object body;
+    private final Map<String, String> headers = new HashMap<>();
 
     private final HttpStatusType status;
 
@@ -23,7 +27,8 @@ public class DefaultHttpResponseMessageBuilder implements HttpResponseMessage.Bu
 
     @Override
     public HttpResponseMessage.Builder header(String s, String s1) {
-        return null;
+        headers.put(s, s1);
+        return this;
     }
 
     @Override
@@ -34,16 +39,18 @@ public class DefaultHttpResponseMessageBuilder implements HttpResponseMessage.Bu
 
     @Override
     public HttpResponseMessage build() {
-        return new DefaultHttpResponseMessage(status, body);
+        return new DefaultHttpResponseMessage(status, headers, body);
     }
 
     // Custom HttpResponseMessage implementation for the builder
     private static class DefaultHttpResponseMessage implements HttpResponseMessage {
         private final HttpStatusType status;
+        private final Map<String, String> headers;
         private final Object body;
 
-        public DefaultHttpResponseMessage(HttpStatusType status, Object body) {
+        public DefaultHttpResponseMessage(HttpStatusType status, Map<String, String> headers, Object body) {
             this.status = status;
+            this.headers = new HashMap<>(headers);
             this.body = body;
         }
 
@@ -54,7 +61,7 @@ public class DefaultHttpResponseMessageBuilder implements HttpResponseMessage.Bu
 
         @Override
         public String getHeader(String s) {
-            return "";
+            return headers.getOrDefault(s, "");
         }
 
         @Override
@@ -0,0 +1,142 @@
+package shared.infrastructure.azure.gateway;
+
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the policy document of each Role Definition both as an immutable map and as serialized
+// JSON, so that responses neither rebuild nor re-serialize it. Role Definitions are cached
+// upstream until they change, so another instance under the same ID is treated as a new version.
+public class PolicyDocumentCache {
+
+    private static final int DEFAULT_MAXIMUM_SIZE = 1000;
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Getter(lazy = true)
+    private static final PolicyDocumentCache instance = new PolicyDocumentCache(DEFAULT_MAXIMUM_SIZE);
+
+    private final ConcurrentMap<String, Fragment> fragments = new ConcurrentHashMap<>();
+    private final int maximumSize;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public PolicyDocumentCache(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public Fragment get(RoleDefinition roleDefinition) {
+        String id = roleDefinition.id();
+        if (id != null) {
+            Fragment fragment = fragments.get(id);
+            if (fragment != null && fragment.roleDefinition == roleDefinition) {
+                hits.increment();
+                return fragment;
+            }
+        }
+
+        misses.increment();
+        Fragment fragment = new Fragment(roleDefinition);
+        if (id != null && maximumSize > 0) {
+            // Far more slots than roles in use, so dropping everything on overflow is rare
+            if (fragments.size() >= maximumSize && !fragments.containsKey(id)) {
+                fragments.clear();
+            }
+
+            fragments.put(id, fragment);
+        }
+
+        return fragment;
+    }
+
+    public int size() {
+        return fragments.size();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public static final class Fragment {
+
+        @Getter(AccessLevel.NONE)
+        private final RoleDefinition roleDefinition;
+        @Getter
+        private final String roleName;
+        @Getter
+        private final Collection<String> assignableScopes;
+        @Getter
+        private final Object[] permissions;
+        @Getter
+        private final Map<String, Object> policyDocument;
+        // The whole policy document of the role and, for merged documents, its permissions alone
+        @Getter(AccessLevel.PACKAGE)
+        private final String policyDocumentJson;
+        @Getter(AccessLevel.PACKAGE)
+        private final String permissionsJson;
+
+        private Fragment(RoleDefinition roleDefinition) {
+            this.roleDefinition = roleDefinition;
+            this.roleName = roleDefinition.roleName();
+            this.assignableScopes = roleDefinition.assignableScopes();
+            this.permissions = toPermissions(roleDefinition);
+
+            Map<String, Object> policyDocument = new LinkedHashMap<>();
+            policyDocument.put("roleName", roleName);
+            policyDocument.put("assignableScopes", assignableScopes);
+            policyDocument.put("permissions", permissions);
+            this.policyDocument = Collections.unmodifiableMap(policyDocument);
+
+            this.policyDocumentJson = toJson(policyDocument);
+            List<String> permissionsJson = new ArrayList<>(permissions.length);
+            for (Object permission : permissions) {
+                permissionsJson.add(toJson(permission));
+            }
+
+            this.permissionsJson = permissionsJson.isEmpty() ? null : String.join(",", permissionsJson);
+        }
+
+        // Map permissions (actions and notActions)
+        private static Object[] toPermissions(RoleDefinition roleDefinition) {
+            Collection<Permission> permissions = roleDefinition.permissions();
+            if (permissions == null) {
+                return new Object[0];
+            }
+
+            return permissions.stream()
+                    .map(permission -> {
+                        Map<String, Object> permissionMap = new LinkedHashMap<>();
+                        permissionMap.put("actions", permission.actions());
+                        permissionMap.put("notActions", permission.notActions());
+                        return Collections.unmodifiableMap(permissionMap);
+                    }).toArray();
+        }
+
+        private static String toJson(Object value) {
+            try {
+                return objectMapper.writeValueAsString(value);
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Failed to convert policy document to JSON", e);
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,235 @@
+package shared.infrastructure.logging;
+
+import lombok.Getter;
+import org.slf4j.Logger;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Takes log records off the request thread. Records go into a bounded lock-free ring buffer
+// and a background writer hands them to slf4j, which formats the message only then. When the
+// buffer is full, records are dropped rather than making requests wait.
+public class AuditLog {
+
+    private static final String BUFFER_SIZE = "AUDIT_LOG_BUFFER_SIZE";
+    private static final String SAMPLE_RATE = "AUDIT_LOG_SAMPLE_RATE";
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final int REDACTED_HASH_LENGTH = 8;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Getter(lazy = true)
+    private static final AuditLog instance = createInstance();
+
+    private enum Level {
+        DEBUG, INFO, WARN, ERROR
+    }
+
+    // Bounded multi-producer queue after Dmitry Vyukov: the sequence of a slot tells whether
+    // it's free for the producer at a position or holds a record for the consumer
+    private final AtomicReferenceArray<Record> records;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private long head;
+
+    private final double sampleRate;
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder sampledOut = new LongAdder();
+
+    public AuditLog(int capacity, double sampleRate) {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) * 2 - 1);
+        this.records = new AtomicReferenceArray<>(size);
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+
+        this.mask = size - 1;
+        this.sampleRate = sampleRate;
+    }
+
+    private static AuditLog createInstance() {
+        String bufferSize = System.getenv(BUFFER_SIZE);
+        String sampleRate = System.getenv(SAMPLE_RATE);
+        AuditLog auditLog = new AuditLog(
+            bufferSize == null ? 8192 : Integer.parseInt(bufferSize),
+            sampleRate == null ? 1.0 : Double.parseDouble(sampleRate));
+        auditLog.start();
+        return auditLog;
+    }
+
+    public void start() {
+        Thread writer = new Thread(this::write, "audit-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void debug(Logger logger, String format, Object... arguments) {
+        if (logger.isDebugEnabled()) {
+            offer(new Record(logger, Level.DEBUG, format, arguments));
+        }
+    }
+
+    public void info(Logger logger, String format, Object... arguments) {
+        if (logger.isInfoEnabled()) {
+            offer(new Record(logger, Level.INFO, format, arguments));
+        }
+    }
+
+    public void warn(Logger logger, String format, Object... arguments) {
+        if (logger.isWarnEnabled()) {
+            offer(new Record(logger, Level.WARN, format, arguments));
+        }
+    }
+
+    // Errors are rare, so they're never sampled out. A trailing Throwable is logged as with slf4j.
+    public void error(Logger logger, String format, Object... arguments) {
+        if (logger.isErrorEnabled()) {
+            enqueue(new Record(logger, Level.ERROR, format, arguments));
+        }
+    }
+
+    // Stands for a token in log messages by the start of its SHA-256 hash, which is computed
+    // only when the message is written
+    public static Object redact(String token) {
+        return new Redacted(token);
+    }
+
+    // Writes pending records on the calling thread and returns how many there were.
+    // Only one thread may drain at a time, which is the writer once started.
+    public int drain() {
+        int count = 0;
+        while (true) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) {
+                return count;
+            }
+
+            Record record = records.get(index);
+            records.set(index, null);
+            sequences.set(index, head + mask + 1);
+            head++;
+            record.write();
+            count++;
+        }
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSampledOutCount() {
+        return sampledOut.sum();
+    }
+
+    private void offer(Record record) {
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            sampledOut.increment();
+            return;
+        }
+
+        enqueue(record);
+    }
+
+    private void enqueue(Record record) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    records.set(index, record);
+                    sequences.set(index, position + 1);
+                    return;
+                }
+            } else if (difference < 0) {
+                dropped.increment();
+                return;
+            }
+        }
+    }
+
+    private void write() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                if (drain() == 0) {
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (RuntimeException e) {
+                // A record that can't be written mustn't stop the writer, the record is lost
+            }
+        }
+    }
+
+    private static final class Record {
+
+        private final Logger logger;
+        private final Level level;
+        private final String format;
+        private final Object[] arguments;
+
+        private Record(Logger logger, Level level, String format, Object[] arguments) {
+            this.logger = logger;
+            this.level = level;
+            this.format = format;
+            this.arguments = arguments;
+        }
+
+        private void write() {
+            switch (level) {
+                case DEBUG:
+                    logger.debug(format, arguments);
+                    break;
+                case INFO:
+                    logger.info(format, arguments);
+                    break;
+                case WARN:
+                    logger.warn(format, arguments);
+                    break;
+                default:
+                    logger.error(format, arguments);
+            }
+        }
+
+    }
+
+    private static final class Redacted {
+
+        private final String token;
+
+        private Redacted(String token) {
+            this.token = token;
+        }
+
+        @Override
+        public String toString() {
+            if (token == null) {
+                return "null";
+            }
+
+            byte[] hash;
+            try {
+                hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            } catch (NoSuchAlgorithmException e) {
+                return "[redacted]";
+            }
+
+            StringBuilder redacted = new StringBuilder("sha256:");
+            for (int i = 0; i < REDACTED_HASH_LENGTH / 2; i++) {
+                redacted.append(HEX[(hash[i] >> 4) & 0xf]).append(HEX[hash[i] & 0xf]);
+            }
+
+            return redacted.toString();
+        }
+
+    }
+
+}
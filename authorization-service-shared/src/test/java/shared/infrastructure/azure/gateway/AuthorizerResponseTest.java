@@ -47,5 +47,76 @@ public class AuthorizerResponseTest {
                 TestHelper.resourceAsJsonString("/ApiGatewayAuthorizerResponse.json"));
     }
 
+    @Test
+    public void testBuildWithRoleDefinitions() {
+        RoleDefinition reader = makeRoleDefinition("reader", "/subscriptions/123456", "Microsoft.Web/sites/read");
+        RoleDefinition writer = makeRoleDefinition("writer", "/subscriptions/654321", "Microsoft.Web/sites/write");
+
+        AuthorizerResponse response = new AuthorizerResponse.Builder()
+                .withPrincipalId("32944624-1f4a-4f34-bdf6-5450679ef1bf")
+                .withRoleDefinitions(Arrays.asList(reader, writer))
+                .build();
+
+        Assert.assertEquals(response.getPolicyDocument().get("roleName"), "reader,writer");
+        Assert.assertEquals(response.getPolicyDocument().get("assignableScopes"),
+                new HashSet<>(Arrays.asList("/subscriptions/123456", "/subscriptions/654321")));
+        Assert.assertEquals(((Object[]) response.getPolicyDocument().get("permissions")).length, 2);
+    }
+
+    @Test
+    public void testMergedPolicyDocumentIsBuiltOnce() {
+        RoleDefinition reader = makeRoleDefinition("reader", "/subscriptions/123456", "Microsoft.Web/sites/read");
+        RoleDefinition writer = makeRoleDefinition("writer", "/subscriptions/654321", "Microsoft.Web/sites/write");
+
+        AuthorizerResponse response = new AuthorizerResponse.Builder()
+                .withPrincipalId("32944624-1f4a-4f34-bdf6-5450679ef1bf")
+                .withRoleDefinitions(Arrays.asList(reader, writer))
+                .build();
+
+        Assert.assertSame(response.getPolicyDocument(), response.getPolicyDocument());
+    }
+
+    @Test
+    public void testSerializeWithRoleDefinitions() {
+        RoleDefinition reader = makeRoleDefinition("reader", "/subscriptions/123456", "Microsoft.Web/sites/read");
+        RoleDefinition writer = makeRoleDefinition("writer", "/subscriptions/654321", "Microsoft.Web/sites/write");
+
+        AuthorizerResponse response = new AuthorizerResponse.Builder()
+                .withPrincipalId("32944624-1f4a-4f34-bdf6-5450679ef1bf")
+                .withRoleDefinitions(Arrays.asList(reader, writer))
+                .withContextAsString("effect", "Allow")
+                .build();
+
+        Assert.assertEquals(JsonUtil.toJsonString(response),
+                "{\"principalId\":\"32944624-1f4a-4f34-bdf6-5450679ef1bf\","
+                        + "\"policyDocument\":{\"roleName\":\"reader,writer\","
+                        + "\"assignableScopes\":[\"/subscriptions/123456\",\"/subscriptions/654321\"],"
+                        + "\"permissions\":[{\"actions\":[\"Microsoft.Web/sites/read\"],\"notActions\":[]},"
+                        + "{\"actions\":[\"Microsoft.Web/sites/write\"],\"notActions\":[]}]},"
+                        + "\"context\":{\"effect\":\"Allow\"}}");
+    }
+
+    @Test
+    public void testSerializeWithoutRoleDefinitions() {
+        AuthorizerResponse response = new AuthorizerResponse.Builder()
+                .withPrincipalId("foo")
+                .build();
+
+        Assert.assertTrue(response.getPolicyDocument().isEmpty());
+        Assert.assertEquals(JsonUtil.toJsonString(response),
+                "{\"principalId\":\"foo\",\"policyDocument\":{},\"context\":{}}");
+    }
+
+    private static RoleDefinition makeRoleDefinition(String roleName, String scope, String action) {
+        Permission permission = Mockito.mock(Permission.class);
+        Mockito.when(permission.actions()).thenReturn(Collections.singletonList(action));
+        Mockito.when(permission.notActions()).thenReturn(Collections.emptyList());
+
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.roleName()).thenReturn(roleName);
+        Mockito.when(roleDefinition.permissions()).thenReturn(Collections.singleton(permission));
+        Mockito.when(roleDefinition.assignableScopes()).thenReturn(Collections.singleton(scope));
+        return roleDefinition;
+    }
 
-}
\ No newline at end of file
+}
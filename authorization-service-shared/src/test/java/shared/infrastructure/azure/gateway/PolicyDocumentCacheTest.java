@@ -0,0 +1,96 @@
+package shared.infrastructure.azure.gateway;
+
+import com.azure.resourcemanager.authorization.models.Permission;
+import com.azure.resourcemanager.authorization.models.RoleDefinition;
+import org.mockito.Mockito;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+
+public class PolicyDocumentCacheTest {
+
+    @Test
+    public void testSameRoleDefinitionIsReused() {
+        PolicyDocumentCache cache = new PolicyDocumentCache(10);
+        RoleDefinition roleDefinition = makeRoleDefinition("foo-role-id", "reader");
+
+        PolicyDocumentCache.Fragment first = cache.get(roleDefinition);
+        PolicyDocumentCache.Fragment second = cache.get(roleDefinition);
+
+        Assert.assertSame(second, first);
+        Assert.assertEquals(first.getPolicyDocument().get("roleName"), "reader");
+        Assert.assertEquals(cache.getHitCount(), 1);
+        Assert.assertEquals(cache.getMissCount(), 1);
+        Mockito.verify(roleDefinition, Mockito.times(1)).permissions();
+    }
+
+    @Test
+    public void testReloadedRoleDefinitionReplacesFragment() {
+        PolicyDocumentCache cache = new PolicyDocumentCache(10);
+        RoleDefinition before = makeRoleDefinition("foo-role-id", "reader");
+        RoleDefinition after = makeRoleDefinition("foo-role-id", "writer");
+
+        cache.get(before);
+        PolicyDocumentCache.Fragment actual = cache.get(after);
+
+        Assert.assertEquals(actual.getRoleName(), "writer");
+        Assert.assertEquals(cache.size(), 1);
+        Assert.assertEquals(cache.getMissCount(), 2);
+    }
+
+    @Test
+    public void testRoleDefinitionWithoutIdIsNotCached() {
+        PolicyDocumentCache cache = new PolicyDocumentCache(10);
+        RoleDefinition roleDefinition = makeRoleDefinition(null, "reader");
+
+        cache.get(roleDefinition);
+        cache.get(roleDefinition);
+
+        Assert.assertEquals(cache.size(), 0);
+        Assert.assertEquals(cache.getMissCount(), 2);
+    }
+
+    @Test
+    public void testSizeIsBounded() {
+        PolicyDocumentCache cache = new PolicyDocumentCache(2);
+
+        for (int i = 0; i < 5; i++) {
+            cache.get(makeRoleDefinition("role-" + i, "reader"));
+        }
+
+        Assert.assertTrue(cache.size() <= 2);
+    }
+
+    @Test
+    public void testFragmentIsSerializedOnce() {
+        RoleDefinition roleDefinition = makeRoleDefinition("foo-role-id", "reader");
+        PolicyDocumentCache cache = new PolicyDocumentCache(10);
+        AuthorizerResponse.Builder builder = new AuthorizerResponse.Builder()
+                .withPolicyDocumentCache(cache)
+                .withRoleDefinition(roleDefinition);
+
+        String first = JsonUtil.toJsonString(builder.withPrincipalId("foo").build());
+        String second = JsonUtil.toJsonString(builder.withPrincipalId("bar").build());
+
+        Assert.assertEquals(first, "{\"principalId\":\"foo\",\"policyDocument\":{\"roleName\":\"reader\","
+                + "\"assignableScopes\":[\"/subscriptions/123456\"],"
+                + "\"permissions\":[{\"actions\":[\"Microsoft.Web/sites/read\"],\"notActions\":[]}]},\"context\":{}}");
+        Assert.assertEquals(second, first.replace("foo", "bar"));
+        Mockito.verify(roleDefinition, Mockito.times(1)).permissions();
+    }
+
+    private static RoleDefinition makeRoleDefinition(String id, String roleName) {
+        Permission permission = Mockito.mock(Permission.class);
+        Mockito.when(permission.actions()).thenReturn(Collections.singletonList("Microsoft.Web/sites/read"));
+        Mockito.when(permission.notActions()).thenReturn(Collections.emptyList());
+
+        RoleDefinition roleDefinition = Mockito.mock(RoleDefinition.class);
+        Mockito.when(roleDefinition.id()).thenReturn(id);
+        Mockito.when(roleDefinition.roleName()).thenReturn(roleName);
+        Mockito.when(roleDefinition.permissions()).thenReturn(Collections.singleton(permission));
+        Mockito.when(roleDefinition.assignableScopes()).thenReturn(Collections.singleton("/subscriptions/123456"));
+        return roleDefinition;
+    }
+
+}